@@ -21,6 +21,7 @@ class Libs {
         final static def groovy = '2.1.3'
         final static def guava = '14.0.1'
         final static def hamcrest = '1.3'
+        final static def jmh = '1.0'
         final static def jsr305 = '2.0.1'
         final static def junit = '4.11'
         final static def logback = '1.0.13'
@@ -40,6 +41,8 @@ class Libs {
     final static def groovy = "org.codehaus.groovy:groovy-all:${Versions.groovy}"
     final static def guava = "com.google.guava:guava:${Versions.guava}"
     final static def hamcrest = "org.hamcrest:hamcrest-library:${Versions.hamcrest}"
+    final static def jmhCore = "org.openjdk.jmh:jmh-core:${Versions.jmh}"
+    final static def jmhGeneratorAnnotationProcessor = "org.openjdk.jmh:jmh-generator-annprocess:${Versions.jmh}"
     final static def jsr305Annotations = "com.google.code.findbugs:jsr305:${Versions.jsr305}"
     final static def junit = "junit:junit:${Versions.junit}"
     final static def logback = "ch.qos.logback:logback-classic:${Versions.logback}"
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.api;
+
+import org.adsync4j.spi.BatchEntryProcessor;
+
+/**
+ * Extension of the {@link ActiveDirectorySyncService} interface with synchronization operations that deliver entries in
+ * batches to a {@link BatchEntryProcessor}. Kept separate from the main service interface, so that the addition of batch
+ * delivery doesn't break existing implementations of it.
+ *
+ * @param <LDAP_ATTRIBUTE> An LDAP SDK specific attribute type determined by the {@link org.adsync4j.spi.LdapClient LdapClient}
+ *                         implementation in use.
+ */
+public interface BatchActiveDirectorySyncService<LDAP_ATTRIBUTE> extends ActiveDirectorySyncService<LDAP_ATTRIBUTE> {
+
+    /**
+     * Performs a full synchronization just like {@link ActiveDirectorySyncService#fullSync fullSync()} does, but delivers
+     * entries in batches by iteratively invoking {@link BatchEntryProcessor#processNewEntries processNewEntries()} on the
+     * provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive
+     *                       the synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    long fullSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) throws LdapClientException;
+
+    /**
+     * Performs an incremental synchronization just like {@link ActiveDirectorySyncService#incrementalSync incrementalSync()}
+     * does, but delivers entries in batches by iteratively invoking the corresponding methods of the provided
+     * {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    long incrementalSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) throws LdapClientException;
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.api;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Immutable value object recording the progress of a {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl#resumableFullSync
+ * resumable full synchronization}. A resumable full synchronization retrieves entries in consecutive windows of Update
+ * Sequence Numbers, and records a checkpoint after each completed window, so that an interrupted synchronization can be
+ * resumed with the first unprocessed window.
+ *
+ * @see org.adsync4j.spi.CheckpointingDomainControllerAffiliation
+ */
+@Immutable
+public class FullSyncCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final UUID _invocationId;
+    private final long _targetUSN;
+    private final long _processedUpToUSN;
+
+    /**
+     * @param invocationId     The Invocation ID of the domain controller at the time the full synchronization was started.
+     * @param targetUSN        The highest committed USN retrieved at the start of the full synchronization. This is the upper
+     *                         bound of the last USN window, and the USN that will be recorded in the affiliation record when
+     *                         the full synchronization completes.
+     * @param processedUpToUSN Upper bound (inclusive) of the last USN window whose entries have all been processed.
+     */
+    public FullSyncCheckpoint(UUID invocationId, long targetUSN, long processedUpToUSN) {
+        _invocationId = invocationId;
+        _targetUSN = targetUSN;
+        _processedUpToUSN = processedUpToUSN;
+    }
+
+    public UUID getInvocationId() {
+        return _invocationId;
+    }
+
+    public long getTargetUSN() {
+        return _targetUSN;
+    }
+
+    public long getProcessedUpToUSN() {
+        return _processedUpToUSN;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FullSyncCheckpoint)) {
+            return false;
+        }
+        FullSyncCheckpoint that = (FullSyncCheckpoint) o;
+        return _targetUSN == that._targetUSN &&
+               _processedUpToUSN == that._processedUpToUSN &&
+               _invocationId.equals(that._invocationId);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = _invocationId.hashCode();
+        result = 31 * result + (int) (_targetUSN ^ (_targetUSN >>> 32));
+        result = 31 * result + (int) (_processedUpToUSN ^ (_processedUpToUSN >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "FullSyncCheckpoint{invocationId=" + _invocationId +
+               ", targetUSN=" + _targetUSN +
+               ", processedUpToUSN=" + _processedUpToUSN + '}';
+    }
+}
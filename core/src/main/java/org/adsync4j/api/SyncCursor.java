@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.api;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull-based view of a synchronization: an iterator over its {@link SyncEvent}s, which are produced page by page while the
+ * cursor is being consumed. Meant to be used in a try-with-resources statement:
+ * <pre>
+ * try (SyncCursor&lt;Attribute&gt; cursor = asyncSyncService.incrementalSyncCursor()) {
+ *     while (cursor.hasNext()) {
+ *         process(cursor.next());
+ *     }
+ * }
+ * </pre>
+ * The DCA is updated only if the cursor is closed after all events (including the closing {@link SyncEvent.Type#END_SYNC}
+ * event) have been consumed. Closing it earlier aborts the synchronization, so the next synchronization retrieves the
+ * unconsumed changes again.
+ * <p/>
+ * Cursors are not thread-safe. In order to process the events in parallel, consume them with {@link SyncCursor#nextBatch
+ * nextBatch()}, and hand the batches over to other threads.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type (determined by the {@link org.adsync4j.spi.LdapClient} implementation in
+ *                         use).
+ */
+public interface SyncCursor<LDAP_ATTRIBUTE> extends Iterator<SyncEvent<LDAP_ATTRIBUTE>>, Closeable {
+
+    /**
+     * Waits for the next event if necessary.
+     *
+     * @throws LdapClientException if the synchronization failed.
+     */
+    @Override
+    boolean hasNext();
+
+    /**
+     * Returns the unconsumed events of the current batch, which corresponds to a page of search results (or to a single
+     * {@link SyncEvent.Type#BEGIN_SYNC BEGIN_SYNC} or {@link SyncEvent.Type#END_SYNC END_SYNC} event).
+     *
+     * @throws NoSuchElementException if there are no more events.
+     * @throws LdapClientException    if the synchronization failed.
+     */
+    List<SyncEvent<LDAP_ATTRIBUTE>> nextBatch();
+
+    /**
+     * Closes the cursor. If all events have been consumed, waits for the synchronization to update the DCA, otherwise aborts
+     * the synchronization.
+     *
+     * @throws LdapClientException if all events have been consumed, but the DCA could not be updated.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.api;
+
+import org.adsync4j.spi.BatchEntryProcessor;
+import org.adsync4j.spi.BatchEntryProcessor.SyncType;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Immutable event published by a {@link SyncPublisher}. Each event corresponds to one call-back of a {@link
+ * BatchEntryProcessor}: a synchronization is published as a {@link Type#BEGIN_SYNC} event, followed by an event per new,
+ * changed and deleted entry, and an {@link Type#END_SYNC} event.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type (determined by the {@link org.adsync4j.spi.LdapClient} implementation in
+ *                         use).
+ */
+@Immutable
+public class SyncEvent<LDAP_ATTRIBUTE> {
+
+    public enum Type {
+        BEGIN_SYNC, NEW, CHANGED, DELETED, END_SYNC
+    }
+
+    private final Type _type;
+    private final SyncType _syncType;
+    private final long _highestCommittedUSN;
+    private final List<LDAP_ATTRIBUTE> _entry;
+    private final UUID _entryId;
+
+    private SyncEvent(
+            Type type, @Nullable SyncType syncType, long highestCommittedUSN, @Nullable List<LDAP_ATTRIBUTE> entry,
+            @Nullable UUID entryId)
+    {
+        _type = type;
+        _syncType = syncType;
+        _highestCommittedUSN = highestCommittedUSN;
+        _entry = entry;
+        _entryId = entryId;
+    }
+
+    public static <LDAP_ATTRIBUTE> SyncEvent<LDAP_ATTRIBUTE> beginSync(SyncType syncType, long highestCommittedUSN) {
+        return new SyncEvent<>(Type.BEGIN_SYNC, syncType, highestCommittedUSN, null, null);
+    }
+
+    public static <LDAP_ATTRIBUTE> SyncEvent<LDAP_ATTRIBUTE> newEntry(List<LDAP_ATTRIBUTE> entry) {
+        return new SyncEvent<>(Type.NEW, null, 0, entry, null);
+    }
+
+    public static <LDAP_ATTRIBUTE> SyncEvent<LDAP_ATTRIBUTE> changedEntry(List<LDAP_ATTRIBUTE> entry) {
+        return new SyncEvent<>(Type.CHANGED, null, 0, entry, null);
+    }
+
+    public static <LDAP_ATTRIBUTE> SyncEvent<LDAP_ATTRIBUTE> deletedEntry(UUID entryId) {
+        return new SyncEvent<LDAP_ATTRIBUTE>(Type.DELETED, null, 0, null, entryId);
+    }
+
+    public static <LDAP_ATTRIBUTE> SyncEvent<LDAP_ATTRIBUTE> endSync(long highestCommittedUSN) {
+        return new SyncEvent<>(Type.END_SYNC, null, highestCommittedUSN, null, null);
+    }
+
+    public Type getType() {
+        return _type;
+    }
+
+    /**
+     * @return The kind of the synchronization in case of a {@link Type#BEGIN_SYNC} event, {@code null} otherwise.
+     */
+    @Nullable
+    public SyncType getSyncType() {
+        return _syncType;
+    }
+
+    /**
+     * @return The highest committed USN in case of {@link Type#BEGIN_SYNC} and {@link Type#END_SYNC} events (see {@link
+     *         BatchEntryProcessor#beginSync} and {@link BatchEntryProcessor#endSync}), zero otherwise.
+     */
+    public long getHighestCommittedUSN() {
+        return _highestCommittedUSN;
+    }
+
+    /**
+     * @return The attributes of the entry in case of {@link Type#NEW} and {@link Type#CHANGED} events, {@code null}
+     *         otherwise.
+     */
+    @Nullable
+    public List<LDAP_ATTRIBUTE> getEntry() {
+        return _entry;
+    }
+
+    /**
+     * @return The {@code objectGUID} of the entry in case of {@link Type#DELETED} events, {@code null} otherwise.
+     */
+    @Nullable
+    public UUID getEntryId() {
+        return _entryId;
+    }
+
+    @Override
+    public String toString() {
+        switch (_type) {
+            case BEGIN_SYNC:
+                return "SyncEvent{" + _type + ", syncType=" + _syncType + ", highestCommittedUSN=" + _highestCommittedUSN + '}';
+            case END_SYNC:
+                return "SyncEvent{" + _type + ", highestCommittedUSN=" + _highestCommittedUSN + '}';
+            case DELETED:
+                return "SyncEvent{" + _type + ", entryId=" + _entryId + '}';
+            default:
+                return "SyncEvent{" + _type + ", entry=" + _entry + '}';
+        }
+    }
+}
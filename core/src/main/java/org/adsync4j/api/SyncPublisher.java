@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.api;
+
+/**
+ * Publishes the events of a synchronization (see {@link SyncEvent}) to a subscriber with backpressure: events are only
+ * published as requested by the subscriber through its {@link Subscription}, and the synchronization (including the
+ * retrieval of the following pages of the search results) waits while there is no outstanding demand. This way a slow
+ * subscriber throttles the LDAP reads, instead of the events being buffered without bounds.
+ * <p/>
+ * The interfaces follow the contract of the Reactive Streams specification (and {@code java.util.concurrent.Flow}), so
+ * adapting them to a reactive library is trivial:
+ * <ul>
+ * <li>{@link Subscriber#onSubscribe onSubscribe()} is called first, then {@link Subscriber#onNext onNext()} at most as many
+ * times as requested, and finally either {@link Subscriber#onComplete onComplete()} or {@link Subscriber#onError
+ * onError()}, unless the subscription has been cancelled</li>
+ * <li>the methods of the subscriber are called serially (from the thread that performs the synchronization)</li>
+ * <li>requesting a non-positive number of events is an error that cancels the subscription</li>
+ * </ul>
+ * A publisher performs one synchronization and accepts a single subscriber. Cancelling the subscription aborts the
+ * synchronization, in which case the DCA is not updated, so the next synchronization retrieves the unpublished changes
+ * again.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type (determined by the {@link org.adsync4j.spi.LdapClient} implementation in
+ *                         use).
+ */
+public interface SyncPublisher<LDAP_ATTRIBUTE> {
+
+    /**
+     * Subscribes to the events of the synchronization, which is started when the subscription is established.
+     *
+     * @param subscriber The subscriber to publish the events to. A second subscriber is rejected through its {@link
+     *                   Subscriber#onError onError()} method.
+     */
+    void subscribe(Subscriber<? super SyncEvent<LDAP_ATTRIBUTE>> subscriber);
+
+    /**
+     * Receives the events of a synchronization.
+     */
+    interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Link between a {@link SyncPublisher} and its {@link Subscriber}, used to signal demand or to cancel the
+     * synchronization. Its methods can be called from any thread.
+     */
+    interface Subscription {
+
+        /**
+         * Adds the given number of events to the outstanding demand.
+         */
+        void request(long n);
+
+        void cancel();
+    }
+}
@@ -13,7 +13,8 @@
  *******************************************************************************/
 package org.adsync4j.impl;
 
-import org.adsync4j.api.ActiveDirectorySyncService;
+import org.adsync4j.api.BatchActiveDirectorySyncService;
+import org.adsync4j.api.FullSyncCheckpoint;
 import org.adsync4j.api.InitialFullSyncRequiredException;
 import org.adsync4j.api.InvocationIdMismatchException;
 import org.adsync4j.api.LdapClientException;
@@ -21,12 +22,18 @@ import org.adsync4j.spi.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.*;
 
 import static java.util.Arrays.asList;
+import static org.adsync4j.spi.BatchEntryProcessor.SyncType;
 import static org.adsync4j.impl.ActiveDirectorySyncServiceImpl.ActiveDirectoryAttribute.*;
 import static org.adsync4j.impl.UUIDUtils.bytesToUUID;
 
@@ -64,10 +71,22 @@ import static org.adsync4j.impl.UUIDUtils.bytesToUUID;
  */
 @NotThreadSafe
 public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainControllerAffiliation, LDAP_ATTRIBUTE>
-        implements ActiveDirectorySyncService<LDAP_ATTRIBUTE> {
+        implements BatchActiveDirectorySyncService<LDAP_ATTRIBUTE> {
 
     private final static Logger LOG = LoggerFactory.getLogger(ActiveDirectorySyncServiceImpl.class);
 
+    /**
+     * The default number of Update Sequence Numbers covered by one window of the synchronization operations that walk the
+     * USN range in windows.
+     */
+    public static final long DEFAULT_USN_WINDOW_SIZE = 50000;
+
+    /**
+     * The number of entries retrieved with a single search by {@link ActiveDirectorySyncServiceImpl#fingerprintSync
+     * fingerprintSync()}, which compiles a filter that lists the {@code objectGUID} of each entry to retrieve.
+     */
+    public static final int GUID_FILTER_BATCH_SIZE = 100;
+
     protected final DCA_KEY _dcaKey;
     protected final DCARepository<DCA_KEY, DCA_IMPL> _affiliationRepository;
     protected final LdapClient<LDAP_ATTRIBUTE> _ldapClient;
@@ -75,14 +94,46 @@ public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainCont
 
     protected DCA_IMPL _dcAffiliation;
 
+    @Nullable
+    protected LdapClientFactory<LDAP_ATTRIBUTE> _ldapClientFactory;
+
+    protected long _usnWindowSize = DEFAULT_USN_WINDOW_SIZE;
+
+    /**
+     * The {@code dsServiceName} root DSE attribute retrieved together with the highest committed USN at the beginning of the
+     * current sync operation (if the {@link LdapClient} in use is a {@link RootDSESnapshotLdapClient}).
+     */
+    @Nullable
+    private LDAP_ATTRIBUTE _dsServiceNameAttribute;
+
+    @Nullable
+    private AttributeHashStore _attributeHashStore;
+
+    /**
+     * The attribute hashes loaded from the {@link AttributeHashStore} (if the attribute hash filter is enabled). Kept between
+     * sync operations, and discarded when one of them fails.
+     */
+    @Nullable
+    private AttributeHashIndex _attributeHashIndex;
+
+    private long _invocationIdCacheTTLNanos;
+    @Nullable
+    private String _cachedInvocationIdOwnerDN;
+    @Nullable
+    private UUID _cachedInvocationId;
+    private long _invocationIdCachedAtNanos;
+
     /**
-     * Internal interface with two implementations encapsulating the logic of the full and incremental synchronization
-     * operations. Not to be directly used by clients.
+     * Internal interface with implementations encapsulating the logic of the different synchronization operations. Not to be
+     * directly used by clients.
+     * <p/>
+     * {@link SyncOperation#execute execute()} returns the USN that is to be recorded in the DCA as the highest committed USN
+     * once the operation completes. This is the remote highest committed USN passed in for most of the operations.
      *
      * @param <LDAP_ATTRIBUTE>
      */
     protected interface SyncOperation<LDAP_ATTRIBUTE> {
-        void execute(long remoteHighestCommittedUSN, EntryProcessor<LDAP_ATTRIBUTE> entryProcessor);
+        long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor);
     }
 
     /**
@@ -135,99 +186,1233 @@ public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainCont
             return _name;
         }
 
-        public String toString() {
-            return _name;
-        }
+        public String toString() {
+            return _name;
+        }
+    }
+
+    /**
+     * Constructs a synchronization service instance that is dedicated to work with the specific
+     * {@link DomainControllerAffiliation} record loaded from the provided {@link DCARepository} using the given {@code dcaKey}.
+     * This indirection makes it possible to relieve clients of the responsibility to update the highest committed Update
+     * Sequence Number in the DCA and to persist the updated record, which is crucial for the correct functioning of
+     * synchronization operations.
+     * <p/>
+     * <b>Important!</b>
+     * The provided {@link DCARepository} implementation must persist DCAs in the same physical database that stores the
+     * synchronized entries. This is necessary in order to ensure the consistency between the DCA and the synchronized data
+     * even if the database fails and has to be restored from a backup. Failing to do so will result in the need for a full
+     * re-synchronization after the database is restored.
+     *
+     * @param dcaKey                Key of the {@link DomainControllerAffiliation} based on which this service instance
+     *                              has to perform the synchronization operations. The passed {@code affiliationRepository} must
+     *                              contain a DCA assigned to this key.
+     * @param affiliationRepository Repository managing {@link DomainControllerAffiliation} entities.
+     * @param ldapClient            {@link LdapClient} used by the service to communicate with Active Directory.
+     */
+    public ActiveDirectorySyncServiceImpl(
+            DCA_KEY dcaKey,
+            DCARepository<DCA_KEY, DCA_IMPL> affiliationRepository,
+            LdapClient<LDAP_ATTRIBUTE> ldapClient)
+    {
+        _dcaKey = dcaKey;
+        _affiliationRepository = affiliationRepository;
+        _ldapClient = ldapClient;
+        _attributeResolver = _ldapClient.getAttributeResolver();
+    }
+
+    /**
+     * Performs a full synchronization that retrieves all entries currently found in the synchronization scope in Active
+     * Directory. Entries are delivered one-by-one to the caller by iteratively invoking {@link EntryProcessor#processNew
+     * processNew()} on the provided {@link EntryProcessor}.
+     * <p/>
+     * It ensures that the {@link DomainControllerAffiliation} this service instance uses is {@link DCARepository#save saved}
+     * after updating the current highest committed Update Sequence Number and the Invocation ID it contains.
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive
+     *                       the synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    @Override
+    public long fullSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return fullSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor));
+    }
+
+    /**
+     * Performs a full synchronization just like {@link ActiveDirectorySyncServiceImpl#fullSync fullSync()} does,
+     * but delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive
+     *                       the synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    @Override
+    public long fullSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return doSync(entryProcessor, SyncType.FULL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                String filter = getFilterWithUpperBoundUSN(_dcAffiliation.getSearchFilter(), remoteHighestCommittedUSN);
+
+                Iterable<List<LDAP_ATTRIBUTE[]>> searchResultPages = searchPages(
+                        _ldapClient, _dcAffiliation.getSyncBaseDN(), filter, _dcAffiliation.getAttributesToSync());
+
+                for (List<LDAP_ATTRIBUTE[]> page : searchResultPages) {
+                    entryProcessor.processNewEntries(toEntryList(page));
+                }
+
+                _dcAffiliation.setInvocationId(retrieveInvocationId());
+                return remoteHighestCommittedUSN;
+            }
+        });
+    }
+
+    /**
+     * Performs a full synchronization just like {@link ActiveDirectorySyncServiceImpl#fullSync fullSync()} does, but splits the
+     * range of Update Sequence Numbers between zero and the current highest committed USN into the given number of
+     * partitions, and retrieves the entries belonging to each partition (determined by their
+     * {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED} attribute) with a separate paged search executed in parallel on
+     * a dedicated LDAP connection. The {@link LdapClient}s used for the partitions are obtained from the factory set by
+     * {@link ActiveDirectorySyncServiceImpl#setLdapClientFactory setLdapClientFactory()}.
+     * <p/>
+     * <b>Important!</b>
+     * The {@link EntryProcessor#processNew processNew()} method of the provided {@link EntryProcessor} is invoked concurrently
+     * from the threads processing the partitions, so it must be thread-safe.
+     * <p/>
+     * The {@link DomainControllerAffiliation} this service instance uses is only updated and {@link DCARepository#save saved}
+     * after all partitions have been successfully processed. If any of the partitions fails, the rest of them are cancelled,
+     * and the DCA is left untouched.
+     *
+     * @param entryProcessor  Thread-safe {@link EntryProcessor} implementation provided by the caller in order to receive
+     *                        the synchronized entries.
+     * @param numOfPartitions The number of USN ranges (and parallel LDAP connections) to use.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if no {@link LdapClientFactory} has been set.
+     */
+    public long parallelFullSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor, int numOfPartitions) {
+        return parallelFullSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor), numOfPartitions);
+    }
+
+    /**
+     * Performs a parallel full synchronization just like {@link ActiveDirectorySyncServiceImpl#parallelFullSync
+     * parallelFullSync()} does, but delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     * {@link BatchEntryProcessor#processNewEntries processNewEntries()} is invoked concurrently from the threads processing
+     * the partitions, so it must be thread-safe.
+     *
+     * @param entryProcessor  Thread-safe {@link BatchEntryProcessor} implementation provided by the caller in order to receive
+     *                        the synchronized entries.
+     * @param numOfPartitions The number of USN ranges (and parallel LDAP connections) to use.
+     * @return The current highest committed Update Sequence Number on the server side.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if no {@link LdapClientFactory} has been set.
+     */
+    public long parallelFullSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, final int numOfPartitions) {
+        if (numOfPartitions < 1) {
+            throw new IllegalArgumentException("The number of partitions must be positive, got: " + numOfPartitions);
+        }
+        if (_ldapClientFactory == null) {
+            throw new IllegalStateException("An LdapClientFactory must be set in order to perform a parallel full sync.");
+        }
+
+        return doSync(entryProcessor, SyncType.FULL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                List<long[]> usnRanges = partitionUSNRange(remoteHighestCommittedUSN, numOfPartitions);
+                LOG.debug("Performing parallel full sync in {} partitions.", usnRanges.size());
+
+                queryPartitionsInParallel(entryProcessor, usnRanges);
+
+                _dcAffiliation.setInvocationId(retrieveInvocationId());
+                return remoteHighestCommittedUSN;
+            }
+        });
+    }
+
+    /**
+     * Splits the {@code [0, upperBoundUSN]} range into at most {@code numOfPartitions} contiguous sub-ranges of (nearly)
+     * equal size.
+     *
+     * @return List of {@code [lowerBound, upperBound]} pairs (both ends inclusive) in ascending order.
+     */
+    static List<long[]> partitionUSNRange(long upperBoundUSN, int numOfPartitions) {
+        long rangeSize = (upperBoundUSN + numOfPartitions) / numOfPartitions; // == ceil((upperBoundUSN + 1) / numOfPartitions)
+        List<long[]> ranges = new ArrayList<>(numOfPartitions);
+        for (long lowerBound = 0; lowerBound <= upperBoundUSN; lowerBound += rangeSize) {
+            ranges.add(new long[]{lowerBound, Math.min(lowerBound + rangeSize - 1, upperBoundUSN)});
+        }
+        return ranges;
+    }
+
+    /**
+     * Executes a search for each of the provided USN ranges in parallel, each on a separate {@link LdapClient} obtained from
+     * the {@link LdapClientFactory}, and feeds the retrieved entries to the entry processor. Returns only when all searches
+     * have completed. If a search fails, the others are interrupted right away, and the failure is propagated once they
+     * have stopped.
+     *
+     * @param entryProcessor Thread-safe call-back object implemented by the client.
+     * @param usnRanges      List of {@code [lowerBound, upperBound]} pairs determining the partitions.
+     */
+    private void queryPartitionsInParallel(
+            final BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, List<long[]> usnRanges)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(usnRanges.size());
+        try {
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            for (final long[] usnRange : usnRanges) {
+                final String filter = getFilterWithUSNRange(_dcAffiliation.getSearchFilter(), usnRange[0], usnRange[1]);
+                final String syncBaseDN = _dcAffiliation.getSyncBaseDN();
+                final List<String> attributesToSync = _dcAffiliation.getAttributesToSync();
+                final LdapClient<LDAP_ATTRIBUTE> partitionClient = _ldapClientFactory.createLdapClient();
+
+                completionService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (List<LDAP_ATTRIBUTE[]> page :
+                                    searchPages(partitionClient, syncBaseDN, filter, attributesToSync)) {
+                                entryProcessor.processNewEntries(toEntryList(page));
+                            }
+                        } finally {
+                            partitionClient.closeConnection();
+                        }
+                    }
+                }, null);
+            }
+            awaitAll(completionService, usnRanges.size());
+        } finally {
+            shutdownAndAwaitTermination(executor);
+        }
+    }
+
+    /**
+     * Interrupts the tasks of the provided executor, and waits for them to terminate, so that no task touches the entry
+     * processor or the LDAP connections any more once the calling sync operation has returned (or thrown an exception).
+     */
+    private static void shutdownAndAwaitTermination(ExecutorService executor) {
+        executor.shutdownNow();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the given number of tasks submitted to the provided completion service to complete. Tasks are awaited in the
+     * order they complete, so the exception thrown by any of them is propagated as soon as it is thrown, as an {@link
+     * LdapClientException} (unless it is of that type already).
+     */
+    private static void awaitAll(CompletionService<?> completionService, int numOfTasks) {
+        for (int i = 0; i < numOfTasks; i++) {
+            try {
+                await(completionService.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LdapClientException(e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the provided task to complete, and returns its result. Exceptions thrown by the task are propagated as {@link
+     * LdapClientException}s (unless they are of that type already).
+     */
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof LdapClientException ? (LdapClientException) cause : new LdapClientException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LdapClientException(e);
+        }
+    }
+
+    /**
+     * Performs a full synchronization that can be resumed after an interruption without retrieving the already processed
+     * entries again. Entries are delivered one-by-one to the caller by iteratively invoking {@link EntryProcessor#processNew
+     * processNew()} on the provided {@link EntryProcessor}.
+     * <p/>
+     * The range of Update Sequence Numbers between zero and the current highest committed USN is walked in consecutive
+     * windows (see {@link ActiveDirectorySyncServiceImpl#setUSNWindowSize setUSNWindowSize()}), and the entries whose
+     * {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED} attribute falls into a window are retrieved with a separate
+     * search. After all entries of a window have been delivered, a {@link FullSyncCheckpoint checkpoint} is recorded in the
+     * {@link DomainControllerAffiliation} this service instance uses, and the DCA is {@link DCARepository#save saved}.
+     * <p/>
+     * If the DCA contains a checkpoint when this method is invoked (because the previous full synchronization was interrupted)
+     * and the Invocation ID of the domain controller hasn't changed since then, the synchronization continues with the first
+     * unprocessed window, and up to the same highest committed USN as the interrupted one. Entries that have changed on the
+     * server since then will be retrieved by the next incremental synchronization. A checkpoint is also discarded if the DCA
+     * has recorded a higher USN since it was made (e.g. because incremental synchronizations have been performed in the
+     * meantime), since resuming it would move the highest committed USN of the DCA backwards.
+     * <p/>
+     * <b>Important!</b>
+     * The DCA must implement {@link CheckpointingDomainControllerAffiliation}. Since checkpoints are saved during the
+     * synchronization, the entry processor has to make sure that the entries delivered so far are persisted in the same
+     * transaction as the DCA (or earlier).
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive
+     *                       the synchronized entries.
+     * @return The highest committed Update Sequence Number recorded in the DCA that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if the DCA does not implement {@link CheckpointingDomainControllerAffiliation}.
+     */
+    public long resumableFullSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return resumableFullSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor));
+    }
+
+    /**
+     * Performs a resumable full synchronization just like {@link ActiveDirectorySyncServiceImpl#resumableFullSync
+     * resumableFullSync()} does, but delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive
+     *                       the synchronized entries.
+     * @return The highest committed Update Sequence Number recorded in the DCA.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if the DCA does not implement {@link CheckpointingDomainControllerAffiliation}.
+     */
+    public long resumableFullSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return doSync(entryProcessor, SyncType.FULL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                CheckpointingDomainControllerAffiliation checkpointingDCA = getCheckpointingAffiliation();
+                UUID invocationId = retrieveInvocationId();
+
+                long targetUSN = remoteHighestCommittedUSN;
+                long lowerBoundUSN = 0;
+
+                FullSyncCheckpoint checkpoint = checkpointingDCA.getFullSyncCheckpoint();
+                Long localHighestCommittedUSN = _dcAffiliation.getHighestCommittedUSN();
+                if (checkpoint != null) {
+                    if (!invocationId.equals(checkpoint.getInvocationId())) {
+                        LOG.info("Discarding checkpoint recorded with a different Invocation ID: {}", checkpoint);
+                        clearAttributeHashIndex();
+                    } else if (localHighestCommittedUSN != null && localHighestCommittedUSN > checkpoint.getTargetUSN()) {
+                        // resuming would move the highest committed USN in the DCA backwards
+                        LOG.info("Discarding checkpoint older than the DCA (highest committed USN: {}): {}",
+                                 localHighestCommittedUSN, checkpoint);
+                        clearAttributeHashIndex();
+                    } else {
+                        LOG.info("Resuming interrupted full sync from checkpoint: {}", checkpoint);
+                        targetUSN = checkpoint.getTargetUSN();
+                        lowerBoundUSN = checkpoint.getProcessedUpToUSN() + 1;
+                    }
+                }
+
+                for (long windowLowerBound = lowerBoundUSN; windowLowerBound <= targetUSN; ) {
+                    long windowUpperBound = Math.min(windowLowerBound + _usnWindowSize - 1, targetUSN);
+                    String filter = getFilterWithUSNRange(_dcAffiliation.getSearchFilter(), windowLowerBound, windowUpperBound);
+
+                    Iterable<List<LDAP_ATTRIBUTE[]>> searchResultPages = searchPages(
+                            _ldapClient, _dcAffiliation.getSyncBaseDN(), filter, _dcAffiliation.getAttributesToSync());
+
+                    for (List<LDAP_ATTRIBUTE[]> page : searchResultPages) {
+                        entryProcessor.processNewEntries(toEntryList(page));
+                    }
+
+                    getCheckpointingAffiliation().setFullSyncCheckpoint(
+                            new FullSyncCheckpoint(invocationId, targetUSN, windowUpperBound));
+                    saveAffiliation();
+
+                    windowLowerBound = windowUpperBound + 1;
+                }
+
+                getCheckpointingAffiliation().setFullSyncCheckpoint(null);
+                _dcAffiliation.setInvocationId(invocationId);
+                return targetUSN;
+            }
+        });
+    }
+
+    private CheckpointingDomainControllerAffiliation getCheckpointingAffiliation() {
+        if (!(_dcAffiliation instanceof CheckpointingDomainControllerAffiliation)) {
+            throw new IllegalStateException(
+                    "The Domain Controller Affiliation record must implement CheckpointingDomainControllerAffiliation " +
+                    "in order to perform a resumable full sync.");
+        }
+        return (CheckpointingDomainControllerAffiliation) _dcAffiliation;
+    }
+
+    /**
+     * Performs a full synchronization just like {@link ActiveDirectorySyncServiceImpl#fullSync fullSync()} does, but also
+     * detects orphans: entries that are known by the caller, but no longer exist in the synchronization scope (e.g. because
+     * they were deleted and their tombstones have already been garbage collected, so an incremental sync can't report them).
+     * <p/>
+     * The IDs of the entries known by the caller are passed in a {@link UUIDSet}. Every entry retrieved during the full sync is
+     * removed from this set, and once all entries have been delivered, the ones remaining in the set are reported as deleted by
+     * invoking {@link EntryProcessor#processDeleted processDeleted()}. When the method returns, the set contains the IDs of the
+     * orphans.
+     * <p/>
+     * The attributes to sync must include {@link LdapClient#OBJECT_GUID objectGUID}, as that's the ID by which the retrieved
+     * entries are matched against the known ones. Unlike {@link ActiveDirectorySyncServiceImpl#fullSync fullSync()}, this
+     * method also delivers the entries changed after the returned highest committed USN (so that they aren't mistaken for
+     * orphans), which are then delivered once again by the next incremental synchronization.
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
+     *                       entries.
+     * @param knownEntryIds  The {@code objectGUID}s of the entries known by the caller.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if the attributes to sync don't include {@code objectGUID}.
+     */
+    public long fullSyncWithOrphanDetection(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor, UUIDSet knownEntryIds) {
+        return fullSyncWithOrphanDetectionInBatches(new EntryProcessorBatchAdapter<>(entryProcessor), knownEntryIds);
+    }
+
+    /**
+     * Performs a full synchronization with orphan detection just like {@link
+     * ActiveDirectorySyncServiceImpl#fullSyncWithOrphanDetection fullSyncWithOrphanDetection()} does, but delivers entries
+     * (and the IDs of orphans) in batches to the provided {@link BatchEntryProcessor}.
+     */
+    public long fullSyncWithOrphanDetectionInBatches(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, final UUIDSet knownEntryIds)
+    {
+        return doSync(entryProcessor, SyncType.FULL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                int objectGuidPosition = getObjectGuidPosition("to detect orphans");
+
+                for (List<LDAP_ATTRIBUTE[]> page : searchWholeSyncScope(_dcAffiliation.getAttributesToSync())) {
+                    for (LDAP_ATTRIBUTE[] entry : page) {
+                        UUID entryId = getEntryId(entry[objectGuidPosition]);
+                        if (entryId != null) {
+                            knownEntryIds.remove(entryId);
+                        }
+                    }
+                    entryProcessor.processNewEntries(toEntryList(page));
+                }
+
+                LOG.debug("Number of orphans detected: {}", knownEntryIds.size());
+                for (List<UUID> orphans : Pages.split(knownEntryIds, LdapClient.DEFAULT_PAGE_SIZE)) {
+                    entryProcessor.processDeletedEntries(orphans);
+                }
+
+                _dcAffiliation.setInvocationId(retrieveInvocationId());
+                return remoteHighestCommittedUSN;
+            }
+        });
+    }
+
+    /**
+     * Performs a reconciliation that brings the local store of the caller in sync with Active Directory by delivering only the
+     * entries that actually differ, instead of re-delivering every entry like {@link ActiveDirectorySyncServiceImpl#fullSync
+     * fullSync()} does. This is the cheapest way to recover from an {@link InvocationIdMismatchException} (e.g. after the
+     * domain controller has been restored from a backup), when most of the entries in the local store are still up-to-date.
+     * <p/>
+     * Every entry in the synchronization scope is retrieved together with its {@code objectGUID} and {@link
+     * ActiveDirectoryAttribute#USN_CHANGED uSNChanged} attributes, which are compared against the provided {@link
+     * LocalEntryView}:
+     * <ul>
+     * <li>entries not present in the view are reported as new,</li>
+     * <li>entries recorded with a different {@code uSNChanged} value are reported as changed,</li>
+     * <li>entries found in the view but not on the server are reported as deleted,</li>
+     * <li>and the rest of the entries are not reported at all.</li>
+     * </ul>
+     * Since the events are deltas, the entry processor is notified about the beginning of an {@link SyncType#INCREMENTAL
+     * incremental} sync. Just like after a full sync, the DCA is updated with the current Invocation ID and highest committed
+     * USN, so that incremental synchronization can be resumed. Entries changed while the reconciliation is running are
+     * reported as changed (and once again by the next incremental synchronization), rather than being mistaken for deleted
+     * ones.
+     * <p/>
+     * The {@code uSNChanged} values in the view must have been read from the same domain controller (the one that the DCA is
+     * affiliated with), otherwise all entries will be reported as changed.
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
+     *                       entries.
+     * @param localEntryView The view of the entries in the local store of the caller.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    public long reconciliationSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor, LocalEntryView localEntryView) {
+        return reconciliationSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor), localEntryView);
+    }
+
+    /**
+     * Performs a reconciliation just like {@link ActiveDirectorySyncServiceImpl#reconciliationSync reconciliationSync()} does,
+     * but delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     */
+    public long reconciliationSyncInBatches(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, final LocalEntryView localEntryView)
+    {
+        return doSync(entryProcessor, SyncType.INCREMENTAL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                UUIDSet unseenEntryIds = collectEntryIds(localEntryView);
+
+                List<String> attributes = new OnePlusListList<>(USN_CHANGED.key(),
+                        new OnePlusListList<>(LdapClient.OBJECT_GUID, _dcAffiliation.getAttributesToSync()));
+
+                for (List<LDAP_ATTRIBUTE[]> page : searchWholeSyncScope(attributes)) {
+                    reconcilePage(entryProcessor, page, localEntryView, unseenEntryIds);
+                }
+
+                deliverAsDeleted(entryProcessor, unseenEntryIds);
+
+                _dcAffiliation.setInvocationId(retrieveInvocationId());
+                return remoteHighestCommittedUSN;
+            }
+        });
+    }
+
+    /**
+     * Compares the entries of a page retrieved during reconciliation against the local view, and delivers the new and changed
+     * ones to the provided call-back object as a single batch (see {@link Pages#deliverNewAndChangedEntries}). It is
+     * expected that the provided attribute arrays contain the {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED} and
+     * the {@code objectGUID} attributes in their first two positions, which are stripped from the delivered entries.
+     */
+    private void reconcilePage(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, List<LDAP_ATTRIBUTE[]> page, LocalEntryView localEntryView,
+            UUIDSet unseenEntryIds)
+    {
+        List<List<LDAP_ATTRIBUTE>> entries = new ArrayList<>(page.size());
+        BitSet newEntries = new BitSet(page.size());
+
+        for (LDAP_ATTRIBUTE[] entry : page) {
+            ReconciliationResult result = reconcile(getEntryId(entry[1]), entry[0], localEntryView, unseenEntryIds);
+            if (result != ReconciliationResult.UNCHANGED) {
+                newEntries.set(entries.size(), result == ReconciliationResult.NEW);
+                entries.add(asList(entry).subList(2, entry.length));
+            }
+        }
+
+        Pages.deliverNewAndChangedEntries(entryProcessor, entries, newEntries);
+    }
+
+    /**
+     * Performs a two-phase reconciliation that has the same outcome as {@link ActiveDirectorySyncServiceImpl#reconciliationSync
+     * reconciliationSync()}, but transfers a lot less data when most entries in the local store of the caller are up-to-date,
+     * which makes it suitable for periodic full refreshes.
+     * <p/>
+     * The first phase retrieves only the {@code objectGUID} and {@link ActiveDirectoryAttribute#USN_CHANGED uSNChanged}
+     * attributes (the fingerprint) of every entry in the synchronization scope, and compares them against the provided {@link
+     * LocalEntryView}. The second phase retrieves the attributes to sync of the new and changed entries only, using searches
+     * that list the {@code objectGUID}s of {@link ActiveDirectorySyncServiceImpl#GUID_FILTER_BATCH_SIZE GUID_FILTER_BATCH_SIZE}
+     * entries in their filter. Entries that are changed during the first phase or between the two phases are delivered with
+     * their latest attributes (and once again by the next incremental synchronization).
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
+     *                       entries.
+     * @param localEntryView The view of the entries in the local store of the caller.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    public long fingerprintSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor, LocalEntryView localEntryView) {
+        return fingerprintSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor), localEntryView);
+    }
+
+    /**
+     * Performs a two-phase reconciliation just like {@link ActiveDirectorySyncServiceImpl#fingerprintSync fingerprintSync()}
+     * does, but delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     */
+    public long fingerprintSyncInBatches(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, final LocalEntryView localEntryView)
+    {
+        return doSync(entryProcessor, SyncType.INCREMENTAL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                UUIDSet unseenEntryIds = collectEntryIds(localEntryView);
+                UUIDSet newEntryIds = new UUIDSet();
+                UUIDSet changedEntryIds = new UUIDSet();
+
+                List<String> fingerprintAttributes = asList(USN_CHANGED.key(), LdapClient.OBJECT_GUID);
+
+                for (List<LDAP_ATTRIBUTE[]> page : searchWholeSyncScope(fingerprintAttributes)) {
+                    for (LDAP_ATTRIBUTE[] fingerprint : page) {
+                        UUID entryId = getEntryId(fingerprint[1]);
+                        if (entryId == null) {
+                            continue;
+                        }
+                        switch (reconcile(entryId, fingerprint[0], localEntryView, unseenEntryIds)) {
+                            case NEW:
+                                newEntryIds.add(entryId);
+                                break;
+                            case CHANGED:
+                                changedEntryIds.add(entryId);
+                                break;
+                        }
+                    }
+                }
+
+                LOG.debug("Fingerprints compared, number of new entries: {}, number of changed entries: {}",
+                          newEntryIds.size(), changedEntryIds.size());
+                fetchEntries(entryProcessor, newEntryIds, true);
+                fetchEntries(entryProcessor, changedEntryIds, false);
+                deliverAsDeleted(entryProcessor, unseenEntryIds);
+
+                _dcAffiliation.setInvocationId(retrieveInvocationId());
+                return remoteHighestCommittedUSN;
+            }
+        });
+    }
+
+    /**
+     * Retrieves the entries identified by the given {@code objectGUID}s with searches that list {@link
+     * ActiveDirectorySyncServiceImpl#GUID_FILTER_BATCH_SIZE GUID_FILTER_BATCH_SIZE} IDs in their filter, and delivers them to
+     * the provided call-back object either as new or changed entries.
+     */
+    private void fetchEntries(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, UUIDSet entryIds, boolean areNewEntries) {
+        for (List<UUID> batch : Pages.split(entryIds, GUID_FILTER_BATCH_SIZE)) {
+            String filter = and(_dcAffiliation.getSearchFilter(), getObjectGuidFilter(batch));
+            for (List<LDAP_ATTRIBUTE[]> page :
+                    searchPages(_ldapClient, _dcAffiliation.getSyncBaseDN(), filter, _dcAffiliation.getAttributesToSync())) {
+                if (areNewEntries) {
+                    entryProcessor.processNewEntries(toEntryList(page));
+                } else {
+                    entryProcessor.processChangedEntries(toEntryList(page));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles an LDAP filter expression that matches the entries with any of the given {@code objectGUID}s.
+     */
+    static String getObjectGuidFilter(List<UUID> entryIds) {
+        StringBuilder filter = new StringBuilder("(|");
+        for (UUID entryId : entryIds) {
+            filter.append('(').append(LdapClient.OBJECT_GUID).append('=');
+            for (byte b : UUIDUtils.uuidToBytes(entryId)) {
+                filter.append('\\').append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            filter.append(')');
+        }
+        return filter.append(')').toString();
+    }
+
+    /**
+     * The outcome of comparing an entry retrieved from the server against the {@link LocalEntryView}.
+     */
+    private enum ReconciliationResult {
+        NEW, CHANGED, UNCHANGED
+    }
+
+    /**
+     * Compares an entry retrieved from the server against the {@link LocalEntryView}, and removes it from the set of entries
+     * that have not been seen on the server yet.
+     *
+     * @param entryId             The {@code objectGUID} of the entry.
+     * @param usnChangedAttribute The {@link ActiveDirectoryAttribute#USN_CHANGED uSNChanged} attribute of the entry.
+     */
+    private ReconciliationResult reconcile(
+            @Nullable UUID entryId, @Nullable LDAP_ATTRIBUTE usnChangedAttribute, LocalEntryView localEntryView,
+            UUIDSet unseenEntryIds)
+    {
+        if (entryId == null) {
+            return ReconciliationResult.NEW;
+        }
+        unseenEntryIds.remove(entryId);
+
+        Long localUSNChanged = localEntryView.getUSNChanged(entryId);
+        if (localUSNChanged == null) {
+            return ReconciliationResult.NEW;
+        }
+        boolean isChanged = usnChangedAttribute == null ||
+                            !localUSNChanged.equals(_attributeResolver.getAsLong(usnChangedAttribute));
+        return isChanged ? ReconciliationResult.CHANGED : ReconciliationResult.UNCHANGED;
+    }
+
+    @Nullable
+    private UUID getEntryId(@Nullable LDAP_ATTRIBUTE objectGuidAttribute) {
+        return objectGuidAttribute == null ? null : bytesToUUID(_attributeResolver.getAsByteArray(objectGuidAttribute));
+    }
+
+    private static UUIDSet collectEntryIds(LocalEntryView localEntryView) {
+        UUIDSet entryIds = new UUIDSet();
+        for (UUID entryId : localEntryView.getEntryIds()) {
+            entryIds.add(entryId);
+        }
+        return entryIds;
+    }
+
+    private void deliverAsDeleted(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, UUIDSet entryIds) {
+        LOG.debug("Number of local entries not found on the server: {}", entryIds.size());
+        for (List<UUID> page : Pages.split(entryIds, LdapClient.DEFAULT_PAGE_SIZE)) {
+            entryProcessor.processDeletedEntries(page);
+        }
+    }
+
+    /**
+     * Performs an incremental synchronization that only retrieves the entries created/changed/deleted after the point of time
+     * represented by the highest committed Update Sequence Number that has been recorded by the last synchronization. Entries
+     * are delivered one-by-one to the caller by iteratively invoking the corresponding methods of the provided
+     * {@link EntryProcessor}.
+     * <p/>
+     * It ensures that the {@link DomainControllerAffiliation} this service instance uses is {@link DCARepository#save saved}
+     * after updating the current highest committed Update Sequence Number and the Invocation ID it contains.
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
+     *                       entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    @Override
+    public long incrementalSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return incrementalSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor));
+    }
+
+    /**
+     * Performs an incremental synchronization just like {@link ActiveDirectorySyncServiceImpl#incrementalSync
+     * incrementalSync()} does, but delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    @Override
+    public long incrementalSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return doSync(entryProcessor, SyncType.INCREMENTAL, createIncrementalSyncOperation());
+    }
+
+    private SyncOperation<LDAP_ATTRIBUTE> createIncrementalSyncOperation() {
+        return new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                assertIncrementalSyncIsPossible();
+                queryChangedAndNewEntries(entryProcessor, remoteHighestCommittedUSN);
+                queryDeletedEntries(entryProcessor, remoteHighestCommittedUSN);
+                return remoteHighestCommittedUSN;
+            }
+        };
+    }
+
+    /**
+     * Performs an incremental synchronization just like {@link ActiveDirectorySyncServiceImpl#incrementalSync
+     * incrementalSync()} does, but only if the highest committed USN of the server differs from the one recorded in the DCA.
+     * Since every change made on the domain controller increments its highest committed USN, equal USNs mean that there is
+     * nothing to synchronize, in which case the method returns after reading a single root DSE attribute: no searches are
+     * performed, the entry processor is not invoked, and the DCA is not saved.
+     * <p/>
+     * Useful for frequent polling of domains that change rarely. Note that the Invocation ID is only verified when an
+     * incremental synchronization is actually performed.
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
+     *                       entries.
+     * @return The current highest committed Update Sequence Number on the server side.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    public long incrementalSyncIfChanged(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return incrementalSyncIfChangedInBatches(new EntryProcessorBatchAdapter<>(entryProcessor));
+    }
+
+    /**
+     * Performs an incremental synchronization just like {@link ActiveDirectorySyncServiceImpl#incrementalSyncIfChanged
+     * incrementalSyncIfChanged()} does, but delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    public long incrementalSyncIfChangedInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        reloadAffiliation();
+        Long lastSeenHighestCommittedUSN = _dcAffiliation.getHighestCommittedUSN();
+        if (lastSeenHighestCommittedUSN != null) {
+            long remoteHighestCommittedUSN;
+            try {
+                remoteHighestCommittedUSN = probeRemoteHighestCommittedUSN();
+            } catch (RuntimeException e) {
+                _ldapClient.closeConnection();
+                throw e;
+            }
+            if (remoteHighestCommittedUSN == lastSeenHighestCommittedUSN) {
+                LOG.debug("The highest committed USN is still {}, skipping incremental sync.", remoteHighestCommittedUSN);
+                _ldapClient.closeConnection();
+                return remoteHighestCommittedUSN;
+            }
+        }
+        return doSyncWithLoadedAffiliation(entryProcessor, SyncType.INCREMENTAL, createIncrementalSyncOperation());
+    }
+
+    /**
+     * Reads only the highest committed USN from the root DSE of the server (as opposed to {@link
+     * ActiveDirectorySyncServiceImpl#retrieveRemoteHighestCommittedUSN()}, which might read other attributes as well).
+     */
+    private long probeRemoteHighestCommittedUSN() {
+        LDAP_ATTRIBUTE hcusnAttribute = _ldapClient.getRootDSEAttribute(HIGHEST_COMMITTED_USN.key());
+        Long hcusn = _attributeResolver.getAsLong(hcusnAttribute);
+        LdapClientException.throwIfNull(hcusn,
+                "Invalid Update Sequence Number encountered: %s.", String.valueOf(hcusnAttribute));
+//      noinspection ConstantConditions
+        return hcusn;
+    }
+
+    /**
+     * Performs a full synchronization just like {@link ActiveDirectorySyncServiceImpl#fullSync fullSync()} does, but delivers
+     * entries through a reused flyweight list view (see {@link FlyweightEntryProcessor}). If the {@link LdapClient} in use is
+     * a {@link FlyweightLdapClient}, the entries are delivered without any per-entry allocation on the side of ADSync4J.
+     *
+     * @param entryProcessor {@link FlyweightEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if the attribute hash filter is enabled, as it can't be applied to flyweight entries.
+     */
+    public long flyweightFullSync(final FlyweightEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return doFlyweightSync(entryProcessor, SyncType.FULL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> unused) {
+                String filter = getFilterWithUpperBoundUSN(_dcAffiliation.getSearchFilter(), remoteHighestCommittedUSN);
+                final AttributeArrayView<LDAP_ATTRIBUTE> entryView = new AttributeArrayView<>();
+
+                search(_ldapClient, _dcAffiliation.getSyncBaseDN(), filter, _dcAffiliation.getAttributesToSync(),
+                        new FlyweightLdapClient.EntryHandler<LDAP_ATTRIBUTE>() {
+                            @Override
+                            public void handleEntry(LDAP_ATTRIBUTE[] entry) {
+                                entryProcessor.processNew(entryView.wrap(entry, 0));
+                            }
+                        });
+
+                _dcAffiliation.setInvocationId(retrieveInvocationId());
+                return remoteHighestCommittedUSN;
+            }
+        });
+    }
+
+    /**
+     * Performs an incremental synchronization just like {@link ActiveDirectorySyncServiceImpl#incrementalSync
+     * incrementalSync()} does, but delivers entries through a reused flyweight list view, and the IDs of deleted entries as
+     * primitive values (see {@link FlyweightEntryProcessor}). If the {@link LdapClient} in use is a {@link
+     * FlyweightLdapClient}, the entries are delivered without any per-entry allocation on the side of ADSync4J.
+     *
+     * @param entryProcessor {@link FlyweightEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if the attribute hash filter is enabled, as it can't be applied to flyweight entries.
+     */
+    public long flyweightIncrementalSync(final FlyweightEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return doFlyweightSync(entryProcessor, SyncType.INCREMENTAL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> unused) {
+                assertIncrementalSyncIsPossible();
+
+                final long lastSyncedUSN = _dcAffiliation.getHighestCommittedUSN();
+                String filter = getFilterWithUSNRange(_dcAffiliation.getSearchFilter(), lastSyncedUSN, remoteHighestCommittedUSN);
+                List<String> attributes = new OnePlusListList<>(USN_CREATED.key(), _dcAffiliation.getAttributesToSync());
+                final AttributeArrayView<LDAP_ATTRIBUTE> entryView = new AttributeArrayView<>();
+
+                search(_ldapClient, _dcAffiliation.getSyncBaseDN(), filter, attributes,
+                        new FlyweightLdapClient.EntryHandler<LDAP_ATTRIBUTE>() {
+                            @Override
+                            public void handleEntry(LDAP_ATTRIBUTE[] entry) {
+                                // the view skips the prepended USN_CREATED attribute
+                                if (isNewEntry(entry, lastSyncedUSN)) {
+                                    entryProcessor.processNew(entryView.wrap(entry, 1));
+                                } else {
+                                    entryProcessor.processChanged(entryView.wrap(entry, 1));
+                                }
+                            }
+                        });
+
+                String deletedFilter = getFilterWithUSNRange(
+                        _dcAffiliation.getSearchDeletedObjectsFilter(), lastSyncedUSN, remoteHighestCommittedUSN);
+                searchDeleted(_ldapClient, _dcAffiliation.getRootDN(), deletedFilter,
+                        new FlyweightLdapClient.DeletedEntryHandler() {
+                            @Override
+                            public void handleDeletedEntry(long mostSignificantBits, long leastSignificantBits) {
+                                entryProcessor.processDeleted(mostSignificantBits, leastSignificantBits);
+                            }
+                        });
+
+                return remoteHighestCommittedUSN;
+            }
+        });
+    }
+
+    /**
+     * Same as {@link ActiveDirectorySyncServiceImpl#doSync doSync()}, but for sync operations that deliver entries directly to
+     * a {@link FlyweightEntryProcessor}.
+     */
+    private long doFlyweightSync(
+            FlyweightEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, SyncType syncType,
+            SyncOperation<LDAP_ATTRIBUTE> syncOperation)
+    {
+        if (_attributeHashStore != null) {
+            throw new IllegalStateException("The attribute hash filter can't be used with flyweight synchronization operations.");
+        }
+        return doSync(new EntryProcessorBatchAdapter<>(entryProcessor), syncType, syncOperation);
+    }
+
+    /**
+     * Performs an incremental synchronization that walks the range of Update Sequence Numbers between the last and the current
+     * highest committed USN in consecutive windows (see {@link ActiveDirectorySyncServiceImpl#setUSNWindowSize
+     * setUSNWindowSize()}). Entries are delivered one-by-one to the caller by iteratively invoking the corresponding methods
+     * of the provided {@link EntryProcessor}.
+     * <p/>
+     * Changed/new and deleted entries are retrieved with separate searches for each window, and the upper limit of the window
+     * is recorded in the {@link DomainControllerAffiliation} as the highest committed USN (and the DCA is {@link
+     * DCARepository#save saved}) once all of its entries have been delivered. This makes catching up with a large backlog of
+     * changes a series of bounded units of work: if the synchronization fails, the next one continues with the first window
+     * that hasn't been completed.
+     * <p/>
+     * <b>Important!</b>
+     * Since the DCA is saved during the synchronization, the entry processor has to make sure that the entries delivered so
+     * far are persisted in the same transaction as the DCA (or earlier). Also note that an entry created in a completed window
+     * of an interrupted synchronization is reported as changed by the next one, even if it has not been delivered before
+     * (because it was changed again after the window has been completed).
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
+     *                       entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    public long windowedIncrementalSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return windowedIncrementalSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor));
+    }
+
+    /**
+     * Performs an incremental synchronization just like {@link ActiveDirectorySyncServiceImpl#incrementalSync
+     * incrementalSync()} does, but executes the search for deleted entries in parallel with the search for changed/new
+     * entries on a separate {@link LdapClient} obtained from the factory set by {@link
+     * ActiveDirectorySyncServiceImpl#setLdapClientFactory setLdapClientFactory()}. The time it takes to retrieve the changes
+     * is thus determined by the slower of the two searches rather than the sum of them.
+     * <p/>
+     * The entry processor is only invoked from the calling thread: the IDs of deleted entries are collected in memory while
+     * the changed/new entries are being delivered, and they are passed to the entry processor afterwards.
+     *
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
+     *                       entries.
+     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
+     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if no {@link LdapClientFactory} has been set.
+     */
+    public long concurrentIncrementalSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return concurrentIncrementalSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor));
+    }
+
+    /**
+     * Performs a concurrent incremental synchronization just like {@link
+     * ActiveDirectorySyncServiceImpl#concurrentIncrementalSync concurrentIncrementalSync()} does, but delivers entries in
+     * batches to the provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if no {@link LdapClientFactory} has been set.
+     */
+    public long concurrentIncrementalSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        if (_ldapClientFactory == null) {
+            throw new IllegalStateException(
+                    "An LdapClientFactory must be set in order to perform a concurrent incremental sync.");
+        }
+
+        return doSync(entryProcessor, SyncType.INCREMENTAL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                assertIncrementalSyncIsPossible();
+
+                ExecutorService executor = Executors.newSingleThreadExecutor();
+                try {
+                    Future<List<List<UUID>>> deletedEntries =
+                            executor.submit(collectDeletedEntries(remoteHighestCommittedUSN));
+
+                    queryChangedAndNewEntries(entryProcessor, remoteHighestCommittedUSN);
+
+                    for (List<UUID> page : await(deletedEntries)) {
+                        entryProcessor.processDeletedEntries(page);
+                    }
+                } finally {
+                    shutdownAndAwaitTermination(executor);
+                }
+
+                return remoteHighestCommittedUSN;
+            }
+        });
+    }
+
+    /**
+     * Creates a task that retrieves the ID of every entry that has been deleted since the last synchronization on a separate
+     * {@link LdapClient} obtained from the {@link LdapClientFactory}, and returns them page by page.
+     *
+     * @param upperBoundUSN The USN read at the start of synchronization. Marks the point of time until which deleted entries
+     *                      should be retrieved.
+     */
+    private Callable<List<List<UUID>>> collectDeletedEntries(long upperBoundUSN) {
+        final String rootDN = _dcAffiliation.getRootDN();
+        final String filter = getFilterWithLowerAndUpperBoundUSN(_dcAffiliation.getSearchDeletedObjectsFilter(), upperBoundUSN);
+        final LdapClient<LDAP_ATTRIBUTE> deletedEntriesClient = _ldapClientFactory.createLdapClient();
+
+        return new Callable<List<List<UUID>>>() {
+            @Override
+            public List<List<UUID>> call() {
+                try {
+                    List<List<UUID>> pages = new ArrayList<>();
+                    for (List<UUID> page : searchDeletedPages(deletedEntriesClient, rootDN, filter)) {
+                        pages.add(page);
+                    }
+                    return pages;
+                } finally {
+                    deletedEntriesClient.closeConnection();
+                }
+            }
+        };
+    }
+
+    /**
+     * Performs a windowed incremental synchronization just like {@link ActiveDirectorySyncServiceImpl#windowedIncrementalSync
+     * windowedIncrementalSync()} does, but delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     */
+    public long windowedIncrementalSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return doSync(entryProcessor, SyncType.INCREMENTAL, new SyncOperation<LDAP_ATTRIBUTE>() {
+            @Override
+            public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                assertIncrementalSyncIsPossible();
+                long lastSyncedUSN = _dcAffiliation.getHighestCommittedUSN();
+
+                long windowLowerBound = lastSyncedUSN;
+                long windowUpperBound = Math.min(windowLowerBound + _usnWindowSize - 1, remoteHighestCommittedUSN);
+                queryChangedAndNewEntries(entryProcessor, windowLowerBound, windowUpperBound, lastSyncedUSN);
+                queryDeletedEntries(entryProcessor, windowLowerBound, windowUpperBound);
+
+                while (windowUpperBound < remoteHighestCommittedUSN) {
+                    // the last window is recorded by doSync()
+                    _dcAffiliation.setHighestCommittedUSN(windowUpperBound);
+                    saveAffiliation();
+
+                    windowLowerBound = windowUpperBound + 1;
+                    windowUpperBound = Math.min(windowLowerBound + _usnWindowSize - 1, remoteHighestCommittedUSN);
+                    queryChangedAndNewEntries(entryProcessor, windowLowerBound, windowUpperBound, lastSyncedUSN);
+                    queryDeletedEntries(entryProcessor, windowLowerBound, windowUpperBound);
+                }
+
+                return remoteHighestCommittedUSN;
+            }
+        });
     }
 
     /**
-     * Constructs a synchronization service instance that is dedicated to work with the specific
-     * {@link DomainControllerAffiliation} record loaded from the provided {@link DCARepository} using the given {@code dcaKey}.
-     * This indirection makes it possible to relieve clients of the responsibility to update the highest committed Update
-     * Sequence Number in the DCA and to persist the updated record, which is crucial for the correct functioning of
-     * synchronization operations.
+     * Performs a synchronization based on the DirSync LDAP control of Active Directory (see {@link DirSyncLdapClient}).
+     * Entries are delivered one-by-one to the caller by iteratively invoking the corresponding methods of the provided {@link
+     * EntryProcessor}.
+     * <p/>
+     * If the {@link DomainControllerAffiliation} this service instance uses doesn't contain a DirSync cookie yet, every entry
+     * satisfying the search criteria is retrieved and delivered as a new entry (just like in case of a {@link
+     * ActiveDirectorySyncServiceImpl#fullSync full synchronization}). Otherwise only the changes made since the previous
+     * DirSync based synchronization are retrieved, and <b>changed entries only contain the attributes that have actually
+     * changed</b> (the rest of the attributes are {@code null}). Changed and deleted entries are retrieved with the same
+     * search.
+     * <p/>
+     * The cookie returned by the server is recorded in the DCA together with the highest committed USN, so DirSync based and
+     * {@link ActiveDirectorySyncServiceImpl#incrementalSync USN based incremental} synchronizations can be used interchangeably
+     * once the first one of them has completed.
      * <p/>
      * <b>Important!</b>
-     * The provided {@link DCARepository} implementation must persist DCAs in the same physical database that stores the
-     * synchronized entries. This is necessary in order to ensure the consistency between the DCA and the synchronized data
-     * even if the database fails and has to be restored from a backup. Failing to do so will result in the need for a full
-     * re-synchronization after the database is restored.
+     * The DCA must implement {@link DirSyncDomainControllerAffiliation}, and the {@link LdapClient} must implement {@link
+     * DirSyncLdapClient}. Note that DirSync searches require the "Replicating Directory Changes" permission on the domain.
      *
-     * @param dcaKey                Key of the {@link DomainControllerAffiliation} based on which this service instance
-     *                              has to perform the synchronization operations. The passed {@code affiliationRepository} must
-     *                              contain a DCA assigned to this key.
-     * @param affiliationRepository Repository managing {@link DomainControllerAffiliation} entities.
-     * @param ldapClient            {@link LdapClient} used by the service to communicate with Active Directory.
+     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
+     *                       entries.
+     * @return The current highest committed Update Sequence Number on the server side.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if the DCA or the {@link LdapClient} doesn't support DirSync.
      */
-    public ActiveDirectorySyncServiceImpl(
-            DCA_KEY dcaKey,
-            DCARepository<DCA_KEY, DCA_IMPL> affiliationRepository,
-            LdapClient<LDAP_ATTRIBUTE> ldapClient)
-    {
-        _dcaKey = dcaKey;
-        _affiliationRepository = affiliationRepository;
-        _ldapClient = ldapClient;
-        _attributeResolver = _ldapClient.getAttributeResolver();
+    public long dirSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return dirSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor));
     }
 
     /**
-     * Performs a full synchronization that retrieves all entries currently found in the synchronization scope in Active
-     * Directory. Entries are delivered one-by-one to the caller by iteratively invoking {@link EntryProcessor#processNew
-     * processNew()} on the provided {@link EntryProcessor}.
+     * Performs a DirSync based synchronization just like {@link ActiveDirectorySyncServiceImpl#dirSync dirSync()} does, but
+     * delivers entries in batches to the provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries.
+     * @return The current highest committed Update Sequence Number on the server side.
+     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if the DCA or the {@link LdapClient} doesn't support DirSync.
+     */
+    public long dirSyncInBatches(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return doDirSync(entryProcessor, null, Collections.<String>emptyList());
+    }
+
+    /**
+     * Performs a DirSync based synchronization just like {@link ActiveDirectorySyncServiceImpl#dirSync dirSync()} does, but
+     * reports the changes of the given linked multi-valued attributes (like the {@code member} attribute of groups) as deltas
+     * through {@link MembershipDeltaEntryProcessor#processMembershipDelta processMembershipDelta()}. This way adding a member
+     * to a huge group costs as much as the single added value, instead of the whole {@code member} attribute being delivered
+     * again with the changed entry.
      * <p/>
-     * It ensures that the {@link DomainControllerAffiliation} this service instance uses is {@link DCARepository#save saved}
-     * after updating the current highest committed Update Sequence Number and the Invocation ID it contains.
+     * The linked attributes are always {@code null} in the delivered entries (even if they are listed in the attributes to
+     * sync). The initial synchronization (when the DCA has no DirSync cookie yet) reports every value of the linked attributes
+     * as added. An entry of which only the linked attributes have changed is still delivered as changed (with {@code null}
+     * values for the attributes that haven't changed), before its deltas.
+     * <p/>
+     * <b>Important!</b>
+     * The {@link LdapClient} must implement {@link IncrementalValuesDirSyncLdapClient}. The same DCA should be synchronized
+     * either always with or always without membership deltas, as the DirSync cookie reflects the way changes have been
+     * retrieved.
      *
-     * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive
-     *                       the synchronized entries.
-     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
-     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
+     * @param entryProcessor   {@link MembershipDeltaEntryProcessor} implementation provided by the caller in order to receive
+     *                         the synchronized entries and membership deltas.
+     * @param linkedAttributes Names of the linked attributes the changes of which are to be reported as deltas (e.g. {@code
+     *                         member}).
+     * @return The current highest committed Update Sequence Number on the server side.
      * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     * @throws IllegalStateException if the DCA or the {@link LdapClient} doesn't support DirSync with incremental values.
      */
-    @Override
-    public long fullSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
-        return doSync(entryProcessor, new SyncOperation<LDAP_ATTRIBUTE>() {
-            @Override
-            public void execute(long remoteHighestCommittedUSN, EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
-                String filter = getFilterWithUpperBoundUSN(_dcAffiliation.getSearchFilter(), remoteHighestCommittedUSN);
+    public long dirSyncWithMembershipDeltas(
+            MembershipDeltaEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, List<String> linkedAttributes)
+    {
+        if (!(_ldapClient instanceof IncrementalValuesDirSyncLdapClient)) {
+            throw new IllegalStateException(
+                    "The LdapClient must implement IncrementalValuesDirSyncLdapClient in order to retrieve membership deltas.");
+        }
+        return doDirSync(new EntryProcessorBatchAdapter<>(entryProcessor), entryProcessor, linkedAttributes);
+    }
+
+    /**
+     * Implements DirSync based synchronization with or without membership deltas.
+     *
+     * @param membershipDeltaProcessor Receives the membership deltas, or {@code null} if they are not to be retrieved.
+     * @param linkedAttributes         Names of the linked attributes the changes of which are to be reported as deltas.
+     */
+    private long doDirSync(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor,
+            @Nullable final MembershipDeltaEntryProcessor<LDAP_ATTRIBUTE> membershipDeltaProcessor,
+            final List<String> linkedAttributes)
+    {
+        if (!(_ldapClient instanceof DirSyncLdapClient)) {
+            throw new IllegalStateException("The LdapClient must implement DirSyncLdapClient in order to perform a DirSync.");
+        }
+        if (_attributeHashStore != null) {
+            // changed entries only contain the attributes that have changed, so their hash can't be compared to the recorded one
+            throw new IllegalStateException("The attribute hash filter can't be used with DirSync based synchronization.");
+        }
+        final DirSyncLdapClient<LDAP_ATTRIBUTE> dirSyncLdapClient = (DirSyncLdapClient<LDAP_ATTRIBUTE>) _ldapClient;
 
-                Iterable<LDAP_ATTRIBUTE[]> searchResult = _ldapClient.search(
-                        _dcAffiliation.getSyncBaseDN(), filter, _dcAffiliation.getAttributesToSync());
+        reloadAffiliation();
+        final boolean isInitialSync = getDirSyncAffiliation().getDirSyncCookie() == null;
 
-                for (LDAP_ATTRIBUTE[] entryAttributes : searchResult) {
-                    entryProcessor.processNew(asList(entryAttributes));
-                }
+        return doSyncWithLoadedAffiliation(entryProcessor, isInitialSync ? SyncType.FULL : SyncType.INCREMENTAL,
+                new SyncOperation<LDAP_ATTRIBUTE>() {
+                    @Override
+                    public long execute(long remoteHighestCommittedUSN, BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+                        if (!isInitialSync) {
+                            assertIncrementalSyncIsPossible();
+                        }
+                        // every entry is new in case of the initial sync
+                        long lastSyncedUSN = isInitialSync ? -1 : _dcAffiliation.getHighestCommittedUSN();
+                        List<String> attributes =
+                                new OnePlusListList<>(USN_CREATED.key(), _dcAffiliation.getAttributesToSync());
+                        // tombstones have lost most of their attributes, so they are matched by a filter of their own
+                        String filter = or(_dcAffiliation.getSearchFilter(), _dcAffiliation.getSearchDeletedObjectsFilter());
 
-                _dcAffiliation.setInvocationId(retrieveInvocationId());
-            }
-        });
+                        byte[] cookie = getDirSyncAffiliation().getDirSyncCookie();
+                        DirSyncResult<LDAP_ATTRIBUTE> result;
+                        do {
+                            if (membershipDeltaProcessor == null) {
+                                result = dirSyncLdapClient.dirSync(
+                                        _dcAffiliation.getRootDN(), _dcAffiliation.getSyncBaseDN(), filter, attributes, cookie);
+                            } else {
+                                result = ((IncrementalValuesDirSyncLdapClient<LDAP_ATTRIBUTE>) dirSyncLdapClient).dirSync(
+                                        _dcAffiliation.getRootDN(), _dcAffiliation.getSyncBaseDN(), filter, attributes,
+                                        linkedAttributes, cookie);
+                            }
+
+                            feedEntryProcessor(entryProcessor, result.getChangedEntries(), lastSyncedUSN);
+                            if (membershipDeltaProcessor != null) {
+                                for (MembershipDelta membershipDelta : result.getMembershipDeltas()) {
+                                    membershipDeltaProcessor.processMembershipDelta(membershipDelta);
+                                }
+                            }
+                            if (!result.getDeletedEntries().isEmpty()) {
+                                entryProcessor.processDeletedEntries(result.getDeletedEntries());
+                            }
+                            cookie = result.getCookie();
+                        } while (result.hasMoreData());
+
+                        if (isInitialSync) {
+                            _dcAffiliation.setInvocationId(retrieveInvocationId());
+                        }
+                        getDirSyncAffiliation().setDirSyncCookie(cookie);
+                        return remoteHighestCommittedUSN;
+                    }
+                });
+    }
+
+    private DirSyncDomainControllerAffiliation getDirSyncAffiliation() {
+        if (!(_dcAffiliation instanceof DirSyncDomainControllerAffiliation)) {
+            throw new IllegalStateException(
+                    "The Domain Controller Affiliation record must implement DirSyncDomainControllerAffiliation " +
+                    "in order to perform a DirSync.");
+        }
+        return (DirSyncDomainControllerAffiliation) _dcAffiliation;
     }
 
     /**
-     * Performs an incremental synchronization that only retrieves the entries created/changed/deleted after the point of time
-     * represented by the highest committed Update Sequence Number that has been recorded by the last synchronization. Entries
-     * are delivered one-by-one to the caller by iteratively invoking the corresponding methods of the provided
-     * {@link EntryProcessor}.
+     * Starts a long-running synchronization on a background thread that registers for change notifications on a dedicated
+     * LDAP connection, and performs an {@link ActiveDirectorySyncServiceImpl#incrementalSync incremental synchronization}
+     * whenever Active Directory notifies a change in the sub-tree being synchronized. See {@link ChangeNotificationSync} for
+     * details.
      * <p/>
-     * It ensures that the {@link DomainControllerAffiliation} this service instance uses is {@link DCARepository#save saved}
-     * after updating the current highest committed Update Sequence Number and the Invocation ID it contains.
+     * The connection used for the notifications is obtained from the factory set by {@link
+     * ActiveDirectorySyncServiceImpl#setLdapClientFactory setLdapClientFactory()}, which must create {@link
+     * ChangeNotificationLdapClient}s. This service instance must not be used by the caller until the returned {@link
+     * ChangeNotificationSync} is stopped.
      *
      * @param entryProcessor {@link EntryProcessor} implementation provided by the caller in order to receive the synchronized
-     *                       entries.
-     * @return The current highest committed Update Sequence Number on the server side that represents the point of time from
-     *         which the next incremental synchronization will have to retrieve changes from Active Directory.
-     * @throws LdapClientException in case a problem is encountered during communication with Active Directory.
+     *                       entries. It is invoked from the background thread.
+     * @return The running synchronization that can be used to stop it.
+     * @throws IllegalStateException if no {@link LdapClientFactory} has been set.
      */
-    @Override
-    public long incrementalSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
-        return doSync(entryProcessor, new SyncOperation<LDAP_ATTRIBUTE>() {
-            @Override
-            public void execute(long remoteHighestCommittedUSN, EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
-                assertIncrementalSyncIsPossible();
-                queryChangedAndNewEntries(entryProcessor, remoteHighestCommittedUSN);
-                queryDeletedEntries(entryProcessor, remoteHighestCommittedUSN);
-            }
-        });
+    public ChangeNotificationSync<LDAP_ATTRIBUTE> startChangeNotificationSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return startChangeNotificationSyncInBatches(new EntryProcessorBatchAdapter<>(entryProcessor));
+    }
+
+    /**
+     * Starts a change notification based synchronization just like {@link
+     * ActiveDirectorySyncServiceImpl#startChangeNotificationSync startChangeNotificationSync()} does, but delivers entries in
+     * batches to the provided {@link BatchEntryProcessor}.
+     *
+     * @param entryProcessor {@link BatchEntryProcessor} implementation provided by the caller in order to receive the
+     *                       synchronized entries. It is invoked from the background thread.
+     * @return The running synchronization that can be used to stop it.
+     * @throws IllegalStateException if no {@link LdapClientFactory} has been set.
+     */
+    public ChangeNotificationSync<LDAP_ATTRIBUTE> startChangeNotificationSyncInBatches(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor)
+    {
+        if (_ldapClientFactory == null) {
+            throw new IllegalStateException(
+                    "An LdapClientFactory must be set in order to perform a change notification based sync.");
+        }
+        reloadAffiliation();
+
+        ChangeNotificationSync<LDAP_ATTRIBUTE> changeNotificationSync = new ChangeNotificationSync<>(
+                this, entryProcessor, _ldapClientFactory, _dcAffiliation.getSyncBaseDN(),
+                ChangeNotificationSync.DEFAULT_RECONNECT_DELAY_MILLIS);
+        changeNotificationSync.start();
+        return changeNotificationSync;
     }
 
     /**
@@ -236,28 +1421,123 @@ public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainCont
      * <p/>
      * This template makes sure that the highest committed USN is always retrieved from the server as the first step,
      * and it's always {@link DomainControllerAffiliation#setHighestCommittedUSN set on the DCA} (which also gets {@link
-     * DCARepository#save persisted}) as the last step.
+     * DCARepository#save persisted}) as the last step. It also notifies the entry processor about the beginning and the
+     * successful end of the sync operation.
      *
      * @param entryProcessor Call-back object implemented by the client.
+     * @param syncType       The kind of the sync operation to be performed.
      * @param syncOperation  Function object encapsulating the behavior of the specific sync operation to be performed.
-     * @return The highest committed USN retrieved from the server at the beginning of the method.
+     * @return The highest committed USN recorded in the DCA, which is the one retrieved from the server at the beginning of
+     *         the method, unless the sync operation determines otherwise.
      */
-    private long doSync(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor, SyncOperation<LDAP_ATTRIBUTE> syncOperation) {
+    private long doSync(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, SyncType syncType, SyncOperation<LDAP_ATTRIBUTE> syncOperation)
+    {
         reloadAffiliation();
-        long remoteHighestCommittedUSN = retrieveRemoteHighestCommittedUSN();
+        return doSyncWithLoadedAffiliation(entryProcessor, syncType, syncOperation);
+    }
+
+    /**
+     * Same as {@link ActiveDirectorySyncServiceImpl#doSync doSync()}, but expects the DCA to have been reloaded by the caller.
+     * Used by sync operations that need to examine the DCA to find out which kind of sync they are going to perform.
+     */
+    private long doSyncWithLoadedAffiliation(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, SyncType syncType, SyncOperation<LDAP_ATTRIBUTE> syncOperation)
+    {
+        _dsServiceNameAttribute = null;
+        if (_attributeHashStore != null) {
+            entryProcessor = createAttributeHashFilter(entryProcessor, syncType);
+        }
 
-        // delegate to the specific sync operation
+        boolean succeeded = false;
         try {
-            syncOperation.execute(remoteHighestCommittedUSN, entryProcessor);
+            long remoteHighestCommittedUSN = retrieveRemoteHighestCommittedUSN();
+
+            // delegate to the specific sync operation
+            long newHighestCommittedUSN;
+            try {
+                entryProcessor.beginSync(syncType, remoteHighestCommittedUSN);
+                newHighestCommittedUSN = syncOperation.execute(remoteHighestCommittedUSN, entryProcessor);
+            } finally {
+                _ldapClient.closeConnection();
+            }
+
+            entryProcessor.endSync(newHighestCommittedUSN);
+            _dcAffiliation.setHighestCommittedUSN(newHighestCommittedUSN);
+            saveAffiliation();
+
+            succeeded = true;
+            return newHighestCommittedUSN;
         } finally {
-            _ldapClient.closeConnection();
+            if (!succeeded) {
+                // the hashes recorded since the last save of the DCA may belong to entries that haven't been persisted
+                _attributeHashIndex = null;
+            }
+        }
+    }
+
+    /**
+     * Wraps the provided entry processor in an {@link AttributeHashFilter} that uses the attribute hash index (loaded from the
+     * {@link AttributeHashStore} if necessary). The modifications of the index are written to the store each time the DCA is
+     * saved during the sync operation.
+     * <p/>
+     * The index is cleared if a full sync is about to start, unless it's the continuation of an interrupted {@link
+     * ActiveDirectorySyncServiceImpl#resumableFullSync resumable full sync}, which needs the hashes recorded for the windows
+     * it has already processed.
+     */
+    private BatchEntryProcessor<LDAP_ATTRIBUTE> createAttributeHashFilter(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, SyncType syncType)
+    {
+        int objectGuidPosition = getObjectGuidPosition("to use the attribute hash filter");
+
+        if (_attributeHashIndex == null) {
+            _attributeHashIndex = AttributeHashIndex.load(_attributeHashStore);
+            LOG.debug("Loaded attribute hash index: {}", _attributeHashIndex);
+        }
+        if (syncType == SyncType.FULL && !hasFullSyncCheckpoint()) {
+            clearAttributeHashIndex();
         }
+        return new AttributeHashFilter<>(entryProcessor, _attributeHashIndex, _attributeResolver, objectGuidPosition);
+    }
+
+    private boolean hasFullSyncCheckpoint() {
+        return _dcAffiliation instanceof CheckpointingDomainControllerAffiliation &&
+               ((CheckpointingDomainControllerAffiliation) _dcAffiliation).getFullSyncCheckpoint() != null;
+    }
+
+    private void clearAttributeHashIndex() {
+        if (_attributeHashIndex != null) {
+            synchronized (_attributeHashIndex) {
+                _attributeHashIndex.clear();
+            }
+        }
+    }
+
+    /**
+     * Finds the position of the {@link LdapClient#OBJECT_GUID objectGUID} attribute among the attributes to sync.
+     *
+     * @param purpose Completes the message of the exception thrown if the attribute is missing ("in order ...").
+     * @throws IllegalStateException if the attributes to sync don't include {@code objectGUID}.
+     */
+    private int getObjectGuidPosition(String purpose) {
+        List<String> attributesToSync = _dcAffiliation.getAttributesToSync();
+        for (int i = 0; i < attributesToSync.size(); i++) {
+            if (LdapClient.OBJECT_GUID.equalsIgnoreCase(attributesToSync.get(i))) {
+                return i;
+            }
+        }
+        throw new IllegalStateException(
+                "The attributes to sync must include " + LdapClient.OBJECT_GUID + " in order " + purpose + ".");
+    }
 
-        _dcAffiliation.setHighestCommittedUSN(remoteHighestCommittedUSN);
+    private void saveAffiliation() {
+        if (_attributeHashIndex != null) {
+            synchronized (_attributeHashIndex) {
+                _attributeHashIndex.flushModifications(_attributeHashStore);
+            }
+        }
         _dcAffiliation = _affiliationRepository.save(_dcAffiliation);
         LOG.debug("Updated Domain Controller Affiliation record: {}", _dcAffiliation);
-
-        return remoteHighestCommittedUSN;
     }
 
     void reloadAffiliation() {
@@ -306,14 +1586,35 @@ public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainCont
      * @param upperBoundUSN  The USN read at the start of synchronization. Marks the point of time until which changed/new
      *                       entries should be retrieved.
      */
-    protected void queryChangedAndNewEntries(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long upperBoundUSN) {
-        String filter = getFilterWithLowerAndUpperBoundUSN(_dcAffiliation.getSearchFilter(), upperBoundUSN);
+    protected void queryChangedAndNewEntries(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long upperBoundUSN) {
+        long lastSyncedUSN = _dcAffiliation.getHighestCommittedUSN();
+        queryChangedAndNewEntries(entryProcessor, lastSyncedUSN, upperBoundUSN, lastSyncedUSN);
+    }
+
+    /**
+     * Performs an LDAP search that retrieves the list of entries that have been changed or created within the given range of
+     * Update Sequence Numbers, and iteratively invokes the appropriate method of the provided call-back object with these
+     * entries.
+     *
+     * @param entryProcessor Call-back object implemented by the client.
+     * @param lowerBoundUSN  The lower (inclusive) limit of the {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED}
+     *                       attribute of the entries to retrieve.
+     * @param upperBoundUSN  The upper (inclusive) limit of the {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED}
+     *                       attribute of the entries to retrieve.
+     * @param lastSyncedUSN  The highest committed USN recorded by the last synchronization. Entries created after this USN
+     *                       are reported as new, the rest as changed.
+     */
+    protected void queryChangedAndNewEntries(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long lowerBoundUSN, long upperBoundUSN, long lastSyncedUSN)
+    {
+        String filter = getFilterWithUSNRange(_dcAffiliation.getSearchFilter(), lowerBoundUSN, upperBoundUSN);
 
         List<String> attributes = new OnePlusListList<>(USN_CREATED.key(), _dcAffiliation.getAttributesToSync());
-        Iterable<LDAP_ATTRIBUTE[]> searchResult = _ldapClient.search(_dcAffiliation.getSyncBaseDN(), filter, attributes);
+        Iterable<List<LDAP_ATTRIBUTE[]>> searchResultPages =
+                searchPages(_ldapClient, _dcAffiliation.getSyncBaseDN(), filter, attributes);
 
-        for (LDAP_ATTRIBUTE[] entry : searchResult) {
-            feedEntryProcessor(entryProcessor, entry);
+        for (List<LDAP_ATTRIBUTE[]> page : searchResultPages) {
+            feedEntryProcessor(entryProcessor, page, lastSyncedUSN);
         }
     }
 
@@ -337,89 +1638,239 @@ public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainCont
     }
 
     /**
-     * Helper method that dispatches the entry either to the {@link EntryProcessor#processNew processNew()} or to the {@link
-     * EntryProcessor#processChanged processChanged()} call-back method of the provided {@link EntryProcessor}.
+     * Helper method that tells apart the new and changed entries of a page, and delivers the page to the provided {@link
+     * BatchEntryProcessor} as a single batch in the order returned by the server (see {@link
+     * Pages#deliverNewAndChangedEntries}).
      * <p/>
-     * It is expected that the provided attribute array contains the {@link ActiveDirectoryAttribute#USN_CREATED USN_CREATED}
-     * attribute in its first position based on which this method decides if the entry is new or changed.
+     * It is expected that the provided attribute arrays contain the {@link ActiveDirectoryAttribute#USN_CREATED USN_CREATED}
+     * attribute in their first position based on which this method decides if an entry is new or changed.
      * <p/>
-     * The dispatched entry will not contain this first attribute, as it's not useful for the client.
+     * The dispatched entries will not contain this first attribute, as it's not useful for the client.
      *
      * @param entryProcessor Call-back object implemented by the client.
-     * @param entry          Attribute array representing the entry.
+     * @param page           Attribute arrays representing the entries of a page.
+     * @param lastSyncedUSN  The highest committed USN recorded by the last synchronization.
      */
-    private void feedEntryProcessor(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor, LDAP_ATTRIBUTE[] entry) {
-        List<LDAP_ATTRIBUTE> entryWithoutUsnCreatedAttribute = asList(entry).subList(1, entry.length);
-        if (isNewEntry(entry)) {
-            entryProcessor.processNew(entryWithoutUsnCreatedAttribute);
-        } else {
-            entryProcessor.processChanged(entryWithoutUsnCreatedAttribute);
+    private void feedEntryProcessor(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, List<LDAP_ATTRIBUTE[]> page, long lastSyncedUSN)
+    {
+        List<List<LDAP_ATTRIBUTE>> entries = new ArrayList<>(page.size());
+        BitSet newEntries = new BitSet(page.size());
+
+        for (LDAP_ATTRIBUTE[] entry : page) {
+            newEntries.set(entries.size(), isNewEntry(entry, lastSyncedUSN));
+            entries.add(asList(entry).subList(1, entry.length));
         }
+
+        Pages.deliverNewAndChangedEntries(entryProcessor, entries, newEntries);
     }
 
     /**
      * Helper method that tells if the passed entry is new by comparing its first attribute (that is expected to be the {@link
-     * ActiveDirectoryAttribute#USN_CREATED USN_CREATED} attribute) with the highest committed USN recorded in the DCA.
+     * ActiveDirectoryAttribute#USN_CREATED USN_CREATED} attribute) with the highest committed USN recorded by the last
+     * synchronization.
      *
-     * @param entry Attribute array representing the entry.
+     * @param entry         Attribute array representing the entry.
+     * @param lastSyncedUSN The highest committed USN recorded by the last synchronization.
      * @return True if the entry is new, or false otherwise.
      */
-    private boolean isNewEntry(LDAP_ATTRIBUTE[] entry) {
+    private boolean isNewEntry(LDAP_ATTRIBUTE[] entry, long lastSyncedUSN) {
         LDAP_ATTRIBUTE usnCreatedAttribute = entry[0];
+        if (usnCreatedAttribute == null) {
+            // DirSync searches don't return the attribute for changed entries
+            return false;
+        }
         Long usnCreated = _attributeResolver.getAsLong(usnCreatedAttribute);
         return
                 usnCreated != null &&
-                usnCreated > _dcAffiliation.getHighestCommittedUSN();
+                usnCreated > lastSyncedUSN;
     }
 
     /**
      * Performs an LDAP search that retrieves the ID of every entry that has been deleted since the last synchronization,
-     * and iteratively invokes the {@link EntryProcessor#processDeleted processDeleted()} method of the provided call-back
-     * object passing these IDs.
+     * and iteratively invokes the {@link BatchEntryProcessor#processDeletedEntries processDeletedEntries()} method of the
+     * provided call-back object passing these IDs page by page.
      *
      * @param entryProcessor Call-back object implemented by the client.
      * @param upperBoundUSN  The USN read at the start of synchronization. Marks the point of time until which deleted
      *                       entries should be retrieved.
      */
-    protected void queryDeletedEntries(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long upperBoundUSN) {
-        String filter = getFilterWithLowerAndUpperBoundUSN(_dcAffiliation.getSearchDeletedObjectsFilter(), upperBoundUSN);
+    protected void queryDeletedEntries(BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long upperBoundUSN) {
+        queryDeletedEntries(entryProcessor, _dcAffiliation.getHighestCommittedUSN(), upperBoundUSN);
+    }
+
+    /**
+     * Performs an LDAP search that retrieves the ID of every entry that has been deleted within the given range of Update
+     * Sequence Numbers, and iteratively invokes the {@link BatchEntryProcessor#processDeletedEntries processDeletedEntries()}
+     * method of the provided call-back object passing these IDs page by page.
+     *
+     * @param entryProcessor Call-back object implemented by the client.
+     * @param lowerBoundUSN  The lower (inclusive) limit of the {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED}
+     *                       attribute of the deleted entries to retrieve.
+     * @param upperBoundUSN  The upper (inclusive) limit of the {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED}
+     *                       attribute of the deleted entries to retrieve.
+     */
+    protected void queryDeletedEntries(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long lowerBoundUSN, long upperBoundUSN)
+    {
+        String filter = getFilterWithUSNRange(_dcAffiliation.getSearchDeletedObjectsFilter(), lowerBoundUSN, upperBoundUSN);
+
+        for (List<UUID> page : searchDeletedPages(_ldapClient, _dcAffiliation.getRootDN(), filter)) {
+            entryProcessor.processDeletedEntries(page);
+        }
+    }
+
+    /**
+     * Performs a search with the provided {@link LdapClient}, and returns the result set page by page. If the client is a
+     * {@link PagingLdapClient}, the pages are the same as returned by the server, otherwise the result set is split into
+     * pages of {@link LdapClient#DEFAULT_PAGE_SIZE} entries.
+     */
+    protected Iterable<List<LDAP_ATTRIBUTE[]>> searchPages(
+            LdapClient<LDAP_ATTRIBUTE> ldapClient, String searchBaseDN, String filter, List<String> attributes)
+    {
+        if (ldapClient instanceof PagingLdapClient) {
+            return ((PagingLdapClient<LDAP_ATTRIBUTE>) ldapClient).searchPages(searchBaseDN, filter, attributes);
+        } else {
+            return Pages.split(ldapClient.search(searchBaseDN, filter, attributes), LdapClient.DEFAULT_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Retrieves every entry in the synchronization scope page by page, for operations that treat the entries not seen during
+     * the search as deleted. The search filter deliberately has no upper bound on {@link ActiveDirectoryAttribute#USN_CHANGED
+     * uSNChanged}: an entry that is modified while the search is running would otherwise drop out of the result set and be
+     * reported as deleted, even though it still exists.
+     */
+    private Iterable<List<LDAP_ATTRIBUTE[]>> searchWholeSyncScope(List<String> attributes) {
+        return searchPages(_ldapClient, _dcAffiliation.getSyncBaseDN(), _dcAffiliation.getSearchFilter(), attributes);
+    }
+
+    /**
+     * Searches for deleted entries with the provided {@link LdapClient}, and returns the result set page by page. See {@link
+     * ActiveDirectorySyncServiceImpl#searchPages searchPages()} on how pages are formed.
+     */
+    protected Iterable<List<UUID>> searchDeletedPages(LdapClient<LDAP_ATTRIBUTE> ldapClient, String rootDN, String filter) {
+        if (ldapClient instanceof PagingLdapClient) {
+            return ((PagingLdapClient<LDAP_ATTRIBUTE>) ldapClient).searchDeletedPages(rootDN, filter);
+        } else {
+            return Pages.split(ldapClient.searchDeleted(rootDN, filter), LdapClient.DEFAULT_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Performs a search with the provided {@link LdapClient}, and passes the entries of the result set to the provided
+     * call-back object. If the client is a {@link FlyweightLdapClient}, the search results are pushed by the client itself,
+     * otherwise the attribute arrays returned by {@link LdapClient#search LdapClient.search()} are passed one-by-one.
+     */
+    protected void search(
+            LdapClient<LDAP_ATTRIBUTE> ldapClient, String searchBaseDN, String filter, List<String> attributes,
+            FlyweightLdapClient.EntryHandler<LDAP_ATTRIBUTE> entryHandler)
+    {
+        if (ldapClient instanceof FlyweightLdapClient) {
+            ((FlyweightLdapClient<LDAP_ATTRIBUTE>) ldapClient).search(searchBaseDN, filter, attributes, entryHandler);
+        } else {
+            for (LDAP_ATTRIBUTE[] entry : ldapClient.search(searchBaseDN, filter, attributes)) {
+                entryHandler.handleEntry(entry);
+            }
+        }
+    }
 
-        Iterable<UUID> deletedObjectIds = _ldapClient.searchDeleted(_dcAffiliation.getRootDN(), filter);
+    /**
+     * Searches for deleted entries with the provided {@link LdapClient}, and passes their unique identifiers to the provided
+     * call-back object. See {@link ActiveDirectorySyncServiceImpl#search(LdapClient, String, String, List,
+     * FlyweightLdapClient.EntryHandler) search()} on how the search is performed.
+     */
+    protected void searchDeleted(
+            LdapClient<LDAP_ATTRIBUTE> ldapClient, String rootDN, String filter,
+            FlyweightLdapClient.DeletedEntryHandler deletedEntryHandler)
+    {
+        if (ldapClient instanceof FlyweightLdapClient) {
+            ((FlyweightLdapClient<LDAP_ATTRIBUTE>) ldapClient).searchDeleted(rootDN, filter, deletedEntryHandler);
+        } else {
+            for (UUID entryId : ldapClient.searchDeleted(rootDN, filter)) {
+                deletedEntryHandler.handleDeletedEntry(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+            }
+        }
+    }
 
-        for (UUID uuid : deletedObjectIds) {
-            entryProcessor.processDeleted(uuid);
+    /**
+     * Wraps each attribute array of a page of search results in a list.
+     */
+    private static <T> List<List<T>> toEntryList(List<T[]> page) {
+        List<List<T>> entries = new ArrayList<>(page.size());
+        for (T[] entry : page) {
+            entries.add(asList(entry));
         }
+        return entries;
     }
 
     /**
      * Retrieves the Invocation ID from Active Directory.
+     * <p/>
+     * The {@code dsServiceName} root DSE attribute pointing to the entry that holds the Invocation ID is only read if it has
+     * not been retrieved together with the highest committed USN at the beginning of the current sync operation. The
+     * Invocation ID itself is served from a cache if it is enabled (see {@link
+     * ActiveDirectorySyncServiceImpl#setInvocationIdCacheTimeToLive setInvocationIdCacheTimeToLive()}).
      *
      * @return The current Invocation ID identifying the affiliated domain controller.
      */
     protected UUID retrieveInvocationId() {
-        LDAP_ATTRIBUTE dsServiceDNAttribute = _ldapClient.getRootDSEAttribute(DS_SERVICE_NAME.key());
+        LDAP_ATTRIBUTE dsServiceDNAttribute = _dsServiceNameAttribute != null
+                ? _dsServiceNameAttribute
+                : _ldapClient.getRootDSEAttribute(DS_SERVICE_NAME.key());
         String dsServiceDN = _attributeResolver.getAsString(dsServiceDNAttribute);
 
         LdapClientException.throwIfNull(dsServiceDN,
                 "Invalid %s attribute encountered: %s", DS_SERVICE_NAME.key(), String.valueOf(dsServiceDNAttribute));
 
+        UUID cachedInvocationId = getCachedInvocationId(dsServiceDN);
+        if (cachedInvocationId != null) {
+            return cachedInvocationId;
+        }
+
         LDAP_ATTRIBUTE invocationIdAttribute = _ldapClient.getEntryAttribute(dsServiceDN, INVOCATION_ID.key());
 
         UUID invocationId = bytesToUUID(_attributeResolver.getAsByteArray(invocationIdAttribute));
         LdapClientException.throwIfNull(invocationId,
                 "Invalid Update Sequence Number encountered: %s.", String.valueOf(invocationIdAttribute));
 
+        if (_invocationIdCacheTTLNanos > 0) {
+            _cachedInvocationIdOwnerDN = dsServiceDN;
+            _cachedInvocationId = invocationId;
+            _invocationIdCachedAtNanos = System.nanoTime();
+        }
+
         return invocationId;
     }
 
+    @Nullable
+    private UUID getCachedInvocationId(String dsServiceDN) {
+        boolean isCacheValid =
+                _cachedInvocationId != null &&
+                dsServiceDN.equals(_cachedInvocationIdOwnerDN) &&
+                System.nanoTime() - _invocationIdCachedAtNanos < _invocationIdCacheTTLNanos;
+        return isCacheValid ? _cachedInvocationId : null;
+    }
+
     /**
      * Retrieves the current highest Update Sequence Number that has been committed up to this point in the database of Active
      * Directory.
+     * <p/>
+     * If the {@link LdapClient} in use is a {@link RootDSESnapshotLdapClient}, the {@code dsServiceName} attribute needed
+     * by {@link ActiveDirectorySyncServiceImpl#retrieveInvocationId retrieveInvocationId()} is retrieved in the same request.
      *
      * @return The current highest committed Update Sequence Number.
      */
     protected long retrieveRemoteHighestCommittedUSN() {
-        LDAP_ATTRIBUTE hcusnAttribute = _ldapClient.getRootDSEAttribute(HIGHEST_COMMITTED_USN.key());
+        LDAP_ATTRIBUTE hcusnAttribute;
+        if (_ldapClient instanceof RootDSESnapshotLdapClient) {
+            List<LDAP_ATTRIBUTE> rootDSESnapshot = ((RootDSESnapshotLdapClient<LDAP_ATTRIBUTE>) _ldapClient)
+                    .getRootDSEAttributes(asList(HIGHEST_COMMITTED_USN.key(), DS_SERVICE_NAME.key()));
+            hcusnAttribute = rootDSESnapshot.get(0);
+            _dsServiceNameAttribute = rootDSESnapshot.get(1);
+        } else {
+            hcusnAttribute = _ldapClient.getRootDSEAttribute(HIGHEST_COMMITTED_USN.key());
+        }
         Long hcusn = _attributeResolver.getAsLong(hcusnAttribute);
         LdapClientException.throwIfNull(hcusn,
                 "Invalid Update Sequence Number encountered: %s.", String.valueOf(hcusnAttribute));
@@ -441,6 +1892,20 @@ public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainCont
      */
     protected String getFilterWithLowerAndUpperBoundUSN(String filter, long upperBoundUSN) {
         long lowerBoundUSN = _dcAffiliation.getHighestCommittedUSN();
+        return getFilterWithUSNRange(filter, lowerBoundUSN, upperBoundUSN);
+    }
+
+    /**
+     * Combines the provided LDAP filter expression with the given lower and upper limit on the {@link
+     * ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED} attribute (both limits are inclusive).
+     *
+     * @param filter        The LDAP filter expression to complete.
+     * @param lowerBoundUSN Value for the lower limit of the {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED} attribute.
+     * @param upperBoundUSN Value for the upper limit of the {@link ActiveDirectoryAttribute#USN_CHANGED USN_CHANGED} attribute.
+     * @return The provided LDAP filter combined with lower and upper bounds on the {@link ActiveDirectoryAttribute#USN_CHANGED
+     *         USN_CHANGED} attribute.
+     */
+    protected static String getFilterWithUSNRange(String filter, long lowerBoundUSN, long upperBoundUSN) {
         String lowerBoundUSNFilter = USN_CHANGED + ">=" + lowerBoundUSN;
         String upperBoundUSNFilter = USN_CHANGED + "<=" + upperBoundUSN;
         return and(filter, lowerBoundUSNFilter, upperBoundUSNFilter);
@@ -462,6 +1927,71 @@ public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainCont
         return and(filter, usnUpperBoundFilter);
     }
 
+    /**
+     * Sets the factory used to create additional {@link LdapClient}s for synchronization operations that work on several LDAP
+     * connections at once (like {@link ActiveDirectorySyncServiceImpl#parallelFullSync parallelFullSync()}).
+     *
+     * @param ldapClientFactory Factory creating clients that connect to the same domain controller as the {@link LdapClient}
+     *                          passed to the constructor.
+     */
+    public void setLdapClientFactory(@Nullable LdapClientFactory<LDAP_ATTRIBUTE> ldapClientFactory) {
+        _ldapClientFactory = ldapClientFactory;
+    }
+
+    /**
+     * Enables the filter that suppresses changed entries whose synchronized attribute values are the same as the last time
+     * they were delivered to the entry processor (which happens when only attributes that are not synchronized have changed).
+     * See {@link AttributeHashFilter} for details. The filter is disabled by default.
+     * <p/>
+     * <b>Important!</b>
+     * The hashes of the delivered entries are persisted in the provided store, and the attributes to sync must include {@code
+     * objectGUID}. The filter can only suppress changes of entries that have been delivered since it was enabled, so it's
+     * best to enable it before a full synchronization. It can't be used with flyweight and DirSync based synchronization
+     * operations.
+     *
+     * @param attributeHashStore The store of the attribute hashes, or {@code null} to disable the filter.
+     */
+    public void setAttributeHashStore(@Nullable AttributeHashStore attributeHashStore) {
+        _attributeHashStore = attributeHashStore;
+        _attributeHashIndex = null;
+    }
+
+    /**
+     * Enables caching the Invocation ID of the domain controller for the given amount of time, so that synchronization
+     * operations following each other in quick succession don't need to retrieve it every time. The cache is disabled by
+     * default.
+     * <p/>
+     * <b>Important!</b>
+     * The Invocation ID changes when the database of the domain controller is restored from a backup, which is the condition
+     * incremental synchronization relies on to detect that a full synchronization is necessary. Such a change is not
+     * noticed until the cached value expires, so the time-to-live should be kept short.
+     *
+     * @param timeToLive The time for which a retrieved Invocation ID is reused, or zero to disable caching.
+     * @param unit       The unit of the {@code timeToLive} argument.
+     */
+    public void setInvocationIdCacheTimeToLive(long timeToLive, TimeUnit unit) {
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("The time-to-live must not be negative, got: " + timeToLive);
+        }
+        _invocationIdCacheTTLNanos = unit.toNanos(timeToLive);
+        _cachedInvocationId = null;
+    }
+
+    /**
+     * Sets the number of Update Sequence Numbers covered by one window of the synchronization operations that walk the USN
+     * range in windows (like {@link ActiveDirectorySyncServiceImpl#resumableFullSync resumableFullSync()} and {@link
+     * ActiveDirectorySyncServiceImpl#windowedIncrementalSync windowedIncrementalSync()}). Defaults to
+     * {@link ActiveDirectorySyncServiceImpl#DEFAULT_USN_WINDOW_SIZE}.
+     *
+     * @param usnWindowSize The number of USNs in a window.
+     */
+    public void setUSNWindowSize(long usnWindowSize) {
+        if (usnWindowSize < 1) {
+            throw new IllegalArgumentException("The USN window size must be positive, got: " + usnWindowSize);
+        }
+        _usnWindowSize = usnWindowSize;
+    }
+
     /**
      * Combines the provided LDAP filter expressions into one single expression using the logical AND operator.
      *
@@ -475,6 +2005,19 @@ public class ActiveDirectorySyncServiceImpl<DCA_KEY, DCA_IMPL extends DomainCont
         return result.append(')').toString();
     }
 
+    /**
+     * Combines the provided LDAP filter expressions into one single expression using the logical OR operator.
+     *
+     * @return A new LDAP filter expression that combines all input filters with the logical OR operator.
+     */
+    protected static String or(String... filters) {
+        StringBuilder result = new StringBuilder("(|");
+        for (String filter : filters) {
+            result.append(ensureWrappedInParenthesis(filter));
+        }
+        return result.append(')').toString();
+    }
+
     /**
      * Wraps the provided filter expression in parenthesis, unless it's already wrapped.
      *
@@ -0,0 +1,540 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import org.adsync4j.api.BatchActiveDirectorySyncService;
+import org.adsync4j.api.LdapClientException;
+import org.adsync4j.api.SyncCursor;
+import org.adsync4j.api.SyncEvent;
+import org.adsync4j.api.SyncPublisher;
+import org.adsync4j.spi.BatchEntryProcessor;
+import org.adsync4j.spi.EntryProcessor;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Asynchronous facade of a {@link BatchActiveDirectorySyncService}. Synchronizations are performed on a dedicated
+ * background thread one after the other (sync services are not thread-safe), and the caller is handed a {@link Future} of
+ * the highest committed USN that the synchronization returns.
+ * <p/>
+ * Besides the entry processor based operations, synchronizations can be consumed as a {@link SyncPublisher} of {@link
+ * SyncEvent}s, which propagates backpressure down to the LDAP reads: the background thread waits for demand before each
+ * event, and since the pages of the search results are retrieved lazily while the entries are being processed, no further
+ * page is requested from the domain controller until the subscriber has caught up. Unless the LDAP client fetches pages in
+ * the background (like the UnboundID based client does when a prefetch depth is set on its connections), at most one page
+ * of entries is held in memory at any time, regardless of the speed of the subscriber. Otherwise, the pages fetched ahead
+ * are held in memory as well, up to the prefetch depth.
+ * <p/>
+ * Synchronizations can also be pulled through a {@link SyncCursor}, which is fed by the background thread one page ahead of
+ * the consumer.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type (determined by the {@link org.adsync4j.spi.LdapClient} implementation in
+ *                         use).
+ */
+@ThreadSafe
+public class AsyncSyncService<LDAP_ATTRIBUTE> {
+
+    private final BatchActiveDirectorySyncService<LDAP_ATTRIBUTE> _syncService;
+    private final ExecutorService _executor;
+
+    /**
+     * @param syncService The sync service to delegate to. It must not be used by anyone else while the asynchronous facade is
+     *                    in use.
+     */
+    public AsyncSyncService(BatchActiveDirectorySyncService<LDAP_ATTRIBUTE> syncService) {
+        _syncService = syncService;
+        _executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("adsync4j-async-sync-"));
+    }
+
+    /**
+     * Schedules a {@link BatchActiveDirectorySyncService#fullSync full synchronization}.
+     *
+     * @return The future result of the synchronization. Its {@link Future#get get()} method throws an {@link
+     *         ExecutionException} wrapping the exception the synchronization failed with (if any).
+     */
+    public Future<Long> fullSync(final EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return _executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return _syncService.fullSync(entryProcessor);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link AsyncSyncService#fullSync fullSync()}, but uses a {@link BatchEntryProcessor}.
+     */
+    public Future<Long> fullSyncInBatches(final BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return _executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return _syncService.fullSyncInBatches(entryProcessor);
+            }
+        });
+    }
+
+    /**
+     * Schedules an {@link BatchActiveDirectorySyncService#incrementalSync incremental synchronization}.
+     *
+     * @return The future result of the synchronization. Its {@link Future#get get()} method throws an {@link
+     *         ExecutionException} wrapping the exception the synchronization failed with (if any).
+     */
+    public Future<Long> incrementalSync(final EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return _executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return _syncService.incrementalSync(entryProcessor);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link AsyncSyncService#incrementalSync incrementalSync()}, but uses a {@link BatchEntryProcessor}.
+     */
+    public Future<Long> incrementalSyncInBatches(final BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        return _executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return _syncService.incrementalSyncInBatches(entryProcessor);
+            }
+        });
+    }
+
+    /**
+     * @return A publisher that performs a full synchronization once subscribed to.
+     */
+    public SyncPublisher<LDAP_ATTRIBUTE> fullSyncPublisher() {
+        return new SyncEventPublisher(BatchEntryProcessor.SyncType.FULL);
+    }
+
+    /**
+     * @return A publisher that performs an incremental synchronization once subscribed to.
+     */
+    public SyncPublisher<LDAP_ATTRIBUTE> incrementalSyncPublisher() {
+        return new SyncEventPublisher(BatchEntryProcessor.SyncType.INCREMENTAL);
+    }
+
+    /**
+     * Starts a full synchronization, and returns a cursor over its events. The cursor must be closed, since the
+     * synchronization occupies the background thread until then.
+     */
+    public SyncCursor<LDAP_ATTRIBUTE> fullSyncCursor() {
+        return new SyncEventCursor(BatchEntryProcessor.SyncType.FULL);
+    }
+
+    /**
+     * Starts an incremental synchronization, and returns a cursor over its events. The cursor must be closed, since the
+     * synchronization occupies the background thread until then.
+     */
+    public SyncCursor<LDAP_ATTRIBUTE> incrementalSyncCursor() {
+        return new SyncEventCursor(BatchEntryProcessor.SyncType.INCREMENTAL);
+    }
+
+    /**
+     * Initiates an orderly shutdown: the synchronizations scheduled so far are performed, but no new ones are accepted.
+     */
+    public void shutdown() {
+        _executor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return _executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Publishes the call-backs of a synchronization as {@link SyncEvent}s. Acts as the subscription of its subscriber, and as
+     * the entry processor of the synchronization, which is blocked in {@link SyncEventPublisher#publish publish()} while
+     * there is no outstanding demand.
+     */
+    private class SyncEventPublisher
+            implements SyncPublisher<LDAP_ATTRIBUTE>, SyncPublisher.Subscription, BatchEntryProcessor<LDAP_ATTRIBUTE>
+    {
+        private final SyncType _syncType;
+        private final AtomicBoolean _subscribed = new AtomicBoolean();
+        private Subscriber<? super SyncEvent<LDAP_ATTRIBUTE>> _subscriber;
+
+        /**
+         * Guards the demand and the cancellation state.
+         */
+        private final Object _lock = new Object();
+        private long _demand;
+        private boolean _cancelled;
+        private Throwable _requestError;
+
+        SyncEventPublisher(SyncType syncType) {
+            _syncType = syncType;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super SyncEvent<LDAP_ATTRIBUTE>> subscriber) {
+            if (!_subscribed.compareAndSet(false, true)) {
+                subscriber.onSubscribe(CANCELLED_SUBSCRIPTION);
+                subscriber.onError(new IllegalStateException("The publisher accepts a single subscriber."));
+                return;
+            }
+            _subscriber = subscriber;
+            _executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sync();
+                }
+            });
+        }
+
+        private void sync() {
+            _subscriber.onSubscribe(this);
+            Throwable syncError = null;
+            try {
+                if (_syncType == SyncType.FULL) {
+                    _syncService.fullSyncInBatches(this);
+                } else {
+                    _syncService.incrementalSyncInBatches(this);
+                }
+            } catch (Throwable t) {
+                syncError = t;
+            }
+
+            Throwable error;
+            boolean cancelled;
+            synchronized (_lock) {
+                // a synchronization aborted because of cancellation is not an error, but an invalid request is, even if the
+                // synchronization has completed in the meantime
+                error = _requestError != null ? _requestError : _cancelled ? null : syncError;
+                cancelled = _cancelled;
+                // the subscription is terminated, further requests are ignored
+                _cancelled = true;
+            }
+            if (error != null) {
+                _subscriber.onError(error);
+            } else if (!cancelled) {
+                _subscriber.onComplete();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (_lock) {
+                if (_cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    _requestError = new IllegalArgumentException("The number of requested events must be positive: " + n);
+                    _cancelled = true;
+                } else {
+                    _demand = _demand + n < 0 ? Long.MAX_VALUE : _demand + n;
+                }
+                _lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (_lock) {
+                _cancelled = true;
+                _lock.notifyAll();
+            }
+        }
+
+        /**
+         * Waits for demand, then passes the event to the subscriber. Throws a {@link CancellationException} (which aborts
+         * the synchronization, so that the DCA is not updated) if the subscription gets cancelled in the meantime.
+         */
+        private void publish(SyncEvent<LDAP_ATTRIBUTE> event) {
+            synchronized (_lock) {
+                while (_demand == 0 && !_cancelled) {
+                    try {
+                        _lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new LdapClientException(e);
+                    }
+                }
+                if (_cancelled) {
+                    throw new CancellationException("The subscription has been cancelled.");
+                }
+                _demand--;
+            }
+            _subscriber.onNext(event);
+        }
+
+        @Override
+        public void beginSync(SyncType syncType, long highestCommittedUSN) {
+            publish(SyncEvent.<LDAP_ATTRIBUTE>beginSync(syncType, highestCommittedUSN));
+        }
+
+        @Override
+        public void processNewEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+            for (List<LDAP_ATTRIBUTE> entry : entries) {
+                publish(SyncEvent.newEntry(entry));
+            }
+        }
+
+        @Override
+        public void processChangedEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+            for (List<LDAP_ATTRIBUTE> entry : entries) {
+                publish(SyncEvent.changedEntry(entry));
+            }
+        }
+
+        @Override
+        public void processNewAndChangedEntries(List<List<LDAP_ATTRIBUTE>> entries, BitSet newEntries) {
+            for (int i = 0; i < entries.size(); i++) {
+                publish(newEntries.get(i) ? SyncEvent.newEntry(entries.get(i)) : SyncEvent.changedEntry(entries.get(i)));
+            }
+        }
+
+        @Override
+        public void processDeletedEntries(List<UUID> entryIds) {
+            for (UUID entryId : entryIds) {
+                publish(SyncEvent.<LDAP_ATTRIBUTE>deletedEntry(entryId));
+            }
+        }
+
+        @Override
+        public void endSync(long highestCommittedUSN) {
+            publish(SyncEvent.<LDAP_ATTRIBUTE>endSync(highestCommittedUSN));
+        }
+    }
+
+    /**
+     * Hands the call-backs of a synchronization over to the consumer of the cursor as batches of {@link SyncEvent}s. The
+     * synchronization waits while the batch it has produced has not been taken by the consumer, and after the last batch, it
+     * waits for the cursor to be closed in {@link SyncEventCursor#endSync endSync()}, before the DCA is updated.
+     */
+    private class SyncEventCursor implements SyncCursor<LDAP_ATTRIBUTE>, BatchEntryProcessor<LDAP_ATTRIBUTE> {
+
+        /**
+         * Guards the batch handed over to the consumer, and the state of the synchronization and the cursor.
+         */
+        private final Object _lock = new Object();
+        private List<SyncEvent<LDAP_ATTRIBUTE>> _pendingBatch;
+        private boolean _lastBatchTaken;
+        private Throwable _failure;
+        private boolean _closed;
+        private boolean _fullyConsumed;
+
+        // accessed by the consumer only
+        private List<SyncEvent<LDAP_ATTRIBUTE>> _currentBatch = Collections.emptyList();
+        private int _currentPosition;
+
+        private final Future<Long> _syncResult;
+
+        SyncEventCursor(final SyncType syncType) {
+            _syncResult = _executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    try {
+                        return syncType == SyncType.FULL
+                                ? _syncService.fullSyncInBatches(SyncEventCursor.this)
+                                : _syncService.incrementalSyncInBatches(SyncEventCursor.this);
+                    } catch (Throwable t) {
+                        synchronized (_lock) {
+                            _failure = t;
+                            _lock.notifyAll();
+                        }
+                        throw t;
+                    }
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_currentPosition < _currentBatch.size()) {
+                return true;
+            }
+            synchronized (_lock) {
+                while (_pendingBatch == null && !_lastBatchTaken && _failure == null) {
+                    try {
+                        _lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new LdapClientException(e);
+                    }
+                }
+                if (_pendingBatch != null) {
+                    _currentBatch = _pendingBatch;
+                    _currentPosition = 0;
+                    _pendingBatch = null;
+                    _lastBatchTaken = _currentBatch.get(_currentBatch.size() - 1).getType() == SyncEvent.Type.END_SYNC;
+                    _lock.notifyAll();
+                    return true;
+                }
+                if (_failure != null) {
+                    throw _failure instanceof LdapClientException
+                            ? (LdapClientException) _failure
+                            : new LdapClientException(_failure);
+                }
+                return false;
+            }
+        }
+
+        @Override
+        public SyncEvent<LDAP_ATTRIBUTE> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return _currentBatch.get(_currentPosition++);
+        }
+
+        @Override
+        public List<SyncEvent<LDAP_ATTRIBUTE>> nextBatch() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<SyncEvent<LDAP_ATTRIBUTE>> batch = _currentBatch.subList(_currentPosition, _currentBatch.size());
+            _currentPosition = _currentBatch.size();
+            return batch;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            boolean fullyConsumed;
+            synchronized (_lock) {
+                if (_closed) {
+                    return;
+                }
+                _closed = true;
+                _fullyConsumed = fullyConsumed = _lastBatchTaken && _currentPosition == _currentBatch.size();
+                _lock.notifyAll();
+            }
+
+            try {
+                _syncResult.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (fullyConsumed) {
+                    throw cause instanceof LdapClientException ? (LdapClientException) cause : new LdapClientException(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LdapClientException(e);
+            }
+        }
+
+        /**
+         * Waits until the previous batch has been taken by the consumer, then hands over the provided one. Throws a {@link
+         * CancellationException} (which aborts the synchronization) if the cursor gets closed in the meantime.
+         */
+        private void handOver(List<SyncEvent<LDAP_ATTRIBUTE>> batch) {
+            synchronized (_lock) {
+                while (_pendingBatch != null && !_closed) {
+                    try {
+                        _lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new LdapClientException(e);
+                    }
+                }
+                if (_closed) {
+                    throw new CancellationException("The cursor has been closed.");
+                }
+                _pendingBatch = batch;
+                _lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void beginSync(SyncType syncType, long highestCommittedUSN) {
+            handOver(Collections.singletonList(SyncEvent.<LDAP_ATTRIBUTE>beginSync(syncType, highestCommittedUSN)));
+        }
+
+        @Override
+        public void processNewEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+            List<SyncEvent<LDAP_ATTRIBUTE>> batch = new ArrayList<>(entries.size());
+            for (List<LDAP_ATTRIBUTE> entry : entries) {
+                batch.add(SyncEvent.newEntry(entry));
+            }
+            handOverIfNotEmpty(batch);
+        }
+
+        @Override
+        public void processChangedEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+            List<SyncEvent<LDAP_ATTRIBUTE>> batch = new ArrayList<>(entries.size());
+            for (List<LDAP_ATTRIBUTE> entry : entries) {
+                batch.add(SyncEvent.changedEntry(entry));
+            }
+            handOverIfNotEmpty(batch);
+        }
+
+        @Override
+        public void processNewAndChangedEntries(List<List<LDAP_ATTRIBUTE>> entries, BitSet newEntries) {
+            List<SyncEvent<LDAP_ATTRIBUTE>> batch = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                batch.add(newEntries.get(i) ? SyncEvent.newEntry(entries.get(i)) : SyncEvent.changedEntry(entries.get(i)));
+            }
+            handOverIfNotEmpty(batch);
+        }
+
+        @Override
+        public void processDeletedEntries(List<UUID> entryIds) {
+            List<SyncEvent<LDAP_ATTRIBUTE>> batch = new ArrayList<>(entryIds.size());
+            for (UUID entryId : entryIds) {
+                batch.add(SyncEvent.<LDAP_ATTRIBUTE>deletedEntry(entryId));
+            }
+            handOverIfNotEmpty(batch);
+        }
+
+        private void handOverIfNotEmpty(List<SyncEvent<LDAP_ATTRIBUTE>> batch) {
+            if (!batch.isEmpty()) {
+                handOver(batch);
+            }
+        }
+
+        /**
+         * Hands over the last batch, then waits for the cursor to be closed. Returns normally (letting the synchronization
+         * update the DCA) only if all events have been consumed by then.
+         */
+        @Override
+        public void endSync(long highestCommittedUSN) {
+            handOver(Collections.singletonList(SyncEvent.<LDAP_ATTRIBUTE>endSync(highestCommittedUSN)));
+            synchronized (_lock) {
+                while (!_closed) {
+                    try {
+                        _lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new LdapClientException(e);
+                    }
+                }
+                if (!_fullyConsumed) {
+                    throw new CancellationException("The cursor has been closed before consuming all events.");
+                }
+            }
+        }
+    }
+
+    private static final SyncPublisher.Subscription CANCELLED_SUBSCRIPTION = new SyncPublisher.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+}
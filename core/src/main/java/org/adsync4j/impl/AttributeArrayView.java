@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.AbstractList;
+
+/**
+ * Reusable, read-only list view of the tail of an attribute array, starting from a given offset. Used as a flyweight to
+ * deliver entries without allocating a list for each of them.
+ */
+@NotThreadSafe
+class AttributeArrayView<T> extends AbstractList<T> {
+
+    private T[] _array;
+    private int _offset;
+
+    /**
+     * Points this view to the elements of the provided array starting from the given offset.
+     *
+     * @return This view.
+     */
+    AttributeArrayView<T> wrap(T[] array, int offset) {
+        _array = array;
+        _offset = offset;
+        return this;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        return _array[_offset + index];
+    }
+
+    @Override
+    public int size() {
+        return _array.length - _offset;
+    }
+}
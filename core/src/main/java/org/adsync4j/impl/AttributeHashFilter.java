@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import org.adsync4j.spi.BatchEntryProcessor;
+import org.adsync4j.spi.LdapAttributeResolver;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.adsync4j.impl.UUIDUtils.bytesToUUID;
+
+/**
+ * {@link BatchEntryProcessor} decorator that drops changed entries whose synchronized attribute values are the same as the
+ * last time the entry was delivered. Active Directory increments the {@code uSNChanged} attribute of an entry whenever any
+ * of its attributes changes, including the ones that are not synchronized, in which case the delivered entry would be
+ * identical to the previous one.
+ * <p/>
+ * A 64-bit hash of the attribute values of every delivered entry is recorded in an {@link AttributeHashIndex} keyed by the
+ * {@code objectGUID} of the entry, so the attributes to sync must include {@code objectGUID}. Changed entries whose hash
+ * matches the recorded one are not passed on. Clearing the index at the beginning of a full synchronization is up to the
+ * sync service, as a resumed full synchronization has to keep the hashes recorded before it was interrupted.
+ * <p/>
+ * Changed entries must contain the current value of every synchronized attribute, so the filter can't be used with
+ * synchronization operations that deliver partial entries (like DirSync).
+ * <p/>
+ * Attribute values are hashed via the {@link LdapAttributeResolver} (both the string values and the binary value of each
+ * attribute are taken into account). A hash collision suppresses a real change, but the chance of that is negligible
+ * (around 2<sup>-64</sup> per change).
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type (determined by the {@link org.adsync4j.spi.LdapClient} implementation in
+ *                         use).
+ */
+@ThreadSafe
+class AttributeHashFilter<LDAP_ATTRIBUTE> implements BatchEntryProcessor<LDAP_ATTRIBUTE> {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final BatchEntryProcessor<LDAP_ATTRIBUTE> _delegate;
+    private final AttributeHashIndex _index;
+    private final LdapAttributeResolver<LDAP_ATTRIBUTE> _attributeResolver;
+    private final int _objectGuidPosition;
+
+    /**
+     * @param delegate           The entry processor to pass entries on to.
+     * @param index              The index of hashes recorded by previous synchronizations.
+     * @param attributeResolver  Used to access attribute values.
+     * @param objectGuidPosition Position of the {@code objectGUID} attribute in the delivered entries.
+     */
+    AttributeHashFilter(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> delegate,
+            AttributeHashIndex index,
+            LdapAttributeResolver<LDAP_ATTRIBUTE> attributeResolver,
+            int objectGuidPosition)
+    {
+        _delegate = delegate;
+        _index = index;
+        _attributeResolver = attributeResolver;
+        _objectGuidPosition = objectGuidPosition;
+    }
+
+    @Override
+    public void beginSync(SyncType syncType, long highestCommittedUSN) {
+        _delegate.beginSync(syncType, highestCommittedUSN);
+    }
+
+    @Override
+    public void processNewEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+        synchronized (_index) {
+            for (List<LDAP_ATTRIBUTE> entry : entries) {
+                recordHash(entry);
+            }
+        }
+        _delegate.processNewEntries(entries);
+    }
+
+    @Override
+    public void processChangedEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+        List<List<LDAP_ATTRIBUTE>> changedEntries = new ArrayList<>(entries.size());
+        synchronized (_index) {
+            for (List<LDAP_ATTRIBUTE> entry : entries) {
+                if (recordHash(entry)) {
+                    changedEntries.add(entry);
+                }
+            }
+        }
+        if (!changedEntries.isEmpty()) {
+            _delegate.processChangedEntries(changedEntries);
+        }
+    }
+
+    @Override
+    public void processNewAndChangedEntries(List<List<LDAP_ATTRIBUTE>> entries, BitSet newEntries) {
+        List<List<LDAP_ATTRIBUTE>> passedEntries = new ArrayList<>(entries.size());
+        BitSet passedNewEntries = new BitSet();
+        synchronized (_index) {
+            for (int i = 0; i < entries.size(); i++) {
+                boolean isNewEntry = newEntries.get(i);
+                if (recordHash(entries.get(i)) || isNewEntry) {
+                    passedNewEntries.set(passedEntries.size(), isNewEntry);
+                    passedEntries.add(entries.get(i));
+                }
+            }
+        }
+        Pages.deliverNewAndChangedEntries(_delegate, passedEntries, passedNewEntries);
+    }
+
+    @Override
+    public void processDeletedEntries(List<UUID> entryIds) {
+        synchronized (_index) {
+            for (UUID entryId : entryIds) {
+                _index.remove(entryId);
+            }
+        }
+        _delegate.processDeletedEntries(entryIds);
+    }
+
+    @Override
+    public void endSync(long highestCommittedUSN) {
+        _delegate.endSync(highestCommittedUSN);
+    }
+
+    /**
+     * @return True if the entry is not in the index, or its hash has changed.
+     */
+    private boolean recordHash(List<LDAP_ATTRIBUTE> entry) {
+        LDAP_ATTRIBUTE objectGuidAttribute = entry.get(_objectGuidPosition);
+        UUID entryId = objectGuidAttribute == null
+                ? null
+                : bytesToUUID(_attributeResolver.getAsByteArray(objectGuidAttribute));
+        return entryId == null || _index.put(entryId, hash(entry));
+    }
+
+    /**
+     * Calculates the 64-bit FNV-1a hash of the values of the given entry.
+     */
+    private long hash(List<LDAP_ATTRIBUTE> entry) {
+        long hash = FNV_OFFSET_BASIS;
+        for (LDAP_ATTRIBUTE attribute : entry) {
+            if (attribute == null) {
+                hash = (hash ^ 0xff) * FNV_PRIME;
+                continue;
+            }
+            for (String value : _attributeResolver.getAsStringList(attribute)) {
+                hash = hash(hash, value);
+            }
+            byte[] binaryValue = _attributeResolver.getAsByteArray(attribute);
+            if (binaryValue != null) {
+                for (byte b : binaryValue) {
+                    hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+                }
+            }
+            // separator between attributes
+            hash = (hash ^ 0xfe) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        // separator between values
+        return (hash ^ 0xfd) * FNV_PRIME;
+    }
+}
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import org.adsync4j.spi.AttributeHashStore;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.UUID;
+
+/**
+ * Compact hash table mapping the unique identifier of entries to a 64-bit hash of their synchronized attribute values. Keys
+ * and values are stored in primitive arrays (open addressing with linear probing), so there is no per-entry object
+ * overhead: each slot takes 24 bytes, and the table is kept at most half full.
+ * <p/>
+ * The index keeps track of the entries modified since the last {@link AttributeHashIndex#flushModifications
+ * flushModifications()}, so that only those have to be written to the {@link AttributeHashStore}. Once the index has been
+ * cleared, every entry in it is to be written, so modifications are not tracked until the next flush.
+ * <p/>
+ * The nil UUID (all zero bits) is used to mark empty slots, therefore it cannot be stored.
+ */
+@NotThreadSafe
+class AttributeHashIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] _mostSignificantBits;
+    private long[] _leastSignificantBits;
+    private long[] _hashes;
+    private int _size;
+
+    private UUIDSet _modifiedEntryIds = new UUIDSet();
+    private boolean _cleared;
+
+    AttributeHashIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        _mostSignificantBits = new long[capacity];
+        _leastSignificantBits = new long[capacity];
+        _hashes = new long[capacity];
+        _size = 0;
+    }
+
+    /**
+     * Stores the given hash for the entry identified by the given UUID.
+     *
+     * @return True if the entry is new to the index, or its hash has changed.
+     */
+    boolean put(UUID entryId, long hash) {
+        return put(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits(), hash);
+    }
+
+    private boolean put(long msb, long lsb, long hash) {
+        if (msb == 0 && lsb == 0) {
+            return true;
+        }
+
+        int slot = findSlot(msb, lsb);
+        if (isOccupied(slot)) {
+            boolean isChanged = _hashes[slot] != hash;
+            if (isChanged) {
+                _hashes[slot] = hash;
+                trackModification(msb, lsb);
+            }
+            return isChanged;
+        }
+
+        trackModification(msb, lsb);
+        _mostSignificantBits[slot] = msb;
+        _leastSignificantBits[slot] = lsb;
+        _hashes[slot] = hash;
+        if (++_size * 2 > _hashes.length) {
+            resize(_hashes.length * 2);
+        }
+        return true;
+    }
+
+    private void trackModification(long msb, long lsb) {
+        if (!_cleared) {
+            _modifiedEntryIds.add(msb, lsb);
+        }
+    }
+
+    @Nullable
+    Long get(UUID entryId) {
+        int slot = findSlot(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+        return isOccupied(slot) ? _hashes[slot] : null;
+    }
+
+    void remove(UUID entryId) {
+        int slot = findSlot(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+        if (!isOccupied(slot)) {
+            return;
+        }
+        trackModification(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+
+        // backward shift deletion: move subsequent entries of the probe sequence into the gap
+        int mask = _hashes.length - 1;
+        int gap = slot;
+        for (int i = (gap + 1) & mask; isOccupied(i); i = (i + 1) & mask) {
+            int home = homeSlot(_mostSignificantBits[i], _leastSignificantBits[i]);
+            boolean canMoveToGap = gap <= i ? (home <= gap || home > i) : (home <= gap && home > i);
+            if (canMoveToGap) {
+                _mostSignificantBits[gap] = _mostSignificantBits[i];
+                _leastSignificantBits[gap] = _leastSignificantBits[i];
+                _hashes[gap] = _hashes[i];
+                gap = i;
+            }
+        }
+        _mostSignificantBits[gap] = 0;
+        _leastSignificantBits[gap] = 0;
+        _size--;
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+        _modifiedEntryIds = new UUIDSet();
+        _cleared = true;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    private boolean isOccupied(int slot) {
+        return _mostSignificantBits[slot] != 0 || _leastSignificantBits[slot] != 0;
+    }
+
+    private int findSlot(long msb, long lsb) {
+        int mask = _hashes.length - 1;
+        int slot = homeSlot(msb, lsb);
+        while (isOccupied(slot) && (_mostSignificantBits[slot] != msb || _leastSignificantBits[slot] != lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int homeSlot(long msb, long lsb) {
+        long mixed = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & (_hashes.length - 1);
+    }
+
+    private void resize(int capacity) {
+        long[] mostSignificantBits = _mostSignificantBits;
+        long[] leastSignificantBits = _leastSignificantBits;
+        long[] hashes = _hashes;
+
+        allocate(capacity);
+        for (int i = 0; i < hashes.length; i++) {
+            if (mostSignificantBits[i] != 0 || leastSignificantBits[i] != 0) {
+                int slot = findSlot(mostSignificantBits[i], leastSignificantBits[i]);
+                _mostSignificantBits[slot] = mostSignificantBits[i];
+                _leastSignificantBits[slot] = leastSignificantBits[i];
+                _hashes[slot] = hashes[i];
+                _size++;
+            }
+        }
+    }
+
+    /**
+     * Passes the modifications made since the previous invocation (or since the index has been loaded) to the given store.
+     */
+    void flushModifications(AttributeHashStore store) {
+        if (_cleared) {
+            store.clear();
+            if (_size > 0) {
+                store.update(_allEntries);
+            }
+            _cleared = false;
+        } else if (!_modifiedEntryIds.isEmpty()) {
+            store.update(_modifiedEntries);
+            _modifiedEntryIds = new UUIDSet();
+        }
+    }
+
+    /**
+     * Every entry of the index, passed to the store after the index has been cleared.
+     */
+    private final AttributeHashStore.Modifications _allEntries = new AttributeHashStore.Modifications() {
+        @Override
+        public void forEachChangedHash(AttributeHashStore.HashHandler hashHandler) {
+            for (int i = 0; i < _hashes.length; i++) {
+                if (isOccupied(i)) {
+                    hashHandler.handleHash(_mostSignificantBits[i], _leastSignificantBits[i], _hashes[i]);
+                }
+            }
+        }
+
+        @Override
+        public void forEachRemovedEntry(AttributeHashStore.RemovedEntryHandler removedEntryHandler) {
+        }
+    };
+
+    /**
+     * The entries modified since the last flush.
+     */
+    private final AttributeHashStore.Modifications _modifiedEntries = new AttributeHashStore.Modifications() {
+        @Override
+        public void forEachChangedHash(AttributeHashStore.HashHandler hashHandler) {
+            for (UUID entryId : _modifiedEntryIds) {
+                int slot = findSlot(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+                if (isOccupied(slot)) {
+                    hashHandler.handleHash(_mostSignificantBits[slot], _leastSignificantBits[slot], _hashes[slot]);
+                }
+            }
+        }
+
+        @Override
+        public void forEachRemovedEntry(AttributeHashStore.RemovedEntryHandler removedEntryHandler) {
+            for (UUID entryId : _modifiedEntryIds) {
+                int slot = findSlot(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+                if (!isOccupied(slot)) {
+                    removedEntryHandler.handleRemovedEntry(
+                            entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+                }
+            }
+        }
+    };
+
+    /**
+     * Creates an index holding the hashes loaded from the given store, with no modifications to flush.
+     */
+    static AttributeHashIndex load(AttributeHashStore store) {
+        final AttributeHashIndex index = new AttributeHashIndex();
+        store.load(new AttributeHashStore.HashHandler() {
+            @Override
+            public void handleHash(long mostSignificantBits, long leastSignificantBits, long hash) {
+                index.put(mostSignificantBits, leastSignificantBits, hash);
+            }
+        });
+        index._modifiedEntryIds = new UUIDSet();
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeHashIndex{size=" + _size + ", capacity=" + _hashes.length + '}';
+    }
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import org.adsync4j.api.FullSyncRequiredException;
+import org.adsync4j.api.LdapClientException;
+import org.adsync4j.spi.BatchEntryProcessor;
+import org.adsync4j.spi.ChangeNotificationLdapClient;
+import org.adsync4j.spi.ChangeNotificationListener;
+import org.adsync4j.spi.LdapClient;
+import org.adsync4j.spi.LdapClientFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Long-running synchronization that uses the change notification LDAP control of Active Directory (see {@link
+ * ChangeNotificationLdapClient}) to get notified about changes, and performs an {@link
+ * ActiveDirectorySyncServiceImpl#incrementalSyncInBatches incremental synchronization} as soon as a change is notified. This
+ * delivers changes to the entry processor within the time of one incremental sync, without the overhead of polling.
+ * <p/>
+ * Notifications are only used as triggers: the changes themselves are always retrieved by the incremental synchronization,
+ * which means the search filter and the attributes to sync are applied exactly as in case of polling, and the highest
+ * committed USN in the DCA is kept up to date. Notifications arriving while a sync is in progress are coalesced into one
+ * subsequent sync.
+ * <p/>
+ * The notification search is registered on a dedicated {@link LdapClient} obtained from the {@link LdapClientFactory}. An
+ * incremental synchronization is performed right after each registration, so changes made while no notification search was
+ * active (before the start, or while reconnecting after the connection has been lost) are not missed.
+ * <p/>
+ * Instances are created and started by {@link ActiveDirectorySyncServiceImpl#startChangeNotificationSync
+ * ActiveDirectorySyncServiceImpl.startChangeNotificationSync()}, and run on a background thread until {@link
+ * ChangeNotificationSync#stop()} is called, or an incremental synchronization fails with an exception other than an {@link
+ * LdapClientException} (e.g. with a {@link FullSyncRequiredException}, or with an exception thrown by the entry processor).
+ * Other {@link LdapClientException}s make it reconnect after a delay. The sync service must not be used by other threads in
+ * the meantime.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type (determined by the {@link LdapClient} implementation in use).
+ */
+public class ChangeNotificationSync<LDAP_ATTRIBUTE> {
+
+    private final static Logger LOG = LoggerFactory.getLogger(ChangeNotificationSync.class);
+
+    /**
+     * The default time to wait before registering again for change notifications after the connection has been lost.
+     */
+    public static final long DEFAULT_RECONNECT_DELAY_MILLIS = 5000;
+
+    private final ActiveDirectorySyncServiceImpl<?, ?, LDAP_ATTRIBUTE> _syncService;
+    private final BatchEntryProcessor<LDAP_ATTRIBUTE> _entryProcessor;
+    private final LdapClientFactory<LDAP_ATTRIBUTE> _ldapClientFactory;
+    private final String _searchBaseDN;
+    private final long _reconnectDelayMillis;
+
+    private final Object _lock = new Object();
+    private final AtomicBoolean _changePending = new AtomicBoolean();
+    private boolean _connectionLost;
+
+    private final Thread _syncThread;
+    private volatile boolean _stopped;
+
+    /*package*/ ChangeNotificationSync(
+            ActiveDirectorySyncServiceImpl<?, ?, LDAP_ATTRIBUTE> syncService,
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor,
+            LdapClientFactory<LDAP_ATTRIBUTE> ldapClientFactory,
+            String searchBaseDN,
+            long reconnectDelayMillis)
+    {
+        _syncService = syncService;
+        _entryProcessor = entryProcessor;
+        _ldapClientFactory = ldapClientFactory;
+        _searchBaseDN = searchBaseDN;
+        _reconnectDelayMillis = reconnectDelayMillis;
+
+        _syncThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runUntilStopped();
+            }
+        }, "adsync4j-change-notification");
+        _syncThread.setDaemon(true);
+    }
+
+    /*package*/ void start() {
+        _syncThread.start();
+    }
+
+    private void runUntilStopped() {
+        try {
+            while (!_stopped) {
+                try {
+                    Listener listener = new Listener();
+                    LdapClient<LDAP_ATTRIBUTE> notificationClient = registerForChangeNotification(listener);
+                    try {
+                        syncUntilConnectionLost();
+                    } finally {
+                        listener._cancelled = true;
+                        notificationClient.closeConnection();
+                    }
+                } catch (FullSyncRequiredException e) {
+                    LOG.error("Stopping change notification based sync, because a full sync is required.", e);
+                    _stopped = true;
+                } catch (LdapClientException e) {
+                    if (!_stopped) {
+                        LOG.warn("Change notification based sync failed, reconnecting in " + _reconnectDelayMillis + " ms.",
+                                 e);
+                        TimeUnit.MILLISECONDS.sleep(_reconnectDelayMillis);
+                    }
+                } catch (RuntimeException e) {
+                    LOG.error("Stopping change notification based sync due to an unexpected error.", e);
+                    _stopped = true;
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("Change notification based sync has been interrupted.");
+        }
+        LOG.info("Change notification based sync has stopped.");
+    }
+
+    @SuppressWarnings("unchecked")
+    private LdapClient<LDAP_ATTRIBUTE> registerForChangeNotification(Listener listener) {
+        synchronized (_lock) {
+            _connectionLost = false;
+        }
+
+        LdapClient<LDAP_ATTRIBUTE> notificationClient = _ldapClientFactory.createLdapClient();
+        if (!(notificationClient instanceof ChangeNotificationLdapClient)) {
+            notificationClient.closeConnection();
+            throw new IllegalStateException(
+                    "The LdapClientFactory must create ChangeNotificationLdapClients in order to perform a change " +
+                    "notification based sync.");
+        }
+
+        try {
+            ((ChangeNotificationLdapClient<LDAP_ATTRIBUTE>) notificationClient)
+                    .registerChangeNotification(_searchBaseDN, listener);
+        } catch (RuntimeException e) {
+            notificationClient.closeConnection();
+            throw e;
+        }
+        LOG.info("Registered for change notifications under {}.", _searchBaseDN);
+        return notificationClient;
+    }
+
+    /**
+     * Performs an incremental sync to catch up with the changes made before the registration, and then another one whenever
+     * a change is notified. Returns when the notification search terminates.
+     */
+    private void syncUntilConnectionLost() throws InterruptedException {
+        _changePending.set(false);
+        _syncService.incrementalSyncInBatches(_entryProcessor);
+
+        while (awaitChangeOrConnectionLoss()) {
+            _changePending.set(false);
+            _syncService.incrementalSyncInBatches(_entryProcessor);
+        }
+        LOG.info("Change notification search has terminated.");
+    }
+
+    /**
+     * @return True if a change has been notified, or false if the notification search has terminated.
+     */
+    private boolean awaitChangeOrConnectionLoss() throws InterruptedException {
+        synchronized (_lock) {
+            while (!_changePending.get() && !_connectionLost) {
+                _lock.wait();
+            }
+            return !_connectionLost;
+        }
+    }
+
+    /**
+     * Listener registered for one notification search. Ignores call-backs after the search has been terminated on purpose,
+     * so that they don't interfere with the next registration.
+     */
+    private class Listener implements ChangeNotificationListener {
+        private volatile boolean _cancelled;
+
+        @Override
+        public void changeNotified(String entryDN) {
+            if (_cancelled) {
+                return;
+            }
+            LOG.debug("Change notified on entry: {}", entryDN);
+            if (_changePending.compareAndSet(false, true)) {
+                synchronized (_lock) {
+                    _lock.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void notificationStopped(LdapClientException cause) {
+            if (_cancelled) {
+                return;
+            }
+            LOG.warn("Change notification search has terminated unexpectedly.", cause);
+            synchronized (_lock) {
+                _connectionLost = true;
+                _lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops the synchronization. If an incremental synchronization is in progress, it is interrupted.
+     */
+    public void stop() {
+        _stopped = true;
+        _syncThread.interrupt();
+    }
+
+    /**
+     * Waits for the background thread to terminate after {@link ChangeNotificationSync#stop()} has been called (or the
+     * synchronization has stopped on its own).
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the {@code timeout} argument.
+     * @return True if the synchronization has stopped, or false if the timeout elapsed.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        unit.timedJoin(_syncThread, timeout);
+        return !_syncThread.isAlive();
+    }
+
+    /**
+     * @return True if the synchronization is running.
+     */
+    public boolean isRunning() {
+        return _syncThread.isAlive();
+    }
+}
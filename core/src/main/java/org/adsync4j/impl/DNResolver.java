@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import org.adsync4j.api.LdapClientException;
+import org.adsync4j.spi.BatchEntryProcessor;
+import org.adsync4j.spi.LdapAttributeResolver;
+import org.adsync4j.spi.LdapClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.*;
+
+import static org.adsync4j.impl.UUIDUtils.bytesToUUID;
+
+/**
+ * Resolves Distinguished Names to the {@code objectGUID} of the referenced entries, caching a bounded number of resolved
+ * names in least-recently-used order. Meant for processing DN-valued attributes (like {@code manager} or {@code member})
+ * when the Extended DN control (see {@link LdapClient#EXTENDED_DN_CONTROL_OID}) can't be used.
+ * <p/>
+ * Names missing from the cache are looked up in batches: {@link DNResolver#resolveAll resolveAll()} retrieves up to {@link
+ * DNResolver#LOOKUP_BATCH_SIZE} names with a single search (an OR filter on {@code distinguishedName}), instead of one
+ * request per name. Names are compared case-insensitively.
+ * <p/>
+ * Since renamed and deleted entries invalidate cached names, the cache should be kept consistent with the synchronization
+ * stream, either by calling {@link DNResolver#evict evict()} directly, or by wrapping the entry processor with {@link
+ * DNResolver#evictingEntryProcessor evictingEntryProcessor()}.
+ * <p/>
+ * The resolver doesn't close the connection of the {@link LdapClient}, that is left to the owner of the client.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type (determined by the {@link LdapClient} implementation in use).
+ */
+@NotThreadSafe
+public class DNResolver<LDAP_ATTRIBUTE> {
+
+    private final static Logger LOG = LoggerFactory.getLogger(DNResolver.class);
+
+    /**
+     * The maximum number of names looked up with a single search operation.
+     */
+    public static final int LOOKUP_BATCH_SIZE = 200;
+
+    public static final String DISTINGUISHED_NAME = "distinguishedName";
+
+    private static final List<String> LOOKUP_ATTRIBUTES = Arrays.asList(DISTINGUISHED_NAME, LdapClient.OBJECT_GUID);
+
+    private final LdapClient<LDAP_ATTRIBUTE> _ldapClient;
+    private final String _searchBaseDN;
+
+    /**
+     * Resolved names keyed by their lower-case form, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, UUID> _cache;
+
+    /**
+     * The keys of {@link DNResolver#_cache} by the {@code objectGUID} they are resolved to, used for eviction.
+     */
+    private final Map<UUID, String> _namesById = new HashMap<>();
+
+    /**
+     * @param ldapClient   Used to look up names missing from the cache.
+     * @param searchBaseDN Names are looked up in the sub-tree designated by this DN (typically the root DN of the domain).
+     * @param maximumSize  The maximum number of names kept in the cache.
+     */
+    public DNResolver(LdapClient<LDAP_ATTRIBUTE> ldapClient, String searchBaseDN, final int maximumSize) {
+        _ldapClient = ldapClient;
+        _searchBaseDN = searchBaseDN;
+        _cache = new LinkedHashMap<String, UUID>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UUID> eldest) {
+                if (size() > maximumSize) {
+                    _namesById.remove(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Resolves a single name. Use {@link DNResolver#resolveAll resolveAll()} to resolve several names, so that the names
+     * missing from the cache are looked up together.
+     *
+     * @param dn A Distinguished Name.
+     * @return The {@code objectGUID} of the entry, or {@code null} if no such entry exists.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     */
+    @Nullable
+    public UUID resolve(String dn) throws LdapClientException {
+        return resolveAll(Collections.singletonList(dn)).get(dn);
+    }
+
+    /**
+     * Resolves the given names, looking up the names missing from the cache in batches of {@link
+     * DNResolver#LOOKUP_BATCH_SIZE}.
+     *
+     * @param dns Distinguished Names.
+     * @return The {@code objectGUID}s of the entries keyed by the names as they were passed in. Names of non-existent entries
+     *         are omitted.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     */
+    public Map<String, UUID> resolveAll(Collection<String> dns) throws LdapClientException {
+        Map<String, UUID> resolved = new HashMap<>();
+        Map<String, String> missingByKey = new LinkedHashMap<>();
+        for (String dn : dns) {
+            String key = toKey(dn);
+            UUID entryId = _cache.get(key);
+            if (entryId != null) {
+                resolved.put(dn, entryId);
+            } else {
+                missingByKey.put(key, dn);
+            }
+        }
+
+        if (!missingByKey.isEmpty()) {
+            LOG.debug("Looking up {} Distinguished Names missing from the cache.", missingByKey.size());
+            for (List<String> batch : Pages.split(missingByKey.values(), LOOKUP_BATCH_SIZE)) {
+                lookUp(batch, missingByKey, resolved);
+            }
+        }
+        return resolved;
+    }
+
+    private void lookUp(List<String> dns, Map<String, String> missingByKey, Map<String, UUID> resolved) {
+        LdapAttributeResolver<LDAP_ATTRIBUTE> attributeResolver = _ldapClient.getAttributeResolver();
+        for (LDAP_ATTRIBUTE[] entry : _ldapClient.search(_searchBaseDN, getDistinguishedNameFilter(dns), LOOKUP_ATTRIBUTES)) {
+            String dn = entry[0] == null ? null : attributeResolver.getAsString(entry[0]);
+            UUID entryId = entry[1] == null ? null : bytesToUUID(attributeResolver.getAsByteArray(entry[1]));
+            if (dn == null || entryId == null) {
+                continue;
+            }
+            String key = toKey(dn);
+            String requestedDN = missingByKey.get(key);
+            if (requestedDN != null) {
+                put(key, entryId);
+                resolved.put(requestedDN, entryId);
+            }
+        }
+    }
+
+    private void put(String key, UUID entryId) {
+        String previousKey = _namesById.put(entryId, key);
+        if (previousKey != null && !previousKey.equals(key)) {
+            _cache.remove(previousKey);
+        }
+        _cache.put(key, entryId);
+    }
+
+    /**
+     * Removes the name of the given entry from the cache. Must be called when an entry is renamed (or moved) or deleted.
+     *
+     * @param entryId The {@code objectGUID} of the entry.
+     */
+    public void evict(UUID entryId) {
+        String key = _namesById.remove(entryId);
+        if (key != null) {
+            _cache.remove(key);
+        }
+    }
+
+    public void clear() {
+        _cache.clear();
+        _namesById.clear();
+    }
+
+    public int size() {
+        return _cache.size();
+    }
+
+    /**
+     * Returns a {@link BatchEntryProcessor} decorator that keeps the cache of this resolver consistent with the
+     * synchronization stream: changed entries (which include renamed ones) and deleted entries are evicted, and the cache is
+     * cleared at the beginning of a full synchronization. The attributes to sync must include {@code objectGUID}.
+     *
+     * @param delegate           The entry processor to pass entries on to.
+     * @param objectGuidPosition Position of the {@code objectGUID} attribute in the delivered entries.
+     * @return The decorated entry processor.
+     */
+    public BatchEntryProcessor<LDAP_ATTRIBUTE> evictingEntryProcessor(
+            final BatchEntryProcessor<LDAP_ATTRIBUTE> delegate, final int objectGuidPosition)
+    {
+        return new BatchEntryProcessor<LDAP_ATTRIBUTE>() {
+            @Override
+            public void beginSync(SyncType syncType, long highestCommittedUSN) {
+                if (syncType == SyncType.FULL) {
+                    clear();
+                }
+                delegate.beginSync(syncType, highestCommittedUSN);
+            }
+
+            @Override
+            public void processNewEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+                delegate.processNewEntries(entries);
+            }
+
+            @Override
+            public void processChangedEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+                for (List<LDAP_ATTRIBUTE> entry : entries) {
+                    evictEntry(entry);
+                }
+                delegate.processChangedEntries(entries);
+            }
+
+            @Override
+            public void processNewAndChangedEntries(List<List<LDAP_ATTRIBUTE>> entries, BitSet newEntries) {
+                for (int i = newEntries.nextClearBit(0); i < entries.size(); i = newEntries.nextClearBit(i + 1)) {
+                    evictEntry(entries.get(i));
+                }
+                delegate.processNewAndChangedEntries(entries, newEntries);
+            }
+
+            private void evictEntry(List<LDAP_ATTRIBUTE> entry) {
+                LDAP_ATTRIBUTE objectGuidAttribute = entry.get(objectGuidPosition);
+                UUID entryId = objectGuidAttribute == null
+                        ? null
+                        : bytesToUUID(_ldapClient.getAttributeResolver().getAsByteArray(objectGuidAttribute));
+                if (entryId != null) {
+                    evict(entryId);
+                }
+            }
+
+            @Override
+            public void processDeletedEntries(List<UUID> entryIds) {
+                for (UUID entryId : entryIds) {
+                    evict(entryId);
+                }
+                delegate.processDeletedEntries(entryIds);
+            }
+
+            @Override
+            public void endSync(long highestCommittedUSN) {
+                delegate.endSync(highestCommittedUSN);
+            }
+        };
+    }
+
+    /**
+     * Compiles an LDAP filter expression that matches the entries with any of the given Distinguished Names.
+     */
+    static String getDistinguishedNameFilter(List<String> dns) {
+        StringBuilder filter = new StringBuilder("(|");
+        for (String dn : dns) {
+            filter.append('(').append(DISTINGUISHED_NAME).append('=');
+            for (int i = 0; i < dn.length(); i++) {
+                char c = dn.charAt(i);
+                if (c == '*' || c == '(' || c == ')' || c == '\\' || c == 0) {
+                    filter.append('\\').append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                } else {
+                    filter.append(c);
+                }
+            }
+            filter.append(')');
+        }
+        return filter.append(')').toString();
+    }
+
+    private static String toKey(String dn) {
+        return dn.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads, so that background synchronizations don't prevent the JVM from exiting.
+ */
+class DaemonThreadFactory implements ThreadFactory {
+
+    private final String _namePrefix;
+    private final AtomicInteger _threadCount = new AtomicInteger();
+
+    /**
+     * @param namePrefix Prefix of the thread names, followed by the number of the thread.
+     */
+    DaemonThreadFactory(String namePrefix) {
+        _namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, _namePrefix + _threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
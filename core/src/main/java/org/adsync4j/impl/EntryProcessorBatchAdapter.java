@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import org.adsync4j.spi.BatchEntryProcessor;
+import org.adsync4j.spi.EntryProcessor;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Adapter that makes it possible to use an {@link EntryProcessor} where a {@link BatchEntryProcessor} is expected. Batches
+ * are unpacked and their elements are passed to the corresponding method of the wrapped {@link EntryProcessor} one-by-one.
+ * The begin/end-of-sync call-backs are ignored.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type determined by the {@link org.adsync4j.spi.LdapClient} implementation in use.
+ */
+public class EntryProcessorBatchAdapter<LDAP_ATTRIBUTE> implements BatchEntryProcessor<LDAP_ATTRIBUTE> {
+
+    private final EntryProcessor<LDAP_ATTRIBUTE> _entryProcessor;
+
+    public EntryProcessorBatchAdapter(EntryProcessor<LDAP_ATTRIBUTE> entryProcessor) {
+        _entryProcessor = entryProcessor;
+    }
+
+    @Override
+    public void beginSync(SyncType syncType, long highestCommittedUSN) {
+    }
+
+    @Override
+    public void processNewEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+        for (List<LDAP_ATTRIBUTE> entry : entries) {
+            _entryProcessor.processNew(entry);
+        }
+    }
+
+    @Override
+    public void processChangedEntries(List<List<LDAP_ATTRIBUTE>> entries) {
+        for (List<LDAP_ATTRIBUTE> entry : entries) {
+            _entryProcessor.processChanged(entry);
+        }
+    }
+
+    @Override
+    public void processNewAndChangedEntries(List<List<LDAP_ATTRIBUTE>> entries, BitSet newEntries) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (newEntries.get(i)) {
+                _entryProcessor.processNew(entries.get(i));
+            } else {
+                _entryProcessor.processChanged(entries.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void processDeletedEntries(List<UUID> entryIds) {
+        for (UUID entryId : entryIds) {
+            _entryProcessor.processDeleted(entryId);
+        }
+    }
+
+    @Override
+    public void endSync(long highestCommittedUSN) {
+    }
+}
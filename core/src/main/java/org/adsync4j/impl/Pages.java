@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import org.adsync4j.spi.BatchEntryProcessor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Utility class that groups the elements of an {@link Iterable} into pages of a fixed size. Used to deliver batches of
+ * entries when the {@link org.adsync4j.spi.LdapClient} in use is not able to expose the page boundaries of search results.
+ * Also delivers the new and changed entries of a page to a {@link BatchEntryProcessor} as a single batch.
+ */
+class Pages {
+
+    private Pages() {}
+
+    /**
+     * @param elements The elements to group into pages.
+     * @param pageSize The maximum number of elements on a page.
+     * @return A lazily evaluated series of pages, each containing at most {@code pageSize} elements (only the last page may
+     *         be shorter). The returned {@link Iterable} has no empty pages, even if {@code elements} is empty.
+     */
+    static <T> Iterable<List<T>> split(final Iterable<T> elements, final int pageSize) {
+        return new Iterable<List<T>>() {
+            @Override
+            public Iterator<List<T>> iterator() {
+                final Iterator<T> elementIterator = elements.iterator();
+                return new Iterator<List<T>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return elementIterator.hasNext();
+                    }
+
+                    @Override
+                    public List<T> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        List<T> page = new ArrayList<>(pageSize);
+                        while (page.size() < pageSize && elementIterator.hasNext()) {
+                            page.add(elementIterator.next());
+                        }
+                        return page;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Delivers the new and changed entries of a page to the provided {@link BatchEntryProcessor} with a single call, which is
+     * {@link BatchEntryProcessor#processNewEntries processNewEntries()} if all entries are new, {@link
+     * BatchEntryProcessor#processChangedEntries processChangedEntries()} if all entries are changed, or {@link
+     * BatchEntryProcessor#processNewAndChangedEntries processNewAndChangedEntries()} otherwise. Nothing is delivered if the
+     * page is empty.
+     *
+     * @param entries    The entries of the page.
+     * @param newEntries The indices of the new entries of the page.
+     */
+    static <LDAP_ATTRIBUTE> void deliverNewAndChangedEntries(
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, List<List<LDAP_ATTRIBUTE>> entries, BitSet newEntries)
+    {
+        int numOfNewEntries = newEntries.cardinality();
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (numOfNewEntries == entries.size()) {
+            entryProcessor.processNewEntries(entries);
+        } else if (numOfNewEntries == 0) {
+            entryProcessor.processChangedEntries(entries);
+        } else {
+            entryProcessor.processNewAndChangedEntries(entries, newEntries);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import org.adsync4j.api.BatchActiveDirectorySyncService;
+import org.adsync4j.api.FullSyncRequiredException;
+import org.adsync4j.spi.BatchEntryProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs the incremental synchronizations of many domains periodically on a bounded number of worker threads.
+ * <p/>
+ * Each domain is registered with its own sync service (sync services are not thread-safe, but the orchestrator never runs
+ * two synchronizations of the same domain at once), the entry processor receiving its entries, the domain controller it
+ * connects to, and its synchronization interval. Scheduling works as follows:
+ * <ul>
+ * <li>The next synchronization of a domain is due one interval after the previous one has finished. Intervals are
+ * randomized by {@link SyncOrchestrator#setJitter jitter} (and the first synchronizations are spread over one jitter
+ * period), so that domains registered at the same time don't hit the domain controllers at the same time.</li>
+ * <li>Due domains are queued and dispatched to the workers in first-come-first-served order. Since a domain is queued
+ * again only after its synchronization has finished, a domain with a long synchronization occupies at most one worker,
+ * and can't starve the others (round-robin).</li>
+ * <li>At most {@link SyncOrchestrator#setMaxConcurrentSyncsPerDC maxConcurrentSyncsPerDC} synchronizations run against the
+ * same domain controller at once. Due domains of a saturated domain controller keep their place in the queue, while the
+ * ones behind them are dispatched.</li>
+ * <li>If an incremental synchronization fails with a {@link FullSyncRequiredException}, a full synchronization of the domain
+ * is queued right away. Other failures are logged, and the domain is retried after its interval.</li>
+ * <li>Domains registered with {@link SyncOrchestrator#registerAdaptive registerAdaptive()} have their interval adapted to
+ * their change rate: it is halved (down to the minimum) after each synchronization that found the highest committed USN
+ * advanced, and doubled (up to the maximum) after each one that found it unchanged.</li>
+ * </ul>
+ * If the sync service of a domain is an {@link ActiveDirectorySyncServiceImpl}, incremental synchronizations are performed
+ * with {@link ActiveDirectorySyncServiceImpl#incrementalSyncIfChangedInBatches incrementalSyncIfChangedInBatches()}, so that
+ * polling a domain without changes costs a single root DSE read.
+ *
+ * @param <DCA_KEY>        Type of the key identifying the registered domains (typically the key of their DCA records).
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type (determined by the {@link org.adsync4j.spi.LdapClient} implementation in
+ *                         use).
+ */
+@ThreadSafe
+public class SyncOrchestrator<DCA_KEY, LDAP_ATTRIBUTE> {
+
+    private final static Logger LOG = LoggerFactory.getLogger(SyncOrchestrator.class);
+
+    public static final double DEFAULT_JITTER = 0.1;
+
+    /**
+     * Guards the registered domains, the queue of due domains and the counters of running synchronizations.
+     */
+    private final Object _lock = new Object();
+
+    private final Map<DCA_KEY, Domain> _domains = new HashMap<>();
+    private final List<Domain> _readyQueue = new LinkedList<>();
+    private final Map<String, Integer> _runningSyncsByDC = new HashMap<>();
+    private int _runningSyncs;
+
+    private final int _maxConcurrentSyncs;
+    private volatile int _maxConcurrentSyncsPerDC;
+    private volatile double _jitter = DEFAULT_JITTER;
+
+    private final ExecutorService _workers;
+    private final ScheduledExecutorService _timer;
+
+    /**
+     * @param maxConcurrentSyncs The number of worker threads, i.e. the maximum number of synchronizations running at once.
+     */
+    public SyncOrchestrator(int maxConcurrentSyncs) {
+        if (maxConcurrentSyncs < 1) {
+            throw new IllegalArgumentException("The number of concurrent syncs must be positive, got: " + maxConcurrentSyncs);
+        }
+        _maxConcurrentSyncs = maxConcurrentSyncs;
+        _maxConcurrentSyncsPerDC = maxConcurrentSyncs;
+        _workers = Executors.newFixedThreadPool(maxConcurrentSyncs, new DaemonThreadFactory("adsync4j-sync-"));
+        _timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("adsync4j-sync-timer-"));
+    }
+
+    /**
+     * Registers a domain and schedules its first synchronization.
+     *
+     * @param dcaKey           Key identifying the domain.
+     * @param domainController Identifies the domain controller the sync service connects to (e.g. its host name), used to
+     *                         enforce the {@link SyncOrchestrator#setMaxConcurrentSyncsPerDC per DC concurrency limit}.
+     * @param syncService      The sync service of the domain. Must not be used by others while the domain is registered.
+     * @param entryProcessor   Receives the synchronized entries. It is invoked from the worker threads.
+     * @param interval         The time to wait between the end of a synchronization and the start of the next one.
+     * @param unit             The unit of the {@code interval} argument.
+     * @throws IllegalStateException if a domain with the same key is already registered.
+     */
+    public void register(
+            DCA_KEY dcaKey, String domainController, BatchActiveDirectorySyncService<LDAP_ATTRIBUTE> syncService,
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long interval, TimeUnit unit)
+    {
+        registerAdaptive(dcaKey, domainController, syncService, entryProcessor, interval, interval, unit);
+    }
+
+    /**
+     * Registers a domain the synchronization interval of which is adapted to its change rate between the given bounds, and
+     * schedules its first synchronization. The interval starts from the minimum.
+     *
+     * @param minInterval The interval used while the domain keeps changing.
+     * @param maxInterval The interval used while the domain doesn't change.
+     * @param unit        The unit of the interval arguments.
+     * @throws IllegalStateException if a domain with the same key is already registered.
+     * @see SyncOrchestrator#register register()
+     */
+    public void registerAdaptive(
+            DCA_KEY dcaKey, String domainController, BatchActiveDirectorySyncService<LDAP_ATTRIBUTE> syncService,
+            BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long minInterval, long maxInterval, TimeUnit unit)
+    {
+        if (minInterval > maxInterval) {
+            throw new IllegalArgumentException(
+                    "The minimum interval (" + minInterval + ") must not be greater than the maximum (" + maxInterval + ").");
+        }
+        Domain domain = new Domain(
+                dcaKey, domainController, syncService, entryProcessor, unit.toMillis(minInterval), unit.toMillis(maxInterval));
+        synchronized (_lock) {
+            if (_domains.containsKey(dcaKey)) {
+                throw new IllegalStateException("A domain is already registered with the key: " + dcaKey);
+            }
+            _domains.put(dcaKey, domain);
+        }
+        LOG.info("Registered domain {} (DC: {}) with a sync interval of {}-{} ms.",
+                 dcaKey, domainController, domain._minInterval, domain._maxInterval);
+        schedule(domain, (long) (ThreadLocalRandom.current().nextDouble() * _jitter * domain._interval));
+    }
+
+    /**
+     * Unregisters a domain. A synchronization of the domain that is in progress is not interrupted, but no further ones are
+     * started.
+     *
+     * @param dcaKey Key identifying the domain.
+     * @return True if the domain was registered.
+     */
+    public boolean unregister(DCA_KEY dcaKey) {
+        synchronized (_lock) {
+            Domain domain = _domains.remove(dcaKey);
+            if (domain == null) {
+                return false;
+            }
+            domain._unregistered = true;
+            _readyQueue.remove(domain);
+            return true;
+        }
+    }
+
+    private void schedule(final Domain domain, long delayMillis) {
+        if (delayMillis <= 0) {
+            enqueue(domain);
+            return;
+        }
+        try {
+            _timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    enqueue(domain);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Not scheduling domain {}, because the orchestrator has been shut down.", domain._dcaKey);
+        }
+    }
+
+    private void enqueue(Domain domain) {
+        synchronized (_lock) {
+            if (!domain._unregistered) {
+                _readyQueue.add(domain);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Starts the synchronization of the due domains as long as there are free workers, skipping (but keeping in the queue)
+     * the domains whose domain controller is saturated.
+     */
+    private void dispatch() {
+        synchronized (_lock) {
+            for (Iterator<Domain> it = _readyQueue.iterator(); it.hasNext() && _runningSyncs < _maxConcurrentSyncs; ) {
+                final Domain domain = it.next();
+                Integer runningSyncsOfDC = _runningSyncsByDC.get(domain._domainController);
+                int runningSyncs = runningSyncsOfDC == null ? 0 : runningSyncsOfDC;
+                if (runningSyncs >= _maxConcurrentSyncsPerDC) {
+                    continue;
+                }
+                try {
+                    _workers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            sync(domain);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    LOG.debug("Not starting the sync of domain {}, because the orchestrator has been shut down.",
+                              domain._dcaKey);
+                    return;
+                }
+                it.remove();
+                _runningSyncs++;
+                _runningSyncsByDC.put(domain._domainController, runningSyncs + 1);
+            }
+        }
+    }
+
+    private void sync(Domain domain) {
+        long nextDelay = jittered(domain._interval);
+        try {
+            if (domain._fullSyncRequired) {
+                LOG.info("Performing full sync of domain {}.", domain._dcaKey);
+                domain._lastHighestCommittedUSN = domain._syncService.fullSyncInBatches(domain._entryProcessor);
+                domain._fullSyncRequired = false;
+            } else {
+                LOG.debug("Performing incremental sync of domain {}.", domain._dcaKey);
+                domain.adaptInterval(incrementalSync(domain));
+                nextDelay = jittered(domain._interval);
+            }
+        } catch (FullSyncRequiredException e) {
+            LOG.warn("Incremental sync of domain " + domain._dcaKey + " requires a full sync, escalating.", e);
+            domain._fullSyncRequired = true;
+            nextDelay = 0;
+        } catch (RuntimeException e) {
+            LOG.error("Sync of domain " + domain._dcaKey + " failed, retrying in " + nextDelay + " ms.", e);
+        } catch (Error e) {
+            LOG.error("Sync of domain " + domain._dcaKey + " failed, retrying in " + nextDelay + " ms.", e);
+            throw e;
+        } finally {
+            synchronized (_lock) {
+                _runningSyncs--;
+                _runningSyncsByDC.put(domain._domainController, _runningSyncsByDC.get(domain._domainController) - 1);
+            }
+            // rescheduled even if an Error is propagated, otherwise the domain would never be synced again
+            if (!domain._unregistered) {
+                schedule(domain, nextDelay);
+            }
+            dispatch();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private long incrementalSync(Domain domain) {
+        if (domain._syncService instanceof ActiveDirectorySyncServiceImpl) {
+            return ((ActiveDirectorySyncServiceImpl<?, ?, LDAP_ATTRIBUTE>) domain._syncService)
+                    .incrementalSyncIfChangedInBatches(domain._entryProcessor);
+        }
+        return domain._syncService.incrementalSyncInBatches(domain._entryProcessor);
+    }
+
+    private long jittered(long interval) {
+        double jitter = _jitter;
+        return (long) (interval * (1 - jitter + 2 * jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * @param maxConcurrentSyncsPerDC The maximum number of synchronizations running against the same domain controller at
+     *                                once. Defaults to the number of worker threads.
+     */
+    public void setMaxConcurrentSyncsPerDC(int maxConcurrentSyncsPerDC) {
+        if (maxConcurrentSyncsPerDC < 1) {
+            throw new IllegalArgumentException(
+                    "The number of concurrent syncs per DC must be positive, got: " + maxConcurrentSyncsPerDC);
+        }
+        _maxConcurrentSyncsPerDC = maxConcurrentSyncsPerDC;
+    }
+
+    /**
+     * @param jitter The maximum deviation of the actual intervals from the registered ones as a fraction of the registered
+     *               interval (e.g. 0.1 means that a 60 seconds interval varies between 54 and 66 seconds). Defaults to {@link
+     *               SyncOrchestrator#DEFAULT_JITTER}.
+     */
+    public void setJitter(double jitter) {
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("The jitter must be in the range [0, 1), got: " + jitter);
+        }
+        _jitter = jitter;
+    }
+
+    /**
+     * Stops scheduling synchronizations. Synchronizations in progress are interrupted.
+     */
+    public void shutdown() {
+        _timer.shutdownNow();
+        _workers.shutdownNow();
+    }
+
+    /**
+     * Waits for the synchronizations in progress to terminate after {@link SyncOrchestrator#shutdown()} has been called.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the {@code timeout} argument.
+     * @return True if every synchronization has terminated, or false if the timeout elapsed.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return _workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * A registered domain. Its fields other than {@code _unregistered} are only accessed by the worker running its
+     * synchronization (workers hand domains over to each other through the lock).
+     */
+    private class Domain {
+        private final DCA_KEY _dcaKey;
+        private final String _domainController;
+        private final BatchActiveDirectorySyncService<LDAP_ATTRIBUTE> _syncService;
+        private final BatchEntryProcessor<LDAP_ATTRIBUTE> _entryProcessor;
+        private final long _minInterval;
+        private final long _maxInterval;
+
+        private long _interval;
+        private Long _lastHighestCommittedUSN;
+        private boolean _fullSyncRequired;
+        private volatile boolean _unregistered;
+
+        Domain(
+                DCA_KEY dcaKey, String domainController, BatchActiveDirectorySyncService<LDAP_ATTRIBUTE> syncService,
+                BatchEntryProcessor<LDAP_ATTRIBUTE> entryProcessor, long minInterval, long maxInterval)
+        {
+            _dcaKey = dcaKey;
+            _domainController = domainController;
+            _syncService = syncService;
+            _entryProcessor = entryProcessor;
+            _minInterval = minInterval;
+            _maxInterval = maxInterval;
+            _interval = minInterval;
+        }
+
+        /**
+         * Halves the interval if the highest committed USN has advanced since the previous synchronization, or doubles it
+         * otherwise (within the bounds).
+         */
+        void adaptInterval(long highestCommittedUSN) {
+            if (_lastHighestCommittedUSN != null) {
+                _interval = highestCommittedUSN != _lastHighestCommittedUSN
+                        ? Math.max(_minInterval, _interval / 2)
+                        : Math.min(_maxInterval, _interval * 2);
+            }
+            _lastHighestCommittedUSN = highestCommittedUSN;
+        }
+    }
+}
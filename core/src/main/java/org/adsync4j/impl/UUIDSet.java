@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Memory efficient set of {@link UUID}s. The 128 bits of the elements are stored in a primitive array (open addressing with
+ * linear probing), so no {@link UUID} objects are retained: an element takes 16 bytes in the array, which is kept at most 75%
+ * full (e.g. 5 million elements take about 110 MB if the expected size is given at construction time, as opposed to the
+ * several hundred megabytes that a {@link java.util.HashSet} of {@link UUID}s would take).
+ * <p/>
+ * {@link UUID} objects are only created by the {@link UUIDSet#iterator() iterator}.
+ */
+@NotThreadSafe
+public class UUIDSet implements Iterable<UUID> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * The most and least significant bits of the elements in consecutive positions. The nil UUID marks empty slots, and
+     * is tracked separately if it's an element of the set.
+     */
+    private long[] _bits;
+    private int _capacity;
+    private int _size;
+    private boolean _containsNil;
+
+    public UUIDSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The number of elements the set is expected to hold. The set grows beyond that if necessary.
+     */
+    public UUIDSet(int expectedSize) {
+        allocate(Math.max(MIN_CAPACITY, (int) (expectedSize / MAX_LOAD_FACTOR) + 1));
+    }
+
+    private void allocate(int capacity) {
+        _bits = new long[capacity * 2];
+        _capacity = capacity;
+        _size = 0;
+    }
+
+    /**
+     * @return True if the set did not already contain the element.
+     */
+    public boolean add(UUID uuid) {
+        return add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Adds the UUID represented by the given bits (see {@link UUID#UUID(long, long)}).
+     *
+     * @return True if the set did not already contain the element.
+     */
+    public boolean add(long mostSignificantBits, long leastSignificantBits) {
+        if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+            boolean isNew = !_containsNil;
+            _containsNil = true;
+            return isNew;
+        }
+
+        int slot = findSlot(mostSignificantBits, leastSignificantBits);
+        if (isOccupied(slot)) {
+            return false;
+        }
+
+        _bits[slot * 2] = mostSignificantBits;
+        _bits[slot * 2 + 1] = leastSignificantBits;
+        if (++_size > _capacity * MAX_LOAD_FACTOR) {
+            resize(_capacity * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            return _containsNil;
+        }
+        return isOccupied(findSlot(msb, lsb));
+    }
+
+    /**
+     * @return True if the set contained the element.
+     */
+    public boolean remove(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            boolean wasContained = _containsNil;
+            _containsNil = false;
+            return wasContained;
+        }
+
+        int slot = findSlot(msb, lsb);
+        if (!isOccupied(slot)) {
+            return false;
+        }
+
+        // backward shift deletion: move subsequent elements of the probe sequence into the gap
+        int gap = slot;
+        for (int i = nextSlot(gap); isOccupied(i); i = nextSlot(i)) {
+            int home = homeSlot(_bits[i * 2], _bits[i * 2 + 1]);
+            boolean canMoveToGap = gap <= i ? (home <= gap || home > i) : (home <= gap && home > i);
+            if (canMoveToGap) {
+                _bits[gap * 2] = _bits[i * 2];
+                _bits[gap * 2 + 1] = _bits[i * 2 + 1];
+                gap = i;
+            }
+        }
+        _bits[gap * 2] = 0;
+        _bits[gap * 2 + 1] = 0;
+        _size--;
+        return true;
+    }
+
+    public int size() {
+        return _containsNil ? _size + 1 : _size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private boolean isOccupied(int slot) {
+        return _bits[slot * 2] != 0 || _bits[slot * 2 + 1] != 0;
+    }
+
+    private int nextSlot(int slot) {
+        return slot + 1 == _capacity ? 0 : slot + 1;
+    }
+
+    private int findSlot(long msb, long lsb) {
+        int slot = homeSlot(msb, lsb);
+        while (isOccupied(slot) && (_bits[slot * 2] != msb || _bits[slot * 2 + 1] != lsb)) {
+            slot = nextSlot(slot);
+        }
+        return slot;
+    }
+
+    private int homeSlot(long msb, long lsb) {
+        long mixed = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        // maps the upper 32 bits of the mixed value onto [0, capacity) without a division
+        return (int) (((mixed >>> 32) * _capacity) >>> 32);
+    }
+
+    private void resize(int capacity) {
+        long[] bits = _bits;
+
+        allocate(capacity);
+        for (int i = 0; i < bits.length; i += 2) {
+            if (bits[i] != 0 || bits[i + 1] != 0) {
+                int slot = findSlot(bits[i], bits[i + 1]);
+                _bits[slot * 2] = bits[i];
+                _bits[slot * 2 + 1] = bits[i + 1];
+                _size++;
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator that creates a {@link UUID} object for each element. The set must not be modified while iterating.
+     */
+    @Override
+    public Iterator<UUID> iterator() {
+        return new Iterator<UUID>() {
+            private int _slot = -1;
+            private boolean _nilReturned = !_containsNil;
+
+            @Override
+            public boolean hasNext() {
+                return !_nilReturned || nextOccupiedSlot() < _capacity;
+            }
+
+            @Override
+            public UUID next() {
+                if (!_nilReturned) {
+                    _nilReturned = true;
+                    return new UUID(0, 0);
+                }
+                _slot = nextOccupiedSlot();
+                if (_slot >= _capacity) {
+                    throw new NoSuchElementException();
+                }
+                return new UUID(_bits[_slot * 2], _bits[_slot * 2 + 1]);
+            }
+
+            private int nextOccupiedSlot() {
+                int slot = _slot + 1;
+                while (slot < _capacity && !isOccupied(slot)) {
+                    slot++;
+                }
+                return slot;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "UUIDSet{size=" + size() + ", capacity=" + _capacity + '}';
+    }
+}
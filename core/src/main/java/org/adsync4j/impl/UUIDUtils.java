@@ -32,28 +32,75 @@ public class UUIDUtils {
      */
     public static UUID bytesToUUID(byte[] bytes) {
         if (bytes != null && bytes.length == 16) {
-            long msb = bytes[3] & 0xFF;
-            msb = msb << 8 | (bytes[2] & 0xFF);
-            msb = msb << 8 | (bytes[1] & 0xFF);
-            msb = msb << 8 | (bytes[0] & 0xFF);
-
-            msb = msb << 8 | (bytes[5] & 0xFF);
-            msb = msb << 8 | (bytes[4] & 0xFF);
-
-            msb = msb << 8 | (bytes[7] & 0xFF);
-            msb = msb << 8 | (bytes[6] & 0xFF);
-
-            long lsb = bytes[8] & 0xFF;
-            lsb = lsb << 8 | (bytes[9] & 0xFF);
-            lsb = lsb << 8 | (bytes[10] & 0xFF);
-            lsb = lsb << 8 | (bytes[11] & 0xFF);
-            lsb = lsb << 8 | (bytes[12] & 0xFF);
-            lsb = lsb << 8 | (bytes[13] & 0xFF);
-            lsb = lsb << 8 | (bytes[14] & 0xFF);
-            lsb = lsb << 8 | (bytes[15] & 0xFF);
-
-            return new UUID(msb, lsb);
+            return new UUID(mostSignificantBits(bytes), leastSignificantBits(bytes));
         }
         return null;
     }
+
+    /**
+     * Decodes the most significant 64 bits of a GUID read from Active Directory (see {@link UUIDUtils#bytesToUUID
+     * bytesToUUID()}) without creating a {@link UUID} object.
+     *
+     * @param bytes Byte array of exactly 16 bytes received as en entry attribute from Active Directory.
+     * @return The same value as {@link UUID#getMostSignificantBits()} would return for the decoded {@link UUID}.
+     */
+    public static long mostSignificantBits(byte[] bytes) {
+        long msb = bytes[3] & 0xFF;
+        msb = msb << 8 | (bytes[2] & 0xFF);
+        msb = msb << 8 | (bytes[1] & 0xFF);
+        msb = msb << 8 | (bytes[0] & 0xFF);
+
+        msb = msb << 8 | (bytes[5] & 0xFF);
+        msb = msb << 8 | (bytes[4] & 0xFF);
+
+        msb = msb << 8 | (bytes[7] & 0xFF);
+        msb = msb << 8 | (bytes[6] & 0xFF);
+        return msb;
+    }
+
+    /**
+     * Decodes the least significant 64 bits of a GUID read from Active Directory (see {@link UUIDUtils#bytesToUUID
+     * bytesToUUID()}) without creating a {@link UUID} object.
+     *
+     * @param bytes Byte array of exactly 16 bytes received as en entry attribute from Active Directory.
+     * @return The same value as {@link UUID#getLeastSignificantBits()} would return for the decoded {@link UUID}.
+     */
+    public static long leastSignificantBits(byte[] bytes) {
+        long lsb = bytes[8] & 0xFF;
+        for (int i = 9; i < 16; i++) {
+            lsb = lsb << 8 | (bytes[i] & 0xFF);
+        }
+        return lsb;
+    }
+
+    /**
+     * Converts an {@link UUID} object into a byte array using the binary format of GUIDs in Active Directory. The inverse of
+     * {@link UUIDUtils#bytesToUUID bytesToUUID()}.
+     *
+     * @param uuid {@link UUID} object to convert.
+     * @return Byte array that can be used e.g. in an LDAP filter on the {@code objectGUID} attribute.
+     */
+    public static byte[] uuidToBytes(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        byte[] bytes = new byte[16];
+
+        bytes[3] = (byte) (msb >>> 56);
+        bytes[2] = (byte) (msb >>> 48);
+        bytes[1] = (byte) (msb >>> 40);
+        bytes[0] = (byte) (msb >>> 32);
+
+        bytes[5] = (byte) (msb >>> 24);
+        bytes[4] = (byte) (msb >>> 16);
+
+        bytes[7] = (byte) (msb >>> 8);
+        bytes[6] = (byte) msb;
+
+        for (int i = 15; i >= 8; i--) {
+            bytes[i] = (byte) lsb;
+            lsb >>>= 8;
+        }
+
+        return bytes;
+    }
 }
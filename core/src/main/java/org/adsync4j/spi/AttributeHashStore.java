@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+/**
+ * Interface of a store that persists the attribute hashes used to suppress changed entries whose synchronized attributes
+ * haven't actually changed (see {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl#setAttributeHashStore
+ * ActiveDirectorySyncServiceImpl.setAttributeHashStore()}).
+ * <p/>
+ * The hashes are kept apart from the {@link DomainControllerAffiliation}, since their number is proportional to the number of
+ * synchronized entries. The synchronization service loads them once, keeps them in memory between synchronizations, and
+ * passes only the hashes that have been modified since the last time to the store, right before each save of the DCA.
+ * <p/>
+ * Hashes are exchanged through call-backs that receive the {@code objectGUID} of the entry as two {@code long} values, so
+ * that neither side has to create objects for every synchronized entry.
+ * <p/>
+ * <b>Important!</b>
+ * The same consistency requirements apply to the store as to the {@link DCARepository}: modifications must be persisted in
+ * the same database (and preferably in the same transaction) as the DCA and the synchronized entries.
+ */
+public interface AttributeHashStore {
+
+    /**
+     * Call-back interface receiving attribute hashes.
+     */
+    interface HashHandler {
+        /**
+         * @param mostSignificantBits  The most significant 64 bits of the {@code objectGUID} of the entry.
+         * @param leastSignificantBits The least significant 64 bits of the {@code objectGUID} of the entry.
+         * @param hash                 The hash of the synchronized attribute values of the entry.
+         */
+        void handleHash(long mostSignificantBits, long leastSignificantBits, long hash);
+    }
+
+    /**
+     * Call-back interface receiving the unique identifiers of entries whose hash is to be removed.
+     */
+    interface RemovedEntryHandler {
+        /**
+         * @param mostSignificantBits  The most significant 64 bits of the {@code objectGUID} of the entry.
+         * @param leastSignificantBits The least significant 64 bits of the {@code objectGUID} of the entry.
+         */
+        void handleRemovedEntry(long mostSignificantBits, long leastSignificantBits);
+    }
+
+    /**
+     * The modifications passed to {@link AttributeHashStore#update update()}. Only valid for the duration of that call.
+     */
+    interface Modifications {
+        /**
+         * Passes the new hashes of the entries that have been delivered (as new or changed) to the provided call-back object
+         * one-by-one.
+         */
+        void forEachChangedHash(HashHandler hashHandler);
+
+        /**
+         * Passes the {@code objectGUID}s of the entries that have been deleted to the provided call-back object one-by-one.
+         */
+        void forEachRemovedEntry(RemovedEntryHandler removedEntryHandler);
+    }
+
+    /**
+     * Called before the first synchronization that uses the attribute hash filter, and before the first one following a
+     * failed synchronization (as the hashes kept in memory might not reflect the persisted ones any more).
+     *
+     * @param hashHandler Call-back object to pass every recorded hash to.
+     */
+    void load(HashHandler hashHandler);
+
+    /**
+     * Records the modifications made since the previous invocation.
+     *
+     * @param modifications The changed and removed hashes.
+     */
+    void update(Modifications modifications);
+
+    /**
+     * Removes every recorded hash. Invoked when a full synchronization starts from scratch, right before the hashes of the
+     * entries it has delivered are passed to {@link AttributeHashStore#update update()}.
+     */
+    void clear();
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Capability interface for {@link LdapClient} implementations that are able to perform searches with the Attribute Scoped
+ * Query (ASQ) LDAP control of Active Directory (see {@link AttributeScopedQueryLdapClient#ASQ_CONTROL_OID}). An ASQ search
+ * is evaluated against the entries referenced by a DN-valued attribute of a single entry instead of a sub-tree, which makes
+ * it possible to retrieve e.g. the attributes of every member of a group with one (paged) search, instead of one search per
+ * member.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used to implement this interface.
+ */
+public interface AttributeScopedQueryLdapClient<LDAP_ATTRIBUTE> extends LdapClient<LDAP_ATTRIBUTE> {
+
+    /**
+     * ID of the LDAP request control used to perform an Attribute Scoped Query.
+     */
+    public static final String ASQ_CONTROL_OID = "1.2.840.113556.1.4.1504";
+
+    /**
+     * Retrieves the given attributes of the entries referenced by a DN-valued attribute of an entry, e.g. the members of a
+     * group when called with the group's DN and the {@code member} attribute. The result set is retrieved page by page as it
+     * is iterated.
+     * <p/>
+     * The returned attribute arrays must meet the same requirements as the ones returned by {@link LdapClient#search
+     * LdapClient.search()}.
+     *
+     * @param entryDN         Distinguished Name of the entry the DN-valued attribute of which determines the scope of the
+     *                        search (e.g. the DN of a group).
+     * @param scopeAttribute  Name of the DN-valued attribute (e.g. {@code member}).
+     * @param filter          LDAP filter expression the referenced entries must satisfy (e.g. {@code (objectClass=*)}).
+     * @param attributes      List of attribute names to retrieve from the referenced entries.
+     * @return The attributes of the referenced entries.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     */
+    @Nonnull
+    Iterable<LDAP_ATTRIBUTE[]> attributeScopedSearch(
+            String entryDN, String scopeAttribute, String filter, List<String> attributes)
+            throws LdapClientException;
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A call-back interface through which clients of ADSync4J can obtain the new/changed/deleted LDAP entries during
+ * synchronization in batches rather than one-by-one. This makes it possible for implementations to write entries to their
+ * store using bulk operations (e.g. JDBC batch updates) and to commit once per batch.
+ * <p/>
+ * When the {@link LdapClient} in use is a {@link PagingLdapClient}, each batch corresponds to one page of search results
+ * as returned by the server, otherwise entries are grouped into batches of {@link LdapClient#DEFAULT_PAGE_SIZE} elements.
+ * The new and changed entries of a page are delivered with a single call: to {@link BatchEntryProcessor#processNewEntries
+ * processNewEntries()} if they are all new, to {@link BatchEntryProcessor#processChangedEntries processChangedEntries()} if
+ * they are all changed, and to {@link BatchEntryProcessor#processNewAndChangedEntries processNewAndChangedEntries()}
+ * otherwise. Empty batches are never delivered.
+ * <p/>
+ * Every synchronization operation starts with a call to {@link BatchEntryProcessor#beginSync beginSync()}. If the operation
+ * completes without errors, it ends with a call to {@link BatchEntryProcessor#endSync endSync()} which is invoked right before
+ * the {@link DomainControllerAffiliation} record is updated and saved. If the operation fails, {@code endSync()} is not called.
+ * <p/>
+ * In case of a full synchronization, all entries are reported as new.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type determined by the {@link LdapClient} implementation in use.
+ * @see org.adsync4j.impl.EntryProcessorBatchAdapter
+ */
+public interface BatchEntryProcessor<LDAP_ATTRIBUTE> {
+
+    /**
+     * The kind of synchronization operation that is being started.
+     */
+    enum SyncType {
+        FULL, INCREMENTAL
+    }
+
+    /**
+     * Call-back method invoked at the start of every synchronization operation, before any entries are delivered.
+     *
+     * @param syncType            Tells whether a full or an incremental synchronization is being started.
+     * @param highestCommittedUSN The highest committed USN retrieved from the server, marking the point of time up to which
+     *                            entries will be delivered.
+     */
+    void beginSync(SyncType syncType, long highestCommittedUSN);
+
+    /**
+     * Call-back method invoked during a full or incremental synchronization.
+     *
+     * @param entries A batch of new entries. Each entry is a list of attributes which follows the same rules as the argument
+     *                of {@link EntryProcessor#processNew EntryProcessor.processNew()}.
+     */
+    void processNewEntries(List<List<LDAP_ATTRIBUTE>> entries);
+
+    /**
+     * Call-back method invoked during an incremental synchronization.
+     *
+     * @param entries A batch of changed entries. Each entry is a list of attributes which follows the same rules as the
+     *                argument of {@link EntryProcessor#processChanged EntryProcessor.processChanged()}.
+     */
+    void processChangedEntries(List<List<LDAP_ATTRIBUTE>> entries);
+
+    /**
+     * Call-back method invoked during an incremental synchronization with a batch that contains both new and changed entries.
+     *
+     * @param entries    A batch of new and changed entries in the order returned by the server. Each entry is a list of
+     *                   attributes which follows the same rules as the argument of {@link EntryProcessor#processNew
+     *                   EntryProcessor.processNew()}.
+     * @param newEntries Tells which entries of the batch are new: the entry at index {@code i} is new if bit {@code i} is set,
+     *                   and changed otherwise.
+     */
+    void processNewAndChangedEntries(List<List<LDAP_ATTRIBUTE>> entries, BitSet newEntries);
+
+    /**
+     * Call-back method invoked during an incremental synchronization.
+     *
+     * @param entryIds The GUIDs of a batch of entries that have been deleted since the last synchronization.
+     */
+    void processDeletedEntries(List<UUID> entryIds);
+
+    /**
+     * Call-back method invoked after all entries have been successfully delivered.
+     *
+     * @param highestCommittedUSN The highest committed USN that is about to be recorded in the affiliation record.
+     */
+    void endSync(long highestCommittedUSN);
+}
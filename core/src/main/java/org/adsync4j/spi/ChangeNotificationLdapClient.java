@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+/**
+ * Capability interface for {@link LdapClient} implementations that are able to register for change notifications with the
+ * change notification LDAP control of Active Directory (see {@link ChangeNotificationLdapClient#NOTIFICATION_CONTROL_OID}).
+ * <p/>
+ * A change notification search is a long-running asynchronous search that stays active until the connection is closed, so
+ * clients of this interface should use a dedicated {@link LdapClient} instance for it (which is not used for any other
+ * operation).
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used to implement this interface.
+ */
+public interface ChangeNotificationLdapClient<LDAP_ATTRIBUTE> extends LdapClient<LDAP_ATTRIBUTE> {
+
+    /**
+     * ID of the LDAP request control used to register for change notifications.
+     */
+    public static final String NOTIFICATION_CONTROL_OID = "1.2.840.113556.1.4.528";
+
+    /**
+     * Starts an asynchronous change notification search that notifies the provided listener whenever an entry in the
+     * sub-tree designated by the given DN is created, changed or deleted. The method returns as soon as the search request has
+     * been sent, and the notification search stays active until {@link LdapClient#closeConnection()} is invoked.
+     * <p/>
+     * <b>Important! Implementers must make sure that:</b>
+     * <ul>
+     * <li>the search request also contains the "show deleted" request control (see {@link LdapClient#SHOW_DELETED_CONTROL_OID}),
+     * so that deletions are notified as well</li>
+     * <li>{@link ChangeNotificationListener#notificationStopped notificationStopped()} is invoked when the search terminates
+     * for any reason (it may or may not be invoked when the search is terminated by {@link LdapClient#closeConnection()})</li>
+     * </ul>
+     *
+     * @param searchBaseDN The Distinguished Name of the sub-tree to watch.
+     * @param listener     Call-back object to notify. It is invoked from a thread managed by the implementation.
+     * @throws LdapClientException in case the search request could not be sent.
+     */
+    void registerChangeNotification(String searchBaseDN, ChangeNotificationListener listener) throws LdapClientException;
+}
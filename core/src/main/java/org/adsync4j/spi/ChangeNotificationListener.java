@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+/**
+ * Call-back interface used by {@link ChangeNotificationLdapClient} to report change notifications.
+ */
+public interface ChangeNotificationListener {
+
+    /**
+     * Invoked whenever the server notifies the client about an entry that has been created, changed or deleted.
+     *
+     * @param entryDN The Distinguished Name of the entry affected by the change.
+     */
+    void changeNotified(String entryDN);
+
+    /**
+     * Invoked when the change notification search terminates unexpectedly (e.g. because the connection is lost). No more
+     * notifications are delivered afterwards.
+     *
+     * @param cause Exception describing the reason of the termination.
+     */
+    void notificationStopped(LdapClientException cause);
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.FullSyncCheckpoint;
+
+import javax.annotation.Nullable;
+
+/**
+ * Capability interface for {@link DomainControllerAffiliation} implementations that are able to store the progress of a
+ * full synchronization. Required by {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl#resumableFullSync resumable
+ * full synchronization} in order to be able to continue an interrupted full synchronization where it stopped.
+ * <p/>
+ * The checkpoint is saved through the {@link DCARepository} together with the rest of the affiliation record, therefore the
+ * same consistency requirements apply to it: it must be stored in the same database as the synchronized entries.
+ */
+public interface CheckpointingDomainControllerAffiliation extends DomainControllerAffiliation {
+
+    /**
+     * @return The progress of the full synchronization that is currently in progress (or has been interrupted), or
+     *         {@code null} if there is no such synchronization.
+     */
+    @Nullable
+    FullSyncCheckpoint getFullSyncCheckpoint();
+
+    /**
+     * Setter for the full synchronization checkpoint. Called by the {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl
+     * synchronization service} after each completed USN window of a resumable full synchronization, and with {@code null}
+     * when the full synchronization completes.
+     *
+     * @param checkpoint The checkpoint to set.
+     * @return This {@link CheckpointingDomainControllerAffiliation} instance (returned to allow chaining the setters).
+     */
+    CheckpointingDomainControllerAffiliation setFullSyncCheckpoint(@Nullable FullSyncCheckpoint checkpoint);
+}
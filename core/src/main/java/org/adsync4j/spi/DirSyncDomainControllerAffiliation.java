@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import javax.annotation.Nullable;
+
+/**
+ * Capability interface for {@link DomainControllerAffiliation} implementations that are able to store the cookie of the
+ * DirSync LDAP control. Required by {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl#dirSync DirSync based
+ * synchronization} in order to be able to retrieve only the changes that have been made since the last synchronization.
+ * <p/>
+ * The cookie is saved through the {@link DCARepository} together with the rest of the affiliation record, therefore the same
+ * consistency requirements apply to it: it must be stored in the same database as the synchronized entries.
+ */
+public interface DirSyncDomainControllerAffiliation extends DomainControllerAffiliation {
+
+    /**
+     * @return The opaque cookie returned by the server at the end of the last DirSync based synchronization, or {@code null}
+     *         if no such synchronization has been performed yet.
+     */
+    @Nullable
+    byte[] getDirSyncCookie();
+
+    /**
+     * Setter for the DirSync cookie. Called by the {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl synchronization
+     * service} at the end of a DirSync based synchronization.
+     *
+     * @param cookie The cookie to set.
+     * @return This {@link DirSyncDomainControllerAffiliation} instance (returned to allow chaining the setters).
+     */
+    DirSyncDomainControllerAffiliation setDirSyncCookie(@Nullable byte[] cookie);
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Capability interface for {@link LdapClient} implementations that are able to track changes with the DirSync LDAP control
+ * of Active Directory (see {@link DirSyncLdapClient#DIRSYNC_CONTROL_OID}). As opposed to searches based on the {@code
+ * uSNChanged} attribute, a DirSync search only returns the attributes that have actually changed, and it reports changed
+ * and deleted entries in the same result set.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used to implement this interface.
+ */
+public interface DirSyncLdapClient<LDAP_ATTRIBUTE> extends LdapClient<LDAP_ATTRIBUTE> {
+
+    /**
+     * ID of the LDAP request control used to perform a DirSync search.
+     */
+    public static final String DIRSYNC_CONTROL_OID = "1.2.840.113556.1.4.841";
+
+    /**
+     * Performs one round of a DirSync search that retrieves the changes made since the state represented by the given cookie.
+     * <p/>
+     * <b>Important! Implementers must make sure that:</b>
+     * <ul>
+     * <li>the returned attribute arrays of changed entries contain <i>the same number of attributes in the same order</i> as
+     * specified by the {@code attributes} input argument ({@code null} values represent attributes that have not changed)</li>
+     * <li>entries that are not deleted and are not located in the sub-tree designated by {@code searchBaseDN} are omitted</li>
+     * <li>the {@code objectGUID} attribute of deleted entries is correctly resolved to a {@link java.util.UUID} object (see
+     * {@link org.adsync4j.impl.UUIDUtils#bytesToUUID(byte[]) UUIDUtils.bytesToUUID()})</li>
+     * </ul>
+     *
+     * @param rootDN       Root DN of the directory's domain (e.g. {@code DC=example,DC=com}). DirSync searches always cover
+     *                     the whole naming context.
+     * @param searchBaseDN Distinguished Name of the sub-tree which changed entries are reported from.
+     * @param filter       LDAP filter expression to use when performing the search. Deleted entries are only reported if
+     *                     their tombstones satisfy it as well.
+     * @param attributes   List of attribute names to retrieve in the result set.
+     * @param cookie       The cookie returned by the previous round, or {@code null} to retrieve every entry satisfying the
+     *                     search criteria.
+     * @return The changed and deleted entries along with the cookie to be passed to the next round.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     */
+    @Nonnull
+    DirSyncResult<LDAP_ATTRIBUTE> dirSync(
+            String rootDN, String searchBaseDN, String filter, List<String> attributes, @Nullable byte[] cookie)
+            throws LdapClientException;
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The result of one round of a DirSync search (see {@link DirSyncLdapClient#dirSync DirSyncLdapClient.dirSync()}).
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used to implement {@link DirSyncLdapClient}.
+ */
+@Immutable
+public class DirSyncResult<LDAP_ATTRIBUTE> {
+
+    private final List<LDAP_ATTRIBUTE[]> _changedEntries;
+    private final List<UUID> _deletedEntries;
+    private final List<MembershipDelta> _membershipDeltas;
+    private final byte[] _cookie;
+    private final boolean _moreData;
+
+    /**
+     * @param changedEntries Attribute arrays representing the new and changed entries.
+     * @param deletedEntries The unique identifiers of the deleted entries.
+     * @param cookie         The cookie representing the state of the directory up to which changes have been returned.
+     * @param moreData       Indicates if the server has more changes to return, in which case another round has to be
+     *                       performed with the returned cookie.
+     */
+    public DirSyncResult(List<LDAP_ATTRIBUTE[]> changedEntries, List<UUID> deletedEntries, byte[] cookie, boolean moreData) {
+        this(changedEntries, deletedEntries, Collections.<MembershipDelta>emptyList(), cookie, moreData);
+    }
+
+    /**
+     * @param membershipDeltas The changes of linked attributes (see {@link IncrementalValuesDirSyncLdapClient}).
+     * @see DirSyncResult#DirSyncResult(List, List, byte[], boolean)
+     */
+    public DirSyncResult(
+            List<LDAP_ATTRIBUTE[]> changedEntries, List<UUID> deletedEntries, List<MembershipDelta> membershipDeltas,
+            byte[] cookie, boolean moreData)
+    {
+        _changedEntries = changedEntries;
+        _deletedEntries = deletedEntries;
+        _membershipDeltas = membershipDeltas;
+        _cookie = cookie;
+        _moreData = moreData;
+    }
+
+    public List<LDAP_ATTRIBUTE[]> getChangedEntries() {
+        return _changedEntries;
+    }
+
+    public List<UUID> getDeletedEntries() {
+        return _deletedEntries;
+    }
+
+    public List<MembershipDelta> getMembershipDeltas() {
+        return _membershipDeltas;
+    }
+
+    public byte[] getCookie() {
+        return _cookie;
+    }
+
+    public boolean hasMoreData() {
+        return _moreData;
+    }
+}
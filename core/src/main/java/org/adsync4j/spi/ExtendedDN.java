@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.UUID;
+
+/**
+ * The parsed form of a DN-valued attribute value returned in the extended DN format of Active Directory, which is requested
+ * with the Extended DN control (see {@link LdapClient#EXTENDED_DN_CONTROL_OID}), e.g.:
+ * <pre>
+ * &lt;GUID=b7e48ebf-73b7-4a61-a9bb-5d8e1a7e2c1c&gt;;&lt;SID=S-1-5-21-1004336348-1177238915-682003330-1104&gt;;CN=John,DC=example
+ * </pre>
+ * The {@code objectGUID} of the referenced entry makes it possible to resolve the reference without a further LDAP request,
+ * even if the referenced entry has been renamed since. Both the string format and the hexadecimal format of the GUID are
+ * supported.
+ * <p/>
+ * In order to keep the resolution of a large number of references cheap, instances are reusable: {@link ExtendedDN#parse
+ * parse()} overwrites the state of the instance, the GUID is stored as two {@code long} values, and the SID and the DN are
+ * only extracted from the parsed value when they are requested.
+ */
+@NotThreadSafe
+public class ExtendedDN {
+
+    private static final String GUID_COMPONENT = "GUID";
+    private static final String SID_COMPONENT = "SID";
+
+    /**
+     * The bytes of the binary {@code objectGUID} making up the most significant bits of the UUID, in order of significance
+     * (the first three fields of the GUID are stored in little-endian byte order).
+     */
+    private static final int[] MOST_SIGNIFICANT_BYTES = {3, 2, 1, 0, 5, 4, 7, 6};
+
+    private String _value;
+    private boolean _hasGuid;
+    private long _guidMostSignificantBits;
+    private long _guidLeastSignificantBits;
+    private int _sidStart;
+    private int _sidEnd;
+    private int _dnStart;
+
+    /**
+     * Parses the given value and overwrites the state of this instance with the result. A value without any extended
+     * components (i.e. a plain DN) is accepted, in which case {@link ExtendedDN#hasGuid()} returns {@code false}.
+     *
+     * @param value A DN-valued attribute value in the extended DN format.
+     * @return This instance.
+     * @throws IllegalArgumentException if the value has a malformed extended component.
+     */
+    public ExtendedDN parse(String value) {
+        _value = value;
+        _hasGuid = false;
+        _sidStart = _sidEnd = -1;
+
+        int position = 0;
+        while (position < value.length() && value.charAt(position) == '<') {
+            int separator = value.indexOf('=', position);
+            int end = value.indexOf('>', position);
+            if (separator < 0 || end < separator) {
+                throw new IllegalArgumentException("Malformed extended DN: " + value);
+            }
+            if (isComponent(value, position + 1, separator, GUID_COMPONENT)) {
+                parseGuid(value, separator + 1, end);
+            } else if (isComponent(value, position + 1, separator, SID_COMPONENT)) {
+                _sidStart = separator + 1;
+                _sidEnd = end;
+            }
+            position = end + 1;
+            if (position < value.length() && value.charAt(position) == ';') {
+                position++;
+            }
+        }
+        _dnStart = position;
+        return this;
+    }
+
+    private static boolean isComponent(String value, int start, int end, String componentName) {
+        return end - start == componentName.length() && value.regionMatches(true, start, componentName, 0, end - start);
+    }
+
+    private void parseGuid(String value, int start, int end) {
+        int length = end - start;
+        if (length == 36) {
+            // string format: the hexadecimal digits are in the same order as in the canonical form of a UUID
+            long mostSignificantBits = 0;
+            long leastSignificantBits = 0;
+            int digits = 0;
+            for (int i = start; i < end; i++) {
+                char c = value.charAt(i);
+                if (c == '-') {
+                    continue;
+                }
+                if (digits < 16) {
+                    mostSignificantBits = (mostSignificantBits << 4) | hexDigit(value, c);
+                } else {
+                    leastSignificantBits = (leastSignificantBits << 4) | hexDigit(value, c);
+                }
+                digits++;
+            }
+            if (digits != 32) {
+                throw new IllegalArgumentException("Malformed GUID in extended DN: " + value);
+            }
+            _guidMostSignificantBits = mostSignificantBits;
+            _guidLeastSignificantBits = leastSignificantBits;
+        } else if (length == 32) {
+            // hexadecimal format: the bytes of the objectGUID attribute
+            long mostSignificantBits = 0;
+            for (int i : MOST_SIGNIFICANT_BYTES) {
+                mostSignificantBits = (mostSignificantBits << 8) | hexByte(value, start + 2 * i);
+            }
+            long leastSignificantBits = 0;
+            for (int i = 8; i < 16; i++) {
+                leastSignificantBits = (leastSignificantBits << 8) | hexByte(value, start + 2 * i);
+            }
+            _guidMostSignificantBits = mostSignificantBits;
+            _guidLeastSignificantBits = leastSignificantBits;
+        } else {
+            throw new IllegalArgumentException("Malformed GUID in extended DN: " + value);
+        }
+        _hasGuid = true;
+    }
+
+    private static int hexByte(String value, int position) {
+        return (hexDigit(value, value.charAt(position)) << 4) | hexDigit(value, value.charAt(position + 1));
+    }
+
+    private static int hexDigit(String value, char c) {
+        int digit = Character.digit(c, 16);
+        if (digit < 0) {
+            throw new IllegalArgumentException("Malformed GUID in extended DN: " + value);
+        }
+        return digit;
+    }
+
+    /**
+     * @return {@code true} if the parsed value contained the GUID of the referenced entry.
+     */
+    public boolean hasGuid() {
+        return _hasGuid;
+    }
+
+    /**
+     * @return The most significant 64 bits of the GUID of the referenced entry (only meaningful if {@link
+     *         ExtendedDN#hasGuid()} returns {@code true}).
+     */
+    public long getGuidMostSignificantBits() {
+        return _guidMostSignificantBits;
+    }
+
+    /**
+     * @return The least significant 64 bits of the GUID of the referenced entry (only meaningful if {@link
+     *         ExtendedDN#hasGuid()} returns {@code true}).
+     */
+    public long getGuidLeastSignificantBits() {
+        return _guidLeastSignificantBits;
+    }
+
+    /**
+     * @return The GUID of the referenced entry, or {@code null} if the parsed value didn't contain it.
+     */
+    @Nullable
+    public UUID getGuid() {
+        return _hasGuid ? new UUID(_guidMostSignificantBits, _guidLeastSignificantBits) : null;
+    }
+
+    /**
+     * @return The SID of the referenced entry as contained by the parsed value (e.g. {@code S-1-5-21-...}), or {@code null} if
+     *         the parsed value didn't contain it (entries that are not security principals have no SID).
+     */
+    @Nullable
+    public String getSid() {
+        return _sidStart < 0 ? null : _value.substring(_sidStart, _sidEnd);
+    }
+
+    /**
+     * @return The plain Distinguished Name of the referenced entry.
+     */
+    public String getDN() {
+        return _value.substring(_dnStart);
+    }
+
+    @Override
+    public String toString() {
+        return _value;
+    }
+}
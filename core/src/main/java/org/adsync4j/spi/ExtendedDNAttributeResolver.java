@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Capability interface for {@link LdapAttributeResolver} implementations that are able to interpret the values of DN-valued
+ * attributes returned in the extended DN format (see {@link ExtendedDN}).
+ *
+ * @param <LDAP_ATTRIBUTE> The SDK specific LDAP attribute type that this class is able to interpret.
+ */
+public interface ExtendedDNAttributeResolver<LDAP_ATTRIBUTE> extends LdapAttributeResolver<LDAP_ATTRIBUTE> {
+
+    /**
+     * Resolves a single-valued DN attribute (like {@code manager}) into the provided {@link ExtendedDN} instance, so that a
+     * large number of references can be resolved with the same instance.
+     *
+     * @param attribute An LDAP attribute.
+     * @param target    The instance to parse the value of the attribute into.
+     * @return The provided {@link ExtendedDN} instance, or {@code null} if the attribute has no value.
+     */
+    @Nullable
+    ExtendedDN getAsExtendedDN(LDAP_ATTRIBUTE attribute, ExtendedDN target);
+
+    /**
+     * Resolves a multi-valued DN attribute (like {@code member} or {@code memberOf}).
+     *
+     * @param attribute An LDAP attribute.
+     * @return The parsed values of the given attribute.
+     */
+    @Nonnull
+    List<ExtendedDN> getAsExtendedDNList(LDAP_ATTRIBUTE attribute);
+}
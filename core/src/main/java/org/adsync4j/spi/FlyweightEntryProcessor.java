@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import java.util.List;
+
+/**
+ * An {@link EntryProcessor} that is able to receive entries without any per-entry allocation on the side of ADSync4J (see
+ * {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl#flyweightIncrementalSync
+ * ActiveDirectorySyncServiceImpl.flyweightIncrementalSync()}).
+ * <p/>
+ * <b>Important!</b>
+ * When used with the flyweight synchronization operations, the attribute list passed to {@link EntryProcessor#processNew
+ * processNew()} and {@link EntryProcessor#processChanged processChanged()} is a view that is reused for every entry, so it's
+ * only valid for the duration of the call. Implementations must not keep a reference to it (the attributes themselves can be
+ * retained, or the list can be copied). Deleted entries are reported through {@link FlyweightEntryProcessor#processDeleted(long,
+ * long) processDeleted(long, long)}.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type determined by the {@link LdapClient} implementation in use.
+ */
+public interface FlyweightEntryProcessor<LDAP_ATTRIBUTE> extends EntryProcessor<LDAP_ATTRIBUTE> {
+
+    /**
+     * Call-back method invoked during a flyweight incremental synchronization.
+     *
+     * @param mostSignificantBits  The most significant 64 bits of the GUID of an entry that has been deleted since the last
+     *                             synchronization (see {@link java.util.UUID#getMostSignificantBits()}).
+     * @param leastSignificantBits The least significant 64 bits of the GUID (see {@link
+     *                             java.util.UUID#getLeastSignificantBits()}).
+     */
+    void processDeleted(long mostSignificantBits, long leastSignificantBits);
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * When used with the flyweight synchronization operations, the passed list is only valid for the duration of the call.
+     */
+    @Override
+    void processNew(List<LDAP_ATTRIBUTE> entry);
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * When used with the flyweight synchronization operations, the passed list is only valid for the duration of the call.
+     */
+    @Override
+    void processChanged(List<LDAP_ATTRIBUTE> entry);
+}
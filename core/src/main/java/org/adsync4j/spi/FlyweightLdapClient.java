@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+import java.util.List;
+
+/**
+ * Capability interface for {@link LdapClient} implementations that are able to push search results to a call-back object
+ * instead of materializing them. The attribute array passed to the call-back is reused for every entry, and the IDs of
+ * deleted entries are passed as two primitive values, so that search results can be consumed without allocating anything
+ * beyond what the LDAP SDK itself produces.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used to implement this interface.
+ */
+public interface FlyweightLdapClient<LDAP_ATTRIBUTE> extends LdapClient<LDAP_ATTRIBUTE> {
+
+    /**
+     * Call-back interface receiving the entries of a search result.
+     */
+    interface EntryHandler<LDAP_ATTRIBUTE> {
+        /**
+         * @param entry Attribute array as described at {@link LdapClient#search LdapClient.search()}. The same array instance
+         *              is passed for every entry of the search result, so it's only valid for the duration of the call.
+         */
+        void handleEntry(LDAP_ATTRIBUTE[] entry);
+    }
+
+    /**
+     * Call-back interface receiving the unique identifiers of deleted entries.
+     */
+    interface DeletedEntryHandler {
+        /**
+         * @param mostSignificantBits  The most significant 64 bits of the {@code objectGUID} of a deleted entry.
+         * @param leastSignificantBits The least significant 64 bits of the {@code objectGUID} of a deleted entry.
+         */
+        void handleDeletedEntry(long mostSignificantBits, long leastSignificantBits);
+    }
+
+    /**
+     * Performs the same search operation as {@link LdapClient#search LdapClient.search()}, but passes the entries of the result
+     * set to the provided call-back object one-by-one as they are received.
+     *
+     * @param searchBaseDN The scope of the search operation will be the sub-tree starting from the node designated by the
+     *                     Distinguished Name given here.
+     * @param filter       LDAP filter expression to use when performing the search.
+     * @param attributes   List of attribute names to retrieve in the result set.
+     * @param entryHandler Call-back object receiving the entries.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     */
+    void search(String searchBaseDN, String filter, List<String> attributes, EntryHandler<LDAP_ATTRIBUTE> entryHandler)
+            throws LdapClientException;
+
+    /**
+     * Performs the same search operation as {@link LdapClient#searchDeleted LdapClient.searchDeleted()}, but passes the unique
+     * identifiers of deleted entries to the provided call-back object one-by-one as they are received.
+     *
+     * @param rootDN              Root DN of the directory's domain (e.g. {@code DC=example,DC=com})
+     * @param filter              LDAP filter expression to use when searching for deleted objects.
+     * @param deletedEntryHandler Call-back object receiving the unique identifiers of deleted entries.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     */
+    void searchDeleted(String rootDN, String filter, DeletedEntryHandler deletedEntryHandler) throws LdapClientException;
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Capability interface for {@link DirSyncLdapClient} implementations that are able to perform DirSync searches with the
+ * incremental values flag (see {@link IncrementalValuesDirSyncLdapClient#INCREMENTAL_VALUES_FLAG}). With this flag, Active
+ * Directory returns only the values that have been added to or removed from linked multi-valued attributes (like {@code
+ * member}), so the cost of synchronizing a group membership change is proportional to the size of the change instead of the
+ * size of the group.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used to implement this interface.
+ */
+public interface IncrementalValuesDirSyncLdapClient<LDAP_ATTRIBUTE> extends DirSyncLdapClient<LDAP_ATTRIBUTE> {
+
+    /**
+     * The {@code LDAP_DIRSYNC_INCREMENTAL_VALUES} flag of the DirSync control. Supported by Windows Server 2003 and later.
+     */
+    public static final int INCREMENTAL_VALUES_FLAG = 0x80000000;
+
+    /**
+     * Performs one round of a DirSync search with the incremental values flag. Works just like {@link DirSyncLdapClient#dirSync
+     * DirSyncLdapClient.dirSync()}, except that changes of the given linked attributes are reported as {@link MembershipDelta
+     * membership deltas}, and the positions of these attributes are {@code null} in the attribute arrays of changed entries.
+     * <p/>
+     * Implementers must request the linked attributes in the DirSync search even if they are not listed in {@code
+     * attributes}, as only the changes of the requested attributes are reported by the server.
+     *
+     * @param linkedAttributes Names of the linked multi-valued attributes the changes of which are to be reported as deltas.
+     * @return The changed and deleted entries and the membership deltas along with the cookie to be passed to the next round.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     * @see DirSyncLdapClient#dirSync
+     */
+    @Nonnull
+    DirSyncResult<LDAP_ATTRIBUTE> dirSync(
+            String rootDN, String searchBaseDN, String filter, List<String> attributes, List<String> linkedAttributes,
+            @Nullable byte[] cookie)
+            throws LdapClientException;
+}
@@ -40,6 +40,12 @@ public interface LdapClient<LDAP_ATTRIBUTE> {
      */
     public static final String SHOW_DELETED_CONTROL_OID = "1.2.840.113556.1.4.417";
 
+    /**
+     * ID of the LDAP request control used to retrieve the values of DN-valued attributes in the extended DN format, which
+     * includes the GUID and SID of the referenced entries (see {@link ExtendedDN}).
+     */
+    public static final String EXTENDED_DN_CONTROL_OID = "1.2.840.113556.1.4.529";
+
     /**
      * Name of the attribute that uniquely identifies entries in Active Directory. Should be used when implementing {@link
      * LdapClient#searchDeleted(String, String)}.
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+/**
+ * Interface of factories that are able to create independent {@link LdapClient} instances connecting to the same domain
+ * controller.
+ * <p/>
+ * Synchronization operations that spread the work over several LDAP connections (e.g. a
+ * {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl#parallelFullSync parallel full synchronization}) use a factory
+ * like this to obtain a dedicated client for each connection. Each client returned by the factory must maintain its own
+ * connection, and it will be closed by the caller through {@link LdapClient#closeConnection()} once it's no longer needed.
+ * <p/>
+ * Implementations must be thread-safe.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used by the created {@link LdapClient}s.
+ */
+public interface LdapClientFactory<LDAP_ATTRIBUTE> {
+
+    /**
+     * @return A new {@link LdapClient} instance that doesn't share its connection with any other client.
+     * @throws LdapClientException if the client cannot be created.
+     */
+    LdapClient<LDAP_ATTRIBUTE> createLdapClient() throws LdapClientException;
+}
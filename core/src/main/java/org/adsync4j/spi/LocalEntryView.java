@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+
+/**
+ * Call-back interface through which clients of ADSync4J expose the state of the entries in their own store, so that a
+ * reconciliation (see {@link org.adsync4j.impl.ActiveDirectorySyncServiceImpl#reconciliationSync
+ * ActiveDirectorySyncServiceImpl.reconciliationSync()}) can tell which entries have actually changed on the server.
+ * <p/>
+ * In order to maintain such a view, clients have to include the {@code uSNChanged} attribute in the list of attributes to
+ * sync, and record its value along with the entry.
+ */
+public interface LocalEntryView {
+
+    /**
+     * @param entryId The {@code objectGUID} of the entry.
+     * @return The {@code uSNChanged} attribute of the entry as recorded in the local store, or {@code null} if the entry is
+     *         not present in the local store.
+     */
+    @Nullable
+    Long getUSNChanged(UUID entryId);
+
+    /**
+     * @return The {@code objectGUID} of every entry present in the local store.
+     */
+    Iterable<UUID> getEntryIds();
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The values added to and removed from a linked multi-valued attribute (typically the {@code member} attribute of a group)
+ * of an entry since the previous synchronization (see {@link IncrementalValuesDirSyncLdapClient}).
+ */
+@Immutable
+public class MembershipDelta {
+
+    private final UUID _entryId;
+    private final String _entryDN;
+    private final String _attributeName;
+    private final List<String> _addedValues;
+    private final List<String> _removedValues;
+
+    /**
+     * @param entryId       The {@code objectGUID} of the entry (e.g. the group).
+     * @param entryDN       The Distinguished Name of the entry.
+     * @param attributeName The name of the linked attribute (e.g. {@code member}).
+     * @param addedValues   The values (Distinguished Names of the linked entries) added to the attribute.
+     * @param removedValues The values (Distinguished Names of the linked entries) removed from the attribute.
+     */
+    public MembershipDelta(
+            UUID entryId, String entryDN, String attributeName, List<String> addedValues, List<String> removedValues)
+    {
+        _entryId = entryId;
+        _entryDN = entryDN;
+        _attributeName = attributeName;
+        _addedValues = addedValues;
+        _removedValues = removedValues;
+    }
+
+    public UUID getEntryId() {
+        return _entryId;
+    }
+
+    public String getEntryDN() {
+        return _entryDN;
+    }
+
+    public String getAttributeName() {
+        return _attributeName;
+    }
+
+    public List<String> getAddedValues() {
+        return _addedValues;
+    }
+
+    public List<String> getRemovedValues() {
+        return _removedValues;
+    }
+
+    @Override
+    public String toString() {
+        return "MembershipDelta{" +
+               "entryDN='" + _entryDN + '\'' +
+               ", attributeName='" + _attributeName + '\'' +
+               ", added=" + _addedValues.size() +
+               ", removed=" + _removedValues.size() +
+               '}';
+    }
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+/**
+ * An {@link EntryProcessor} that is able to receive the changes of linked multi-valued attributes (like the {@code member}
+ * attribute of groups) as deltas, instead of receiving every value of the attribute with each changed entry (see {@link
+ * org.adsync4j.impl.ActiveDirectorySyncServiceImpl#dirSyncWithMembershipDeltas
+ * ActiveDirectorySyncServiceImpl.dirSyncWithMembershipDeltas()}).
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type determined by the {@link LdapClient} implementation in use.
+ */
+public interface MembershipDeltaEntryProcessor<LDAP_ATTRIBUTE> extends EntryProcessor<LDAP_ATTRIBUTE> {
+
+    /**
+     * Call-back method invoked during a DirSync based synchronization for each entry the linked attributes of which have
+     * changed. It's invoked after the entry itself has been delivered.
+     *
+     * @param delta The values added to and removed from one linked attribute of an entry.
+     */
+    void processMembershipDelta(MembershipDelta delta);
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Capability interface for {@link LdapClient} implementations that are able to expose the page boundaries of paged search
+ * results. Used to deliver entries to a {@link BatchEntryProcessor} in batches aligned with the pages returned by the server.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used to implement this interface.
+ */
+public interface PagingLdapClient<LDAP_ATTRIBUTE> extends LdapClient<LDAP_ATTRIBUTE> {
+
+    /**
+     * Performs the same search operation as {@link LdapClient#search LdapClient.search()}, but returns the result set page by
+     * page.
+     *
+     * @param searchBaseDN The scope of the search operation will be the sub-tree starting from the node designated by the
+     *                     Distinguished Name given here.
+     * @param filter       LDAP filter expression to use when performing the search.
+     * @param attributes   List of attribute names to retrieve in the result set.
+     * @return The pages of the result set, each page being a list of attribute arrays as described at
+     *         {@link LdapClient#search LdapClient.search()}.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     */
+    @Nonnull
+    Iterable<List<LDAP_ATTRIBUTE[]>> searchPages(String searchBaseDN, String filter, List<String> attributes)
+            throws LdapClientException;
+
+    /**
+     * Performs the same search operation as {@link LdapClient#searchDeleted LdapClient.searchDeleted()}, but returns the
+     * result set page by page.
+     *
+     * @param rootDN Root DN of the directory's domain (e.g. {@code DC=example,DC=com})
+     * @param filter LDAP filter expression to use when searching for deleted objects.
+     * @return The pages of the result set, each page being a list of deleted objects' unique identifiers.
+     * @throws LdapClientException in case the LDAP communication failed for some reason.
+     */
+    @Nonnull
+    Iterable<List<UUID>> searchDeletedPages(String rootDN, String filter) throws LdapClientException;
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi;
+
+import org.adsync4j.api.LdapClientException;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Capability interface for {@link LdapClient} implementations that are able to retrieve several attributes of the
+ * directory's root DSE in a single request. Used to reduce the number of round trips necessary to bootstrap a
+ * synchronization operation.
+ *
+ * @param <LDAP_ATTRIBUTE> The LDAP attribute type defined in the SDK used to implement this interface.
+ */
+public interface RootDSESnapshotLdapClient<LDAP_ATTRIBUTE> extends LdapClient<LDAP_ATTRIBUTE> {
+
+    /**
+     * Retrieves the given attributes of the directory's root DSE with one request.
+     *
+     * @param attributeNames Names of attributes of the directory's root DSE.
+     * @return Values of the root DSE attributes, each one in the same position as its name in the {@code attributeNames} input
+     *         argument.
+     * @throws LdapClientException if the root DSE cannot be retrieved or any of the specified attributes does not exist.
+     */
+    @Nonnull
+    List<LDAP_ATTRIBUTE> getRootDSEAttributes(List<String> attributeNames) throws LdapClientException;
+}
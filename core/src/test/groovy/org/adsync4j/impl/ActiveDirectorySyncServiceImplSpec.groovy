@@ -13,14 +13,22 @@
  ******************************************************************************/
 package org.adsync4j.impl
 
+import org.adsync4j.api.FullSyncCheckpoint
 import org.adsync4j.api.InitialFullSyncRequiredException
 import org.adsync4j.api.InvocationIdMismatchException
+import org.adsync4j.api.LdapClientException
 import org.adsync4j.spi.*
 import org.adsync4j.testutils.TestUtils
 import spock.lang.Specification
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
 import static org.adsync4j.impl.ActiveDirectorySyncServiceImpl.ActiveDirectoryAttribute.*
 import static org.adsync4j.impl.ActiveDirectorySyncServiceImpl.and
+import static org.adsync4j.spi.BatchEntryProcessor.SyncType.FULL
+import static org.adsync4j.spi.BatchEntryProcessor.SyncType.INCREMENTAL
 
 class ActiveDirectorySyncServiceImplSpec extends Specification {
 
@@ -155,6 +163,136 @@ class ActiveDirectorySyncServiceImplSpec extends Specification {
         1 * ldapClient.closeConnection()
     }
 
+    def 'USN range is split into contiguous partitions'() {
+        expect:
+        ActiveDirectorySyncServiceImpl.partitionUSNRange(upperBoundUSN, numOfPartitions).collect { it as List } == partitions
+
+        where:
+        upperBoundUSN | numOfPartitions | partitions
+        9             | 3               | [[0, 3], [4, 7], [8, 9]]
+        9             | 1               | [[0, 9]]
+        1             | 4               | [[0, 0], [1, 1]]
+    }
+
+    def 'parallel full synchronization'() {
+        given:
+        spec.with {
+            numOfNewEntriesOnServer = 2
+            localInvocationId = null
+            localHighestCommittedUSN = null
+        }
+
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        // each partition is expected to be searched on a dedicated client, which returns one entry per partition
+        def searchedFilters = Collections.synchronizedList([])
+        def closedPartitionClients = new AtomicInteger()
+        service.ldapClientFactory = {
+            [
+                    search: { searchBaseDN, filter, attributes ->
+                        assert searchBaseDN == spec.syncBaseDN
+                        assert attributes == spec.attributesToSync
+                        searchedFilters << filter
+                        [spec.searchResults[spec.partitionFilters.indexOf(filter)]]
+                    },
+                    closeConnection: { closedPartitionClients.incrementAndGet() }
+            ] as LdapClient
+        } as LdapClientFactory
+
+        def processedEntries = Collections.synchronizedList([])
+        def threadSafeEntryProcessor = [processNew: { processedEntries << it }] as EntryProcessor
+
+        when:
+        def newLocalHighestCommittedUSN = service.parallelFullSync(threadSafeEntryProcessor, 2)
+
+        then:
+        interaction {
+            highestCommittedUSNIsRetrieved()
+            invocationIdIsRetrieved()
+        }
+        1 * ldapClient.closeConnection()
+
+        searchedFilters as Set == spec.partitionFilters as Set
+        closedPartitionClients.get() == 2
+        processedEntries as Set == spec.searchResults.collect { it as List } as Set
+
+        newLocalHighestCommittedUSN.toString() == spec.remoteHighestCommittedUSN
+        spec.localHighestCommittedUSN == newLocalHighestCommittedUSN
+        spec.localInvocationId == spec.remoteInvocationId
+    }
+
+    def 'parallel full synchronization leaves the DCA untouched if a partition fails'() {
+        given:
+        spec.with {
+            localInvocationId = null
+            localHighestCommittedUSN = null
+        }
+
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        service.ldapClientFactory = {
+            [
+                    search: { searchBaseDN, filter, attributes -> throw new LdapClientException('partition failed') },
+                    closeConnection: {}
+            ] as LdapClient
+        } as LdapClientFactory
+
+        when:
+        service.parallelFullSync(entryProcessor, 2)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * ldapClient.closeConnection()
+        thrown LdapClientException
+        spec.localHighestCommittedUSN == null
+        spec.localInvocationId == null
+    }
+
+    def 'a failed partition interrupts the other partitions, which are waited for before propagating the failure'() {
+        given:
+        spec.with {
+            numOfNewEntriesOnServer = 2
+            localInvocationId = null
+            localHighestCommittedUSN = null
+        }
+
+        def firstPartitionBlocked = new CountDownLatch(1)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        service.ldapClientFactory = {
+            [
+                    search: { searchBaseDN, filter, attributes ->
+                        // the last partition fails while the first one is still running
+                        if (spec.partitionFilters.indexOf(filter) == 1) {
+                            firstPartitionBlocked.await()
+                            throw new LdapClientException('partition failed')
+                        }
+                        [spec.searchResults[1]]
+                    },
+                    closeConnection: {}
+            ] as LdapClient
+        } as LdapClientFactory
+
+        // blocks until interrupted by the shutdown of the partition threads
+        def processorReturned = false
+        def blockingEntryProcessor = [processNew: {
+            try {
+                firstPartitionBlocked.countDown()
+                new CountDownLatch(1).await()
+            } catch (InterruptedException ignored) {
+            } finally {
+                processorReturned = true
+            }
+        }] as EntryProcessor
+
+        when:
+        service.parallelFullSync(blockingEntryProcessor, 2)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * ldapClient.closeConnection()
+        thrown LdapClientException
+        processorReturned
+    }
+
     def 'incremental synchronization'() {
         given:
         spec.with {
@@ -204,88 +342,980 @@ class ActiveDirectorySyncServiceImplSpec extends Specification {
         1 * ldapClient.closeConnection()
     }
 
-    def invocationIdIsRetrieved() {
-        String dsServiceDn = 'dsServiceDN'
-        1 * ldapClient.getRootDSEAttribute(DS_SERVICE_NAME.key()) >> dsServiceDn
-        1 * ldapClient.getEntryAttribute(dsServiceDn, INVOCATION_ID.key()) >> spec.remoteInvocationId
+    def 'incremental synchronization delivers new and changed entries in the order returned by the server'() {
+        given:
+        spec.uSNCreatedIsIncludedInSearchResults()
+        def results = [spec.entryOnDemand(0, Spec.EntryType.UPDATED), spec.entryOnDemand(1, Spec.EntryType.NEW),
+                       spec.entryOnDemand(2, Spec.EntryType.UPDATED)]
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.incrementalSync(entryProcessor)
+
+        then:
+        interaction {
+            highestCommittedUSNIsRetrieved()
+            invocationIdIsRetrieved()
+        }
+        1 * ldapClient.search(* _) >> results
+
+        and:
+        1 * entryProcessor.processChanged(results[0][1..-1] as List)
+
+        then:
+        1 * entryProcessor.processNew(results[1][1..-1] as List)
+
+        then:
+        1 * entryProcessor.processChanged(results[2][1..-1] as List)
+
+        then:
+        1 * ldapClient.searchDeleted(* _) >> []
+        1 * ldapClient.closeConnection()
     }
 
-    def highestCommittedUSNIsRetrieved() {
-        1 * ldapClient.getRootDSEAttribute(HIGHEST_COMMITTED_USN.key()) >> spec.remoteHighestCommittedUSN
+    def 'incremental synchronization in batches'() {
+        given:
+        spec.with {
+            uSNCreatedIsIncludedInSearchResults()
+            numOfNewEntriesOnServer = 1
+            numOfUpdatedEntriesOnServer = 1
+        }
+
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.incrementalSyncInBatches(batchEntryProcessor)
+
+        then: 'the entry processor is notified about the start of the sync operation'
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * batchEntryProcessor.beginSync(INCREMENTAL, spec.remoteHighestCommittedUSN.toLong())
+
+        then: 'new and changed entries of the same page are delivered in one batch, in the order returned by the server'
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, spec.incrementalSyncFilter, _) >> spec.searchResults
+        1 * batchEntryProcessor.processNewAndChangedEntries(
+                spec.searchResultsWithOutUSNCreated.collect { it as List }, { it == BitSet.valueOf([0b01] as long[]) })
+        0 * batchEntryProcessor.processNewEntries(_)
+        0 * batchEntryProcessor.processChangedEntries(_)
+
+        then: 'deleted entries are delivered in one batch'
+        1 * ldapClient.searchDeleted(spec.rootDN, spec.filterForDeletedObjectsSearch) >> spec.idOfDeletedObjects
+        1 * batchEntryProcessor.processDeletedEntries(spec.idOfDeletedObjects)
+        1 * ldapClient.closeConnection()
+
+        then: 'the entry processor is notified about the end of the sync operation'
+        1 * batchEntryProcessor.endSync(spec.remoteHighestCommittedUSN.toLong())
     }
 
-    /**
-     * Instantiates the test subject (sync service) using the given {@link Spec spec} parameter that specifies various
-     * conditions under which the test is to be run.
-     */
-    ActiveDirectorySyncServiceImpl buildService(Spec spec) {
-        // interaction common to all feature methods
-        _ * ldapClient.getAttributeResolver() >> attributeResolver
+    def 'probing incremental sync returns without searching if the highest committed USN has not changed'() {
+        given:
+        spec.localHighestCommittedUSN = spec.remoteHighestCommittedUSN.toLong()
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
 
-        // the following lines ensure that any interaction with the below mentioned mocks
-        // other than those explicitly specified in feature methods will be reported as errors
-        0 * ldapClient._(* _)
-        0 * entryProcessor._(* _)
+        when:
+        def highestCommittedUSN = service.incrementalSyncIfChangedInBatches(batchEntryProcessor)
 
-        def affiliationRepository = [
-                load: { spec },
-                save: {}
-        ] as DCARepository
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * ldapClient.closeConnection()
+        0 * batchEntryProcessor._
 
-        def service = new ActiveDirectorySyncServiceImpl('foo', affiliationRepository, ldapClient)
-        service._dcAffiliation = spec
+        and: 'the DCA is not saved'
+        highestCommittedUSN == spec.remoteHighestCommittedUSN.toLong()
+        spec.savedHighestCommittedUSNs.isEmpty()
+    }
 
-        service
+    def 'probing incremental sync performs an incremental sync if the highest committed USN has changed'() {
+        given:
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        def highestCommittedUSN = service.incrementalSyncIfChangedInBatches(batchEntryProcessor)
+
+        then: 'the probe and the sync both read the highest committed USN'
+        2 * ldapClient.getRootDSEAttribute(HIGHEST_COMMITTED_USN.key()) >> spec.remoteHighestCommittedUSN
+        1 * batchEntryProcessor.beginSync(INCREMENTAL, spec.remoteHighestCommittedUSN.toLong())
+
+        then:
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, spec.incrementalSyncFilter, _) >> []
+        1 * ldapClient.searchDeleted(spec.rootDN, spec.filterForDeletedObjectsSearch) >> []
+        1 * ldapClient.closeConnection()
+
+        then:
+        1 * batchEntryProcessor.endSync(spec.remoteHighestCommittedUSN.toLong())
+
+        and:
+        highestCommittedUSN == spec.remoteHighestCommittedUSN.toLong()
+        spec.savedHighestCommittedUSNs == [highestCommittedUSN]
     }
 
-    /**
-     * Helper class providing DSL-like constructs to make it possible to easily set up different conditions in a declarative
-     * manner at the beginning of feature methods. Ensures the consistency between interrelated properties and test data.
-     */
-    static class Spec implements DomainControllerAffiliation {
-        final static UUID COMMON_INVOCATION_ID = new UUID(0x1234567890abcdef, 0xfedcba098765432)
+    def 'batches follow the page boundaries of a PagingLdapClient'() {
+        given:
+        spec.with {
+            numOfNewEntriesOnServer = 3
+        }
 
-        UUID localInvocationId = COMMON_INVOCATION_ID
-        UUID remoteInvocationId = COMMON_INVOCATION_ID
-        Long localHighestCommittedUSN = 1111
-        String remoteHighestCommittedUSN = 2222
-        def numOfNewEntriesOnServer = 0
-        def numOfUpdatedEntriesOnServer = 0
-        def numOfDeletedEntriesOnServer = 0
-        def isUSNCreatedAttributeIncluded = false
-        List searchResults = []
-        String fullSyncFilter
-        String incrementalSyncFilter
-        String filterForDeletedObjectsSearch
-        String deletedObjectsContainer
-        List<UUID> idOfDeletedObjects
+        PagingLdapClient pagingLdapClient = Mock(PagingLdapClient)
+        ldapClient = pagingLdapClient
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
 
-        // region mocked DomainControllerAffiliation properties
-        List attributesToSync = ['foo', 'bar']
-        String searchFilter = 'search=filter'
-        String searchDeletedObjectsFilter = 'searchDeletedObjects=filter'
-        String rootDN = 'rootDN'
-        String syncBaseDN = 'syncBaseDN'
+        def pages = [spec.searchResults[0..1], spec.searchResults[2..2]]
 
-        String url = 'foo'
-        String bindUser = 'bindUser'
-        String bindPassword = 'bindPassword'
+        when:
+        service.fullSyncInBatches(batchEntryProcessor)
 
-        @Override
-        UUID getInvocationId() { localInvocationId }
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * batchEntryProcessor.beginSync(FULL, spec.remoteHighestCommittedUSN.toLong())
 
-        @Override
-        Long getHighestCommittedUSN() { localHighestCommittedUSN }
+        then:
+        1 * pagingLdapClient.searchPages(spec.syncBaseDN, spec.fullSyncFilter, spec.attributesToSync) >> pages
+        1 * batchEntryProcessor.processNewEntries(pages[0].collect { it as List })
+        1 * batchEntryProcessor.processNewEntries(pages[1].collect { it as List })
 
-        @Override
-        DomainControllerAffiliation setInvocationId(UUID uuid) {
-            localInvocationId = uuid
-            this
+        then:
+        interaction { invocationIdIsRetrieved() }
+        1 * pagingLdapClient.closeConnection()
+
+        then:
+        1 * batchEntryProcessor.endSync(spec.remoteHighestCommittedUSN.toLong())
+    }
+
+    def 'end of sync is not signalled when the sync operation fails'() {
+        given:
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.fullSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * batchEntryProcessor.beginSync(FULL, _)
+        1 * ldapClient.search(* _) >> { throw new LdapClientException('search failed') }
+        1 * ldapClient.closeConnection()
+        0 * batchEntryProcessor.endSync(_)
+        thrown LdapClientException
+        spec.localHighestCommittedUSN == 1111
+    }
+
+    def 'resumable full synchronization records a checkpoint after each USN window'() {
+        given:
+        spec.numOfNewEntriesOnServer = 2
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        service.setUSNWindowSize(1200)
+
+        def firstWindowFilter = "(&(${spec.searchFilter})(uSNChanged>=0)(uSNChanged<=1199))".toString()
+        def secondWindowFilter = "(&(${spec.searchFilter})(uSNChanged>=1200)(uSNChanged<=2222))".toString()
+
+        when:
+        def newLocalHighestCommittedUSN = service.resumableFullSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+
+        then:
+        1 * ldapClient.search(spec.syncBaseDN, firstWindowFilter, spec.attributesToSync) >> [spec.searchResults[0]]
+        1 * batchEntryProcessor.processNewEntries([spec.searchResults[0] as List])
+
+        then:
+        1 * ldapClient.search(spec.syncBaseDN, secondWindowFilter, spec.attributesToSync) >> [spec.searchResults[1]]
+        1 * batchEntryProcessor.processNewEntries([spec.searchResults[1] as List])
+
+        then:
+        1 * ldapClient.closeConnection()
+        1 * batchEntryProcessor.endSync(2222)
+
+        and:
+        newLocalHighestCommittedUSN == 2222
+        spec.localHighestCommittedUSN == 2222
+        spec.fullSyncCheckpoint == null
+        spec.savedCheckpoints == [
+                new FullSyncCheckpoint(spec.remoteInvocationId, 2222, 1199),
+                new FullSyncCheckpoint(spec.remoteInvocationId, 2222, 2222),
+                null]
+    }
+
+    def 'resumable full synchronization continues from the recorded checkpoint'() {
+        given:
+        spec.with {
+            remoteHighestCommittedUSN = 3333
+            fullSyncCheckpoint = new FullSyncCheckpoint(remoteInvocationId, 2222, 1199)
         }
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        service.setUSNWindowSize(5000)
 
-        @Override
-        DomainControllerAffiliation setHighestCommittedUSN(Long hcusn) {
-            localHighestCommittedUSN = hcusn
+        when:
+        def newLocalHighestCommittedUSN = service.resumableFullSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, "(&(${spec.searchFilter})(uSNChanged>=1200)(uSNChanged<=2222))".toString(), _) >> []
+        1 * ldapClient.closeConnection()
+
+        and: 'the USN the interrupted sync was targeting is recorded'
+        newLocalHighestCommittedUSN == 2222
+        spec.localHighestCommittedUSN == 2222
+        spec.fullSyncCheckpoint == null
+    }
+
+    def 'resumable full synchronization discards a checkpoint recorded with a different invocation id'() {
+        given:
+        spec.fullSyncCheckpoint = new FullSyncCheckpoint(UUID.randomUUID(), 1111, 999)
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.resumableFullSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, "(&(${spec.searchFilter})(uSNChanged>=0)(uSNChanged<=2222))".toString(), _) >> []
+        1 * ldapClient.closeConnection()
+        spec.localHighestCommittedUSN == 2222
+    }
+
+    def 'resumable full synchronization discards a checkpoint older than the highest committed USN in the DCA'() {
+        given: 'incremental syncs have advanced the DCA beyond the target of the interrupted full sync'
+        spec.with {
+            localHighestCommittedUSN = 2000
+            fullSyncCheckpoint = new FullSyncCheckpoint(remoteInvocationId, 1500, 999)
+        }
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        def newLocalHighestCommittedUSN = service.resumableFullSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, "(&(${spec.searchFilter})(uSNChanged>=0)(uSNChanged<=2222))".toString(), _) >> []
+        1 * ldapClient.closeConnection()
+        newLocalHighestCommittedUSN == 2222
+        spec.localHighestCommittedUSN == 2222
+        spec.fullSyncCheckpoint == null
+    }
+
+    def 'concurrent incremental synchronization searches deleted entries on a separate client'() {
+        given:
+        spec.with {
+            uSNCreatedIsIncludedInSearchResults()
+            numOfUpdatedEntriesOnServer = 1
+        }
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        def deletedEntriesClientClosed = false
+        service.ldapClientFactory = {
+            [
+                    searchDeleted: { rootDN, filter ->
+                        assert rootDN == spec.rootDN
+                        assert filter == spec.filterForDeletedObjectsSearch
+                        spec.idOfDeletedObjects
+                    },
+                    closeConnection: { deletedEntriesClientClosed = true }
+            ] as LdapClient
+        } as LdapClientFactory
+
+        when:
+        def newLocalHighestCommittedUSN = service.concurrentIncrementalSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+
+        then:
+        1 * ldapClient.search(spec.syncBaseDN, spec.incrementalSyncFilter, _) >> spec.searchResults
+        1 * batchEntryProcessor.processChangedEntries(_)
+
+        then: 'deleted entries are delivered on the calling thread after the changed ones'
+        1 * batchEntryProcessor.processDeletedEntries(spec.idOfDeletedObjects)
+        1 * ldapClient.closeConnection()
+
+        and:
+        deletedEntriesClientClosed
+        newLocalHighestCommittedUSN == 2222
+        spec.localHighestCommittedUSN == 2222
+    }
+
+    def 'concurrent incremental synchronization requires an ldap client factory'() {
+        given:
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.concurrentIncrementalSync(entryProcessor)
+
+        then:
+        thrown IllegalStateException
+    }
+
+    def 'windowed incremental synchronization records the USN watermark after each window'() {
+        given:
+        spec.with {
+            uSNCreatedIsIncludedInSearchResults()
+            numOfNewEntriesOnServer = 1
+            numOfUpdatedEntriesOnServer = 1
+        }
+        def (newEntry, changedEntry) = spec.searchResults
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        service.setUSNWindowSize(600)
+
+        def filterForWindow = { filter, lo, hi -> "(&(${filter})(uSNChanged>=${lo})(uSNChanged<=${hi}))".toString() }
+
+        when:
+        def newLocalHighestCommittedUSN = service.windowedIncrementalSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+
+        then: 'the first window delivers the changed entry'
+        1 * ldapClient.search(spec.syncBaseDN, filterForWindow(spec.searchFilter, 1111, 1710), _) >> [changedEntry]
+        1 * batchEntryProcessor.processChangedEntries([changedEntry[1..-1]])
+        1 * ldapClient.searchDeleted(spec.rootDN, filterForWindow(spec.searchDeletedObjectsFilter, 1111, 1710)) >> []
+
+        then: 'entries of later windows are still compared to the USN recorded by the last sync'
+        1 * ldapClient.search(spec.syncBaseDN, filterForWindow(spec.searchFilter, 1711, 2222), _) >> [newEntry]
+        1 * batchEntryProcessor.processNewEntries([newEntry[1..-1]])
+        1 * ldapClient.searchDeleted(spec.rootDN, filterForWindow(spec.searchDeletedObjectsFilter, 1711, 2222)) >>
+                spec.idOfDeletedObjects
+        1 * batchEntryProcessor.processDeletedEntries(spec.idOfDeletedObjects)
+
+        then:
+        1 * ldapClient.closeConnection()
+        1 * batchEntryProcessor.endSync(2222)
+
+        and:
+        newLocalHighestCommittedUSN == 2222
+        spec.savedHighestCommittedUSNs == [1710, 2222]
+    }
+
+    def 'root DSE attributes are retrieved in one request and the invocation id is cached'() {
+        given:
+        RootDSESnapshotLdapClient snapshotLdapClient = Mock(RootDSESnapshotLdapClient)
+        ldapClient = snapshotLdapClient
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        service.setInvocationIdCacheTimeToLive(1, TimeUnit.HOURS)
+
+        when:
+        service.incrementalSync(entryProcessor)
+        service.incrementalSync(entryProcessor)
+
+        then: 'each sync bootstraps with one root DSE request'
+        2 * snapshotLdapClient.getRootDSEAttributes([HIGHEST_COMMITTED_USN.key(), DS_SERVICE_NAME.key()]) >>
+                [spec.remoteHighestCommittedUSN, 'dsServiceDN']
+
+        and: 'the invocation id is only read once'
+        1 * snapshotLdapClient.getEntryAttribute('dsServiceDN', INVOCATION_ID.key()) >> spec.remoteInvocationId
+
+        and:
+        2 * snapshotLdapClient.search(*_) >> []
+        2 * snapshotLdapClient.searchDeleted(*_) >> []
+        2 * snapshotLdapClient.closeConnection()
+    }
+
+    def 'initial DirSync delivers every entry as new and records the cookie'() {
+        given:
+        spec.with {
+            uSNCreatedIsIncludedInSearchResults()
+            numOfNewEntriesOnServer = 2
+        }
+        def (firstEntry, secondEntry) = spec.searchResults
+        spec.localInvocationId = null
+        spec.localHighestCommittedUSN = null
+        DirSyncLdapClient dirSyncLdapClient = Mock(DirSyncLdapClient)
+        ldapClient = dirSyncLdapClient
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.dirSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * batchEntryProcessor.beginSync(FULL, 2222)
+
+        then: 'rounds are performed until the server has no more data'
+        1 * dirSyncLdapClient.dirSync(*_) >> { rootDN, searchBaseDN, filter, attributes, cookie ->
+            assert [rootDN, searchBaseDN] == [spec.rootDN, spec.syncBaseDN]
+            assert filter == spec.dirSyncFilter
+            assert cookie == null
+            new DirSyncResult([firstEntry], [], [1] as byte[], true)
+        }
+        1 * batchEntryProcessor.processNewEntries([firstEntry[1..-1]])
+
+        then:
+        1 * dirSyncLdapClient.dirSync(*_) >> { rootDN, searchBaseDN, filter, attributes, cookie ->
+            assert cookie == [1] as byte[]
+            new DirSyncResult([secondEntry], [], [2] as byte[], false)
+        }
+        1 * batchEntryProcessor.processNewEntries([secondEntry[1..-1]])
+
+        then:
+        interaction { invocationIdIsRetrieved() }
+        1 * dirSyncLdapClient.closeConnection()
+
+        and:
+        spec.dirSyncCookie == [2] as byte[]
+        spec.localHighestCommittedUSN == 2222
+        spec.localInvocationId == spec.remoteInvocationId
+    }
+
+    def 'subsequent DirSync delivers changed attributes and deletions from the same result set'() {
+        given:
+        spec.dirSyncCookie = [1] as byte[]
+        def changedEntry = [null, null, 'changedValue'] as String[]
+        DirSyncLdapClient dirSyncLdapClient = Mock(DirSyncLdapClient)
+        ldapClient = dirSyncLdapClient
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.dirSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * batchEntryProcessor.beginSync(INCREMENTAL, 2222)
+        interaction { invocationIdIsRetrieved() }
+
+        then:
+        1 * dirSyncLdapClient.dirSync(*_) >> { rootDN, searchBaseDN, filter, attributes, cookie ->
+            assert filter == spec.dirSyncFilter : 'tombstones have to match the filter for deletions to be reported'
+            assert attributes == [USN_CREATED.key(), *spec.attributesToSync]
+            assert cookie == [1] as byte[]
+            new DirSyncResult([changedEntry], spec.idOfDeletedObjects, [2] as byte[], false)
+        }
+        1 * batchEntryProcessor.processChangedEntries([[null, 'changedValue']])
+        1 * batchEntryProcessor.processDeletedEntries(spec.idOfDeletedObjects)
+        1 * dirSyncLdapClient.closeConnection()
+
+        and:
+        spec.dirSyncCookie == [2] as byte[]
+    }
+
+    def 'DirSync with membership deltas delivers deltas after the changed entries'() {
+        given:
+        spec.dirSyncCookie = [1] as byte[]
+        def changedEntry = [null, null, 'changedValue'] as String[]
+        def delta = new MembershipDelta(UUID.randomUUID(), 'CN=group', 'member', ['CN=added'], [])
+        IncrementalValuesDirSyncLdapClient dirSyncLdapClient = Mock(IncrementalValuesDirSyncLdapClient)
+        ldapClient = dirSyncLdapClient
+        MembershipDeltaEntryProcessor entryProcessor = Mock(MembershipDeltaEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.dirSyncWithMembershipDeltas(entryProcessor, ['member'])
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+
+        then:
+        1 * dirSyncLdapClient.dirSync(*_) >> { rootDN, searchBaseDN, filter, attributes, linkedAttributes, cookie ->
+            assert filter == spec.dirSyncFilter
+            assert linkedAttributes == ['member']
+            assert cookie == [1] as byte[]
+            new DirSyncResult([changedEntry], [], [delta], [2] as byte[], false)
+        }
+        1 * entryProcessor.processChanged([null, 'changedValue'])
+
+        then:
+        1 * entryProcessor.processMembershipDelta(delta)
+        1 * dirSyncLdapClient.closeConnection()
+
+        and:
+        spec.dirSyncCookie == [2] as byte[]
+    }
+
+    def 'DirSync with membership deltas requires an LdapClient supporting incremental values'() {
+        given:
+        ldapClient = Mock(DirSyncLdapClient)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.dirSyncWithMembershipDeltas(Mock(MembershipDeltaEntryProcessor), ['member'])
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def 'attribute hash filter suppresses changed entries whose synced attributes are unchanged'() {
+        given:
+        useHashableAttributes()
+        def (firstId, secondId) = [UUID.randomUUID(), UUID.randomUUID()]
+        def usnCreated = '1000'
+
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        def store = new RecordingAttributeHashStore()
+        service.attributeHashStore = store
+
+        when: 'entries are delivered for the first time'
+        service.incrementalSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(*_) >> [[usnCreated, firstId, 'a'] as Object[], [usnCreated, secondId, 'b'] as Object[]]
+        1 * batchEntryProcessor.processChangedEntries([[firstId, 'a'], [secondId, 'b']])
+        1 * ldapClient.searchDeleted(*_) >> []
+        1 * ldapClient.closeConnection()
+        store.updates*.keySet() == [[firstId, secondId] as Set]
+
+        when: 'only the attributes of the second entry have changed since then'
+        service.incrementalSyncInBatches(batchEntryProcessor)
+
+        then: 'only the hash of the second entry is written to the store'
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(*_) >> [[usnCreated, firstId, 'a'] as Object[], [usnCreated, secondId, 'c'] as Object[]]
+        1 * batchEntryProcessor.processChangedEntries([[secondId, 'c']])
+        1 * ldapClient.searchDeleted(*_) >> [firstId]
+        1 * batchEntryProcessor.processDeletedEntries([firstId])
+        1 * ldapClient.closeConnection()
+        store.updates[1].keySet() == [secondId] as Set
+        store.removals[1] == [firstId] as Set
+
+        and: 'the hashes are loaded only once'
+        store.numOfLoads == 1
+        store.numOfClears == 0
+    }
+
+    def 'attribute hash filter keeps the new entries and the order of a page that mixes new and changed entries'() {
+        given:
+        useHashableAttributes()
+        def (unchangedId, changedId, newId) = [UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()]
+
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        service.attributeHashStore = new RecordingAttributeHashStore()
+
+        when:
+        service.incrementalSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(*_) >> [['1000', unchangedId, 'a'] as Object[], ['1000', changedId, 'b'] as Object[]]
+        1 * batchEntryProcessor.processChangedEntries([[unchangedId, 'a'], [changedId, 'b']])
+        1 * ldapClient.searchDeleted(*_) >> []
+        1 * ldapClient.closeConnection()
+
+        when:
+        service.incrementalSyncInBatches(batchEntryProcessor)
+
+        then: 'the unchanged entry is dropped from the batch'
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(*_) >> [
+                ['1000', changedId, 'c'] as Object[], ['5000', newId, 'd'] as Object[], ['1000', unchangedId, 'a'] as Object[]]
+        1 * batchEntryProcessor.processNewAndChangedEntries(
+                [[changedId, 'c'], [newId, 'd']], { it == BitSet.valueOf([0b10] as long[]) })
+        1 * ldapClient.searchDeleted(*_) >> []
+        1 * ldapClient.closeConnection()
+    }
+
+    def 'attribute hash index is cleared by a full sync, unless it resumes from a checkpoint'() {
+        given:
+        useHashableAttributes()
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        def store = new RecordingAttributeHashStore()
+        service.attributeHashStore = store
+        spec.fullSyncCheckpoint = new FullSyncCheckpoint(spec.remoteInvocationId, 2222, 1199)
+
+        when: 'an interrupted full sync is resumed'
+        service.resumableFullSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(*_) >> [[UUID.randomUUID(), 'a'] as Object[]]
+        1 * ldapClient.closeConnection()
+        store.numOfClears == 0
+
+        when: 'a new full sync is started'
+        service.fullSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(*_) >> [[UUID.randomUUID(), 'a'] as Object[]]
+        1 * ldapClient.closeConnection()
+        store.numOfClears == 1
+    }
+
+    def 'attribute hash filter can not be used with DirSync, which delivers partial entries'() {
+        given:
+        ldapClient = Mock(DirSyncLdapClient)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        service.attributeHashStore = new RecordingAttributeHashStore()
+
+        when:
+        service.dirSyncInBatches(Mock(BatchEntryProcessor))
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def 'attribute hashes are reloaded from the store after a failed sync'() {
+        given:
+        useHashableAttributes()
+        BatchEntryProcessor batchEntryProcessor = Mock(BatchEntryProcessor)
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+        def store = new RecordingAttributeHashStore()
+        service.attributeHashStore = store
+
+        when:
+        service.incrementalSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(*_) >> [['1000', UUID.randomUUID(), 'a'] as Object[]]
+        1 * ldapClient.searchDeleted(*_) >> { throw new LdapClientException('failed') }
+        1 * ldapClient.closeConnection()
+        thrown LdapClientException
+        store.updates.empty
+
+        when:
+        service.incrementalSyncInBatches(batchEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(*_) >> []
+        1 * ldapClient.searchDeleted(*_) >> []
+        1 * ldapClient.closeConnection()
+        store.numOfLoads == 2
+    }
+
+    private void useHashableAttributes() {
+        attributeResolver = [
+                getAsString: { it as String },
+                getAsLong: { Long.valueOf(it) },
+                getAsByteArray: { it instanceof UUID ? TestUtils.uuidToBytArray(it) : it.toString().bytes },
+                getAsStringList: { [it as String] }
+        ] as LdapAttributeResolver
+        spec.attributesToSync = ['objectGUID', 'foo']
+    }
+
+    static class RecordingAttributeHashStore implements AttributeHashStore {
+        int numOfLoads
+        int numOfClears
+        List<Map<UUID, Long>> updates = []
+        List<Set<UUID>> removals = []
+
+        @Override
+        void load(AttributeHashStore.HashHandler hashHandler) {
+            numOfLoads++
+        }
+
+        @Override
+        void update(AttributeHashStore.Modifications modifications) {
+            updates << AttributeHashIndexSpec.changedHashesOf(modifications)
+            removals << AttributeHashIndexSpec.removedEntriesOf(modifications)
+        }
+
+        @Override
+        void clear() {
+            numOfClears++
+        }
+    }
+
+    def 'full synchronization with orphan detection reports known entries that no longer exist as deleted'() {
+        given:
+        spec.attributesToSync = ['objectGUID', 'foo']
+        def (existingId, orphanId, newId) = [UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()]
+        def knownEntryIds = new UUIDSet()
+        knownEntryIds.add(existingId)
+        knownEntryIds.add(orphanId)
+
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.fullSyncWithOrphanDetection(entryProcessor, knownEntryIds)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * ldapClient.search(*_) >> [[existingId, 'a'] as Object[], [newId, 'b'] as Object[]]
+        1 * entryProcessor.processNew([existingId, 'a'])
+        1 * entryProcessor.processNew([newId, 'b'])
+
+        then:
+        1 * entryProcessor.processDeleted(orphanId)
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.closeConnection()
+
+        and:
+        knownEntryIds.toList() == [orphanId]
+    }
+
+    def 'orphan detection sees the entries changed during the scan, and skips entries without a valid objectGUID'() {
+        given:
+        useHashableAttributes()
+        def (changedDuringScanId, orphanId) = [UUID.randomUUID(), UUID.randomUUID()]
+        def knownEntryIds = new UUIDSet()
+        knownEntryIds.add(changedDuringScanId)
+        knownEntryIds.add(orphanId)
+
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.fullSyncWithOrphanDetection(entryProcessor, knownEntryIds)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, spec.searchFilter, spec.attributesToSync) >>
+        [[changedDuringScanId, 'a'] as Object[], ['malformed', 'b'] as Object[], [null, 'c'] as Object[]]
+        3 * entryProcessor.processNew(_)
+
+        then:
+        1 * entryProcessor.processDeleted(orphanId)
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.closeConnection()
+
+        and:
+        knownEntryIds.toList() == [orphanId]
+    }
+
+    def 'orphan detection requires the objectGUID attribute to be synced'() {
+        given:
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.fullSyncWithOrphanDetection(entryProcessor, new UUIDSet())
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * ldapClient.closeConnection()
+        thrown(IllegalStateException)
+    }
+
+    def 'reconciliation delivers only the entries that differ from the local view'() {
+        given:
+        def (unchangedId, changedId, newId, deletedId) = (1..4).collect { UUID.randomUUID() }
+        def localEntryView = [
+                getUSNChanged: { [(unchangedId): 100L, (changedId): 200L, (deletedId): 300L][it] },
+                getEntryIds: { [unchangedId, changedId, deletedId] }
+        ] as LocalEntryView
+        spec.localInvocationId = UUID.randomUUID()
+
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.reconciliationSync(entryProcessor, localEntryView)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, spec.searchFilter, ['uSNChanged', 'objectGUID'] + spec.attributesToSync) >> [
+                ['100', unchangedId, 'a'] as Object[],
+                ['3000', changedId, 'b'] as Object[],
+                ['150', newId, 'c'] as Object[]
+        ]
+        1 * entryProcessor.processNew(['c'])
+        1 * entryProcessor.processChanged(['b'])
+
+        then:
+        1 * entryProcessor.processDeleted(deletedId)
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.closeConnection()
+
+        and: 'the DCA is re-affiliated with the domain controller'
+        spec.localInvocationId == spec.remoteInvocationId
+        spec.localHighestCommittedUSN == spec.remoteHighestCommittedUSN.toLong()
+    }
+
+    def 'objectGUID filter lists the IDs in the binary format of Active Directory'() {
+        expect:
+        ActiveDirectorySyncServiceImpl.getObjectGuidFilter([UUID.fromString('00112233-4455-6677-8899-aabbccddeeff')]) ==
+                '(|(objectGUID=\\33\\22\\11\\00\\55\\44\\77\\66\\88\\99\\aa\\bb\\cc\\dd\\ee\\ff))'
+    }
+
+    def 'fingerprint sync retrieves the attributes of new and changed entries only'() {
+        given:
+        def (unchangedId, changedId, newId, deletedId) = (1..4).collect { UUID.randomUUID() }
+        def localEntryView = [
+                getUSNChanged: { [(unchangedId): 100L, (changedId): 200L, (deletedId): 300L][it] },
+                getEntryIds: { [unchangedId, changedId, deletedId] }
+        ] as LocalEntryView
+
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.fingerprintSync(entryProcessor, localEntryView)
+
+        then: 'fingerprints are retrieved first'
+        interaction { highestCommittedUSNIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, spec.searchFilter, ['uSNChanged', 'objectGUID']) >> [
+                ['100', unchangedId] as Object[],
+                ['201', changedId] as Object[],
+                ['150', newId] as Object[]
+        ]
+
+        then: 'new entries are retrieved by their objectGUID'
+        1 * ldapClient.search(spec.syncBaseDN,
+                              and(spec.searchFilter, ActiveDirectorySyncServiceImpl.getObjectGuidFilter([newId])),
+                              spec.attributesToSync) >> [['c'] as Object[]]
+        1 * entryProcessor.processNew(['c'])
+
+        then: 'changed entries are retrieved by their objectGUID'
+        1 * ldapClient.search(spec.syncBaseDN,
+                              and(spec.searchFilter, ActiveDirectorySyncServiceImpl.getObjectGuidFilter([changedId])),
+                              spec.attributesToSync) >> [['b'] as Object[]]
+        1 * entryProcessor.processChanged(['b'])
+
+        then:
+        1 * entryProcessor.processDeleted(deletedId)
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.closeConnection()
+    }
+
+    def 'flyweight incremental synchronization delivers entries through a reused view and deletions as primitives'() {
+        given:
+        def (createdId, deletedId) = [UUID.randomUUID(), UUID.randomUUID()]
+        def received = []
+        FlyweightEntryProcessor flyweightEntryProcessor = [
+                processNew: { received << ['new', it.toList()] },
+                processChanged: { received << ['changed', it.toList()] },
+                processDeleted: { long msb, long lsb -> received << ['deleted', new UUID(msb, lsb)] }
+        ] as FlyweightEntryProcessor
+
+        ActiveDirectorySyncServiceImpl service = buildService(spec)
+
+        when:
+        service.flyweightIncrementalSync(flyweightEntryProcessor)
+
+        then:
+        interaction { highestCommittedUSNIsRetrieved() }
+        interaction { invocationIdIsRetrieved() }
+        1 * ldapClient.search(spec.syncBaseDN, _, ['uSNCreated'] + spec.attributesToSync) >> [
+                ['2000', createdId, 'a'] as Object[],
+                ['1000', createdId, 'b'] as Object[]
+        ]
+        1 * ldapClient.searchDeleted(spec.rootDN, _) >> [deletedId]
+        1 * ldapClient.closeConnection()
+
+        and:
+        received == [['new', [createdId, 'a']], ['changed', [createdId, 'b']], ['deleted', deletedId]]
+    }
+
+    def invocationIdIsRetrieved() {
+        String dsServiceDn = 'dsServiceDN'
+        1 * ldapClient.getRootDSEAttribute(DS_SERVICE_NAME.key()) >> dsServiceDn
+        1 * ldapClient.getEntryAttribute(dsServiceDn, INVOCATION_ID.key()) >> spec.remoteInvocationId
+    }
+
+    def highestCommittedUSNIsRetrieved() {
+        1 * ldapClient.getRootDSEAttribute(HIGHEST_COMMITTED_USN.key()) >> spec.remoteHighestCommittedUSN
+    }
+
+    /**
+     * Instantiates the test subject (sync service) using the given {@link Spec spec} parameter that specifies various
+     * conditions under which the test is to be run.
+     */
+    ActiveDirectorySyncServiceImpl buildService(Spec spec) {
+        // interaction common to all feature methods
+        _ * ldapClient.getAttributeResolver() >> attributeResolver
+
+        // the following lines ensure that any interaction with the below mentioned mocks
+        // other than those explicitly specified in feature methods will be reported as errors
+        0 * ldapClient._(* _)
+        0 * entryProcessor._(* _)
+
+        def affiliationRepository = [
+                load: { spec },
+                save: {
+                    spec.savedCheckpoints << spec.fullSyncCheckpoint
+                    spec.savedHighestCommittedUSNs << spec.localHighestCommittedUSN
+                    spec
+                }
+        ] as DCARepository
+
+        def service = new ActiveDirectorySyncServiceImpl('foo', affiliationRepository, ldapClient)
+        service._dcAffiliation = spec
+
+        service
+    }
+
+    /**
+     * Helper class providing DSL-like constructs to make it possible to easily set up different conditions in a declarative
+     * manner at the beginning of feature methods. Ensures the consistency between interrelated properties and test data.
+     */
+    static class Spec implements CheckpointingDomainControllerAffiliation, DirSyncDomainControllerAffiliation {
+        final static UUID COMMON_INVOCATION_ID = new UUID(0x1234567890abcdef, 0xfedcba098765432)
+
+        UUID localInvocationId = COMMON_INVOCATION_ID
+        UUID remoteInvocationId = COMMON_INVOCATION_ID
+        Long localHighestCommittedUSN = 1111
+        String remoteHighestCommittedUSN = 2222
+        def numOfNewEntriesOnServer = 0
+        def numOfUpdatedEntriesOnServer = 0
+        def numOfDeletedEntriesOnServer = 0
+        def isUSNCreatedAttributeIncluded = false
+        List searchResults = []
+        String fullSyncFilter
+        List<String> partitionFilters
+        String incrementalSyncFilter
+        String dirSyncFilter
+        String filterForDeletedObjectsSearch
+        String deletedObjectsContainer
+        List<UUID> idOfDeletedObjects
+        FullSyncCheckpoint fullSyncCheckpoint
+        byte[] dirSyncCookie
+        List<FullSyncCheckpoint> savedCheckpoints = []
+        List<Long> savedHighestCommittedUSNs = []
+
+        // region mocked DomainControllerAffiliation properties
+        List attributesToSync = ['foo', 'bar']
+        String searchFilter = 'search=filter'
+        String searchDeletedObjectsFilter = 'searchDeletedObjects=filter'
+        String rootDN = 'rootDN'
+        String syncBaseDN = 'syncBaseDN'
+
+        String url = 'foo'
+        String bindUser = 'bindUser'
+        String bindPassword = 'bindPassword'
+
+        @Override
+        UUID getInvocationId() { localInvocationId }
+
+        @Override
+        Long getHighestCommittedUSN() { localHighestCommittedUSN }
+
+        @Override
+        DomainControllerAffiliation setInvocationId(UUID uuid) {
+            localInvocationId = uuid
+            this
+        }
+
+        @Override
+        DomainControllerAffiliation setHighestCommittedUSN(Long hcusn) {
+            localHighestCommittedUSN = hcusn
+            this
+        }
+
+        @Override
+        DirSyncDomainControllerAffiliation setDirSyncCookie(byte[] cookie) {
+            dirSyncCookie = cookie
+            this
+        }
+
+        @Override
+        CheckpointingDomainControllerAffiliation setFullSyncCheckpoint(FullSyncCheckpoint checkpoint) {
+            fullSyncCheckpoint = checkpoint
             this
         }
         // endregion
@@ -298,6 +1328,10 @@ class ActiveDirectorySyncServiceImplSpec extends Specification {
             filterForDeletedObjectsSearch = "(&(${searchDeletedObjectsFilter})(uSNChanged>=1111)(uSNChanged<=2222))".toString()
             incrementalSyncFilter = "(&(${searchFilter})(uSNChanged>=1111)(uSNChanged<=2222))".toString()
             fullSyncFilter = "(&(${searchFilter})(uSNChanged<=2222))".toString()
+            dirSyncFilter = "(|(${searchFilter})(${searchDeletedObjectsFilter}))".toString()
+            partitionFilters = [
+                    "(&(${searchFilter})(uSNChanged>=0)(uSNChanged<=1111))".toString(),
+                    "(&(${searchFilter})(uSNChanged>=1112)(uSNChanged<=2222))".toString()]
 
             def deletedObjectsContainerId = new UUID(0x1111222233334444, 0x5555666677778888)
             deletedObjectsContainer = "<WKGUID=${deletedObjectsContainerId},$rootDN>".toString()
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl
+
+import org.adsync4j.api.BatchActiveDirectorySyncService
+import org.adsync4j.api.LdapClientException
+import org.adsync4j.api.SyncEvent
+import org.adsync4j.api.SyncPublisher
+import org.adsync4j.spi.BatchEntryProcessor
+import org.adsync4j.spi.EntryProcessor
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+import static org.adsync4j.spi.BatchEntryProcessor.SyncType.FULL
+import static org.adsync4j.spi.BatchEntryProcessor.SyncType.INCREMENTAL
+
+class AsyncSyncServiceSpec extends Specification {
+
+    static final List<List<String>> PAGE_1 = [['a'], ['b']]
+    static final List<List<String>> PAGE_2 = [['c']]
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    // records the events, and the pages retrieved by the fake sync service
+    List<SyncEvent<String>> events = [].asSynchronized()
+    List<String> log = [].asSynchronized()
+    Throwable error
+    boolean completed
+
+    BatchActiveDirectorySyncService<String> syncService = [
+            fullSyncInBatches: { BatchEntryProcessor<String> processor ->
+                processor.beginSync(FULL, 42)
+                log << 'page 1'
+                processor.processNewEntries(PAGE_1)
+                log << 'page 2'
+                processor.processNewEntries(PAGE_2)
+                processor.endSync(42)
+                log << 'saved'
+                42L
+            },
+            incrementalSyncInBatches: { BatchEntryProcessor<String> processor ->
+                processor.beginSync(INCREMENTAL, 43)
+                processor.processChangedEntries(PAGE_2)
+                processor.processDeletedEntries([new UUID(1, 2)])
+                processor.endSync(43)
+                43L
+            },
+            fullSync: { EntryProcessor<String> processor -> throw new IllegalStateException('boom') }
+    ] as BatchActiveDirectorySyncService
+
+    AsyncSyncService<String> asyncService = new AsyncSyncService<>(syncService)
+
+    SyncPublisher.Subscription subscription
+
+    SyncPublisher.Subscriber<SyncEvent<String>> subscriber = [
+            onSubscribe: { SyncPublisher.Subscription s -> subscription = s },
+            onNext: { SyncEvent<String> event -> events << event },
+            onError: { Throwable t -> error = t },
+            onComplete: { completed = true }
+    ] as SyncPublisher.Subscriber
+
+    def cleanup() {
+        asyncService.shutdown()
+        assert asyncService.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def 'futures return the highest committed USN or fail with the exception of the sync'() {
+        when:
+        def usn = asyncService.incrementalSyncInBatches(Mock(BatchEntryProcessor)).get(5, TimeUnit.SECONDS)
+
+        then:
+        usn == 43
+
+        when:
+        asyncService.fullSync(Mock(EntryProcessor)).get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof IllegalStateException
+    }
+
+    def 'events are published only as requested, and the sync waits for demand'() {
+        when:
+        asyncService.fullSyncPublisher().subscribe(subscriber)
+
+        then:
+        conditions.eventually { assert subscription != null }
+        events.empty
+
+        when:
+        subscription.request(2)
+
+        then: 'the sync is blocked before the second event of the first page'
+        conditions.eventually { assert events.size() == 2 }
+        events*.type == [SyncEvent.Type.BEGIN_SYNC, SyncEvent.Type.NEW]
+        events[0].syncType == FULL
+        events[0].highestCommittedUSN == 42
+        events[1].entry == ['a']
+        log == ['page 1']
+
+        when:
+        subscription.request(Long.MAX_VALUE)
+
+        then:
+        conditions.eventually { assert completed }
+        events*.type == [SyncEvent.Type.BEGIN_SYNC] + [SyncEvent.Type.NEW] * 3 + [SyncEvent.Type.END_SYNC]
+        events.findAll { it.entry }*.entry == PAGE_1 + PAGE_2
+        log == ['page 1', 'page 2', 'saved']
+        error == null
+    }
+
+    def 'incremental sync events carry changed entries and deleted entry ids'() {
+        when:
+        asyncService.incrementalSyncPublisher().subscribe(subscriber)
+        conditions.eventually { assert subscription != null }
+        subscription.request(10)
+
+        then:
+        conditions.eventually { assert completed }
+        events*.type == [SyncEvent.Type.BEGIN_SYNC, SyncEvent.Type.CHANGED, SyncEvent.Type.DELETED, SyncEvent.Type.END_SYNC]
+        events[1].entry == ['c']
+        events[2].entryId == new UUID(1, 2)
+        events[3].highestCommittedUSN == 43
+    }
+
+    def 'cancelling the subscription aborts the sync without signalling an error'() {
+        when:
+        asyncService.fullSyncPublisher().subscribe(subscriber)
+        conditions.eventually { assert subscription != null }
+        subscription.request(1)
+        conditions.eventually { assert events.size() == 1 }
+        subscription.cancel()
+
+        then: 'the sync is aborted before the remaining pages are retrieved and the DCA is saved'
+        asyncService.incrementalSyncInBatches(Mock(BatchEntryProcessor)).get(5, TimeUnit.SECONDS) == 43
+        log == ['page 1']
+        events.size() == 1
+        !completed
+        error == null
+    }
+
+    def 'a non-positive request is signalled as an error'() {
+        when:
+        asyncService.fullSyncPublisher().subscribe(subscriber)
+        conditions.eventually { assert subscription != null }
+        subscription.request(0)
+
+        then:
+        conditions.eventually { assert error instanceof IllegalArgumentException }
+        events.empty
+        !completed
+    }
+
+    def 'a non-positive request is signalled as an error even if the sync completes in the meantime'() {
+        given:
+        def requestingSubscriber = [
+                onSubscribe: { SyncPublisher.Subscription s -> subscription = s },
+                onNext: { SyncEvent<String> event ->
+                    events << event
+                    if (event.type == SyncEvent.Type.END_SYNC) {
+                        subscription.request(-1)
+                    }
+                },
+                onError: { Throwable t -> error = t },
+                onComplete: { completed = true }
+        ] as SyncPublisher.Subscriber
+
+        when:
+        asyncService.fullSyncPublisher().subscribe(requestingSubscriber)
+        conditions.eventually { assert subscription != null }
+        subscription.request(5)
+
+        then:
+        conditions.eventually { assert error instanceof IllegalArgumentException }
+        events.size() == 5
+        log == ['page 1', 'page 2', 'saved']
+        !completed
+    }
+
+    def 'an Error thrown by the sync is signalled to the subscriber'() {
+        given:
+        def failingService = new AsyncSyncService<String>(
+                [fullSyncInBatches: { BatchEntryProcessor<String> processor -> throw new StackOverflowError() }]
+                        as BatchActiveDirectorySyncService)
+
+        when:
+        failingService.fullSyncPublisher().subscribe(subscriber)
+
+        then:
+        conditions.eventually { assert error instanceof StackOverflowError }
+        !completed
+
+        cleanup:
+        failingService.shutdown()
+        failingService.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def 'a publisher rejects a second subscriber'() {
+        given:
+        def publisher = asyncService.fullSyncPublisher()
+        Throwable secondError
+        def second = [
+                onSubscribe: {},
+                onError: { Throwable t -> secondError = t }
+        ] as SyncPublisher.Subscriber
+
+        when:
+        publisher.subscribe(subscriber)
+        publisher.subscribe(second)
+
+        then:
+        secondError instanceof IllegalStateException
+
+        cleanup:
+        conditions.eventually { assert subscription != null }
+        subscription.cancel()
+    }
+
+    def 'a cursor returns the events in page-sized batches, and the DCA is saved only when it is closed'() {
+        given:
+        def cursor = asyncService.fullSyncCursor()
+
+        expect:
+        cursor.nextBatch()*.type == [SyncEvent.Type.BEGIN_SYNC]
+        cursor.nextBatch()*.entry == PAGE_1
+        cursor.next().entry == ['c']
+        cursor.next().type == SyncEvent.Type.END_SYNC
+        !cursor.hasNext()
+        log == ['page 1', 'page 2']
+
+        when:
+        cursor.close()
+
+        then:
+        log == ['page 1', 'page 2', 'saved']
+
+        when:
+        cursor.next()
+
+        then:
+        thrown(NoSuchElementException)
+    }
+
+    def 'closing a cursor before consuming all events aborts the sync'() {
+        given:
+        def cursor = asyncService.fullSyncCursor()
+
+        when:
+        def events = (1..4).collect { cursor.next() }
+        cursor.close()
+
+        then: 'the DCA is not saved, even though all entries have been consumed'
+        events*.type == [SyncEvent.Type.BEGIN_SYNC] + [SyncEvent.Type.NEW] * 3
+        asyncService.incrementalSyncInBatches(Mock(BatchEntryProcessor)).get(5, TimeUnit.SECONDS) == 43
+        log == ['page 1', 'page 2']
+    }
+
+    def 'a cursor propagates the failure of the sync'() {
+        given:
+        def failingService = new AsyncSyncService<String>([
+                incrementalSyncInBatches: { BatchEntryProcessor<String> processor ->
+                    processor.beginSync(INCREMENTAL, 43)
+                    throw new LdapClientException('boom')
+                }
+        ] as BatchActiveDirectorySyncService)
+        def cursor = failingService.incrementalSyncCursor()
+
+        when:
+        cursor.next()
+        cursor.hasNext()
+
+        then:
+        def e = thrown(LdapClientException)
+        e.message == 'boom'
+
+        cleanup:
+        cursor.close()
+        failingService.shutdown()
+    }
+
+    def 'a cursor propagates an Error thrown by the sync'() {
+        given:
+        def failingService = new AsyncSyncService<String>(
+                [fullSyncInBatches: { BatchEntryProcessor<String> processor -> throw new StackOverflowError() }]
+                        as BatchActiveDirectorySyncService)
+        def cursor = failingService.fullSyncCursor()
+
+        when:
+        cursor.hasNext()
+
+        then:
+        def e = thrown(LdapClientException)
+        e.cause instanceof StackOverflowError
+
+        cleanup:
+        cursor.close()
+        failingService.shutdown()
+        failingService.awaitTermination(5, TimeUnit.SECONDS)
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl
+
+import org.adsync4j.spi.AttributeHashStore
+import spock.lang.Specification
+
+class AttributeHashIndexSpec extends Specification {
+
+    AttributeHashIndex index = new AttributeHashIndex()
+
+    def 'put() tells if the entry is new or its hash has changed'() {
+        given:
+        def id = UUID.randomUUID()
+
+        expect:
+        index.put(id, 1)
+        !index.put(id, 1)
+        index.put(id, 2)
+        index.get(id) == 2
+        index.size() == 1
+    }
+
+    def 'entries survive growing the table and removing other entries'() {
+        given:
+        def ids = (1..1000).collect { new UUID(it, it * 31) }
+        ids.eachWithIndex { id, i -> index.put(id, i) }
+
+        when:
+        ids.eachWithIndex { id, i -> if (i % 3 == 0) index.remove(id) }
+
+        then:
+        index.size() == 666
+        (0..<ids.size()).every { i -> index.get(ids[i]) == (i % 3 == 0 ? null : i) }
+    }
+
+    def 'only the modifications made since the last flush are passed to the store'() {
+        given:
+        def (first, second, third) = [UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()]
+        AttributeHashStore store = Mock(AttributeHashStore)
+        def modifications = []
+
+        when: 'the index is loaded and modified'
+        index = AttributeHashIndex.load(store)
+        index.put(second, 2)
+        index.put(third, 3)
+        index.remove(first)
+        index.flushModifications(store)
+
+        then:
+        1 * store.load(_) >> { AttributeHashStore.HashHandler hashHandler ->
+            hashHandler.handleHash(first.mostSignificantBits, first.leastSignificantBits, 1)
+            hashHandler.handleHash(second.mostSignificantBits, second.leastSignificantBits, 2)
+        }
+        1 * store.update(_) >> { AttributeHashStore.Modifications m ->
+            modifications << changedHashesOf(m) << removedEntriesOf(m)
+        }
+        0 * store._
+        modifications == [[(third): 3L], [first] as Set]
+
+        when: 'nothing has been modified since the last flush'
+        index.put(third, 3)
+        index.flushModifications(store)
+
+        then:
+        0 * store._
+
+        when: 'the index is cleared'
+        modifications.clear()
+        index.clear()
+        index.put(first, 4)
+        index.put(second, 5)
+        index.remove(first)
+        index.flushModifications(store)
+
+        then:
+        1 * store.clear()
+
+        then: 'every entry of the index is passed to the store, with no removals'
+        1 * store.update(_) >> { AttributeHashStore.Modifications m ->
+            modifications << changedHashesOf(m) << removedEntriesOf(m)
+        }
+        modifications == [[(second): 5L], [] as Set]
+    }
+
+    static Map<UUID, Long> changedHashesOf(AttributeHashStore.Modifications modifications) {
+        Map<UUID, Long> changedHashes = [:]
+        modifications.forEachChangedHash({ long msb, long lsb, long hash ->
+            changedHashes[new UUID(msb, lsb)] = hash
+        } as AttributeHashStore.HashHandler)
+        changedHashes
+    }
+
+    static Set<UUID> removedEntriesOf(AttributeHashStore.Modifications modifications) {
+        Set<UUID> removedEntryIds = [] as Set
+        modifications.forEachRemovedEntry({ long msb, long lsb ->
+            removedEntryIds << new UUID(msb, lsb)
+        } as AttributeHashStore.RemovedEntryHandler)
+        removedEntryIds
+    }
+}
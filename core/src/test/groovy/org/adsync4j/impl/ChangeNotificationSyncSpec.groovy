@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl
+
+import org.adsync4j.api.InitialFullSyncRequiredException
+import org.adsync4j.api.LdapClientException
+import org.adsync4j.spi.BatchEntryProcessor
+import org.adsync4j.spi.ChangeNotificationLdapClient
+import org.adsync4j.spi.ChangeNotificationListener
+import org.adsync4j.spi.LdapClientFactory
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ChangeNotificationSyncSpec extends Specification {
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    BatchEntryProcessor entryProcessor = Mock(BatchEntryProcessor)
+    ActiveDirectorySyncServiceImpl syncService = Mock(ActiveDirectorySyncServiceImpl)
+
+    def numOfSyncs = new AtomicInteger()
+    RuntimeException syncFailure
+    def numOfClosedClients = new AtomicInteger()
+    List<ChangeNotificationListener> listeners = [].asSynchronized()
+
+    LdapClientFactory ldapClientFactory = {
+        [
+                registerChangeNotification: { searchBaseDN, listener ->
+                    assert searchBaseDN == 'syncBaseDN'
+                    listeners << listener
+                },
+                closeConnection: { numOfClosedClients.incrementAndGet() }
+        ] as ChangeNotificationLdapClient
+    } as LdapClientFactory
+
+    ChangeNotificationSync changeNotificationSync =
+        new ChangeNotificationSync(syncService, entryProcessor, ldapClientFactory, 'syncBaseDN', 0)
+
+    def setup() {
+        _ * syncService.incrementalSyncInBatches(entryProcessor) >> {
+            if (syncFailure) {
+                throw syncFailure
+            }
+            numOfSyncs.incrementAndGet()
+        }
+    }
+
+    def cleanup() {
+        changeNotificationSync.stop()
+        assert changeNotificationSync.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def 'catches up with an incremental sync after registering, then syncs on each notification'() {
+        when:
+        changeNotificationSync.start()
+
+        then:
+        conditions.eventually {
+            assert listeners.size() == 1
+            assert numOfSyncs.get() == 1
+        }
+
+        when:
+        listeners[0].changeNotified('CN=changed')
+
+        then:
+        conditions.eventually {
+            assert numOfSyncs.get() == 2
+        }
+    }
+
+    def 'registers again and catches up when the notification search terminates'() {
+        given:
+        changeNotificationSync.start()
+        conditions.eventually { assert numOfSyncs.get() == 1 }
+
+        when:
+        listeners[0].notificationStopped(new LdapClientException('connection lost'))
+
+        then:
+        conditions.eventually {
+            assert listeners.size() == 2
+            assert numOfClosedClients.get() == 1
+            assert numOfSyncs.get() == 2
+        }
+
+        when: 'the stale listener is notified after its connection has been closed'
+        listeners[0].notificationStopped(new LdapClientException('connection closed'))
+        listeners[0].changeNotified('CN=changed')
+
+        then:
+        changeNotificationSync.running
+        listeners.size() == 2
+    }
+
+    def 'stops when a full sync is required'() {
+        given:
+        syncFailure = new InitialFullSyncRequiredException()
+
+        when:
+        changeNotificationSync.start()
+
+        then:
+        changeNotificationSync.awaitTermination(5, TimeUnit.SECONDS)
+        numOfClosedClients.get() == 1
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl
+
+import org.adsync4j.spi.BatchEntryProcessor
+import org.adsync4j.spi.LdapAttributeResolver
+import org.adsync4j.spi.LdapClient
+import org.adsync4j.testutils.TestUtils
+import spock.lang.Specification
+
+import static org.adsync4j.spi.BatchEntryProcessor.SyncType.FULL
+import static org.adsync4j.spi.BatchEntryProcessor.SyncType.INCREMENTAL
+
+class DNResolverSpec extends Specification {
+
+    static final String ROOT_DN = 'DC=example'
+    static final List<String> LOOKUP_ATTRIBUTES = ['distinguishedName', 'objectGUID']
+
+    LdapClient ldapClient = Mock(LdapClient)
+    LdapAttributeResolver attributeResolver = [
+            getAsString: { it as String },
+            getAsByteArray: { TestUtils.uuidToBytArray(it) }
+    ] as LdapAttributeResolver
+
+    DNResolver resolver = new DNResolver(ldapClient, ROOT_DN, 3)
+
+    def setup() {
+        ldapClient.getAttributeResolver() >> attributeResolver
+    }
+
+    def 'names missing from the cache are looked up with one search per batch'() {
+        given:
+        def dns = (1..DNResolver.LOOKUP_BATCH_SIZE + 1).collect { "CN=user$it,$ROOT_DN" as String }
+        def ids = dns.collectEntries { [(it): UUID.randomUUID()] }
+        resolver = new DNResolver(ldapClient, ROOT_DN, 1000)
+
+        when:
+        def resolved = resolver.resolveAll(dns)
+
+        then:
+        1 * ldapClient.search(ROOT_DN, { it.startsWith('(|(distinguishedName=CN=user1,') }, LOOKUP_ATTRIBUTES) >>
+                dns[0..<DNResolver.LOOKUP_BATCH_SIZE].collect { [it.toUpperCase(), ids[it]] as Object[] }
+        1 * ldapClient.search(ROOT_DN, "(|(distinguishedName=${dns[-1]}))", _) >> [[dns[-1], ids[dns[-1]]] as Object[]]
+
+        and:
+        resolved == ids
+
+        when: 'the names are resolved again'
+        resolved = resolver.resolveAll(dns)
+
+        then: 'they are served from the cache'
+        0 * ldapClient.search(*_)
+        resolved == ids
+    }
+
+    def 'unknown names are omitted and not cached'() {
+        when:
+        def id = resolver.resolve('CN=missing')
+
+        then:
+        1 * ldapClient.search(*_) >> []
+        id == null
+        resolver.size() == 0
+    }
+
+    def 'the least recently used names are discarded when the cache is full'() {
+        given:
+        def lookedUp = []
+        ldapClient.search(*_) >> { baseDN, String filter, attributes ->
+            def dn = filter.find(/distinguishedName=([^)]*)/) { all, dn -> dn }
+            lookedUp << dn
+            [[dn, UUID.nameUUIDFromBytes(dn.bytes)] as Object[]]
+        }
+
+        when:
+        ['CN=1', 'CN=2', 'CN=3'].each { resolver.resolve(it) }
+        resolver.resolve('CN=1')
+        resolver.resolve('CN=4')
+        resolver.resolve('CN=1')
+        resolver.resolve('CN=3')
+        resolver.resolve('CN=2')
+
+        then: 'CN=2 has been discarded, so it is looked up again, while CN=1 and CN=3 are served from the cache'
+        lookedUp == ['CN=1', 'CN=2', 'CN=3', 'CN=4', 'CN=2']
+        resolver.size() == 3
+    }
+
+    def 'changed and deleted entries are evicted, and a full sync clears the cache'() {
+        given:
+        def (renamedId, deletedId, otherId) = [UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()]
+        ldapClient.search(*_) >> [['CN=renamed', renamedId] as Object[], ['CN=deleted', deletedId] as Object[],
+                                  ['CN=other', otherId] as Object[]]
+        resolver.resolveAll(['CN=renamed', 'CN=deleted', 'CN=other'])
+        BatchEntryProcessor delegate = Mock(BatchEntryProcessor)
+        def entryProcessor = resolver.evictingEntryProcessor(delegate, 1)
+
+        when:
+        entryProcessor.beginSync(INCREMENTAL, 1)
+        entryProcessor.processChangedEntries([['CN=newName', renamedId]])
+        entryProcessor.processDeletedEntries([deletedId])
+
+        then:
+        1 * delegate.processChangedEntries([['CN=newName', renamedId]])
+        1 * delegate.processDeletedEntries([deletedId])
+        resolver.size() == 1
+
+        when:
+        entryProcessor.beginSync(FULL, 2)
+
+        then:
+        1 * delegate.beginSync(FULL, 2)
+        resolver.size() == 0
+    }
+
+    def 'special characters of names are escaped in the lookup filter'() {
+        expect:
+        DNResolver.getDistinguishedNameFilter(['CN=a\\,b(c)*', 'CN=d']) ==
+                '(|(distinguishedName=CN=a\\5c,b\\28c\\29\\2a)(distinguishedName=CN=d))'
+    }
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl
+
+import org.adsync4j.api.BatchActiveDirectorySyncService
+import org.adsync4j.api.InitialFullSyncRequiredException
+import org.adsync4j.spi.BatchEntryProcessor
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS
+
+class SyncOrchestratorSpec extends Specification {
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    BatchEntryProcessor entryProcessor = Mock(BatchEntryProcessor)
+    SyncOrchestrator orchestrator = new SyncOrchestrator(2)
+
+    def cleanup() {
+        orchestrator.shutdown()
+        assert orchestrator.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def 'a full sync is performed when an incremental sync requires one'() {
+        given:
+        List<String> syncs = [].asSynchronized()
+        def syncService = [
+                incrementalSyncInBatches: {
+                    syncs << 'incremental'
+                    if (syncs.size() == 1) {
+                        throw new InitialFullSyncRequiredException()
+                    }
+                    0L
+                },
+                fullSyncInBatches: { syncs << 'full'; 0L }
+        ] as BatchActiveDirectorySyncService
+
+        when:
+        orchestrator.register('domain', 'dc1', syncService, entryProcessor, 10, MILLISECONDS)
+
+        then:
+        conditions.eventually {
+            assert syncs.size() >= 3
+            assert syncs[0..2] == ['incremental', 'full', 'incremental']
+        }
+    }
+
+    def 'a domain is rescheduled even if its sync throws an Error'() {
+        given:
+        def numOfSyncs = new AtomicInteger()
+        def syncService = [incrementalSyncInBatches: {
+            if (numOfSyncs.incrementAndGet() == 1) {
+                throw new Error('simulated failure')
+            }
+            0L
+        }] as BatchActiveDirectorySyncService
+
+        when:
+        orchestrator.register('domain', 'dc1', syncService, entryProcessor, 10, MILLISECONDS)
+
+        then:
+        conditions.eventually {
+            assert numOfSyncs.get() >= 3
+        }
+    }
+
+    def 'at most the given number of syncs run against the same domain controller'() {
+        given:
+        orchestrator = new SyncOrchestrator(3)
+        orchestrator.maxConcurrentSyncsPerDC = 1
+        def runningSyncs = [dc1: new AtomicInteger(), dc2: new AtomicInteger()]
+        def maxRunningSyncs = [dc1: new AtomicInteger(), dc2: new AtomicInteger()]
+        def numOfSyncs = new AtomicInteger()
+        def syncServiceOf = { String dc ->
+            [incrementalSyncInBatches: {
+                def running = runningSyncs[dc].incrementAndGet()
+                maxRunningSyncs[dc].set(Math.max(maxRunningSyncs[dc].get(), running))
+                Thread.sleep(20)
+                runningSyncs[dc].decrementAndGet()
+                numOfSyncs.incrementAndGet()
+                0L
+            }] as BatchActiveDirectorySyncService
+        }
+
+        when:
+        (1..3).each { orchestrator.register("a$it", 'dc1', syncServiceOf('dc1'), entryProcessor, 1, MILLISECONDS) }
+        orchestrator.register('b', 'dc2', syncServiceOf('dc2'), entryProcessor, 1, MILLISECONDS)
+
+        then:
+        conditions.eventually {
+            assert numOfSyncs.get() >= 12
+        }
+        maxRunningSyncs.dc1.get() == 1
+        maxRunningSyncs.dc2.get() == 1
+    }
+
+    def 'a long sync of one domain does not starve the others'() {
+        given:
+        def longSyncStarted = new CountDownLatch(1)
+        def longSyncReleased = new CountDownLatch(1)
+        def hugeDomain = [incrementalSyncInBatches: {
+            longSyncStarted.countDown()
+            longSyncReleased.await()
+            0L
+        }] as BatchActiveDirectorySyncService
+        def numOfSmallDomainSyncs = [small1: new AtomicInteger(), small2: new AtomicInteger()]
+
+        when:
+        orchestrator.register('huge', 'dc1', hugeDomain, entryProcessor, 1, MILLISECONDS)
+        numOfSmallDomainSyncs.each { key, counter ->
+            def smallDomain = [incrementalSyncInBatches: { counter.incrementAndGet(); 0L }] as BatchActiveDirectorySyncService
+            orchestrator.register(key, 'dc1', smallDomain, entryProcessor, 1, MILLISECONDS)
+        }
+
+        then:
+        longSyncStarted.await(5, TimeUnit.SECONDS)
+        conditions.eventually {
+            assert numOfSmallDomainSyncs.small1.get() >= 5
+            assert numOfSmallDomainSyncs.small2.get() >= 5
+        }
+
+        cleanup:
+        longSyncReleased.countDown()
+    }
+
+    def 'the interval of an adaptive domain grows while it does not change, and shrinks when it changes'() {
+        given:
+        def domain = new SyncOrchestrator.Domain(
+                orchestrator, 'domain', 'dc1', Mock(BatchActiveDirectorySyncService), entryProcessor, 10, 80)
+
+        when:
+        def intervals = [1000L, 1000L, 1000L, 1000L, 1000L, 1001L, 1002L, 1003L, 1004L].collect {
+            domain.adaptInterval(it)
+            domain._interval
+        }
+
+        then:
+        intervals == [10L, 20L, 40L, 80L, 80L, 40L, 20L, 10L, 10L]
+    }
+
+    def 'probing incremental sync is used if the sync service supports it'() {
+        given:
+        ActiveDirectorySyncServiceImpl syncService = Mock(ActiveDirectorySyncServiceImpl)
+        def numOfSyncs = new AtomicInteger()
+
+        when:
+        orchestrator.register('domain', 'dc1', syncService, entryProcessor, 1, MILLISECONDS)
+        conditions.eventually {
+            assert numOfSyncs.get() > 1
+        }
+        orchestrator.shutdown()
+
+        then:
+        (2.._) * syncService.incrementalSyncIfChangedInBatches(entryProcessor) >> { numOfSyncs.incrementAndGet(); 1L }
+        0 * syncService.incrementalSyncInBatches(_)
+    }
+
+    def 'unregistered domains are not synced any more'() {
+        given:
+        def syncStarted = new CountDownLatch(1)
+        def syncReleased = new CountDownLatch(1)
+        def numOfSyncs = new AtomicInteger()
+        def syncService = [incrementalSyncInBatches: {
+            numOfSyncs.incrementAndGet()
+            syncStarted.countDown()
+            syncReleased.await()
+            0L
+        }] as BatchActiveDirectorySyncService
+        def numOfOtherDomainSyncs = new AtomicInteger()
+        def otherSyncService =
+                [incrementalSyncInBatches: { numOfOtherDomainSyncs.incrementAndGet(); 0L }] as BatchActiveDirectorySyncService
+
+        orchestrator.register('domain', 'dc1', syncService, entryProcessor, 1, MILLISECONDS)
+        orchestrator.register('other', 'dc2', otherSyncService, entryProcessor, 1, MILLISECONDS)
+        assert syncStarted.await(5, TimeUnit.SECONDS)
+
+        when: 'the domain is unregistered while its sync is in progress'
+        orchestrator.unregister('domain')
+        syncReleased.countDown()
+        def numOfOtherDomainSyncsAfterUnregistration = numOfOtherDomainSyncs.get()
+
+        then: 'the other domain keeps being synced with the same interval, but the unregistered one is not'
+        conditions.eventually {
+            assert numOfOtherDomainSyncs.get() >= numOfOtherDomainSyncsAfterUnregistration + 10
+        }
+        numOfSyncs.get() == 1
+        def numOfSyncsAfterUnregistration = numOfSyncs.get()
+
+        when:
+        orchestrator.register('domain', 'dc1', syncService, entryProcessor, 1, MILLISECONDS)
+
+        then: 'the key can be registered again'
+        conditions.eventually {
+            assert numOfSyncs.get() > numOfSyncsAfterUnregistration
+        }
+    }
+}
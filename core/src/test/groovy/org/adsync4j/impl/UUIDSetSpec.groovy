@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.impl
+
+import spock.lang.Specification
+
+class UUIDSetSpec extends Specification {
+
+    UUIDSet set = new UUIDSet()
+
+    def 'add() and remove() tell if the set has been modified'() {
+        given:
+        def id = UUID.randomUUID()
+
+        expect:
+        set.add(id)
+        !set.add(id)
+        set.contains(id)
+        set.size() == 1
+        set.remove(id)
+        !set.remove(id)
+        !set.contains(id)
+        set.isEmpty()
+    }
+
+    def 'the nil UUID is a valid element'() {
+        given:
+        def nil = new UUID(0, 0)
+
+        expect:
+        set.add(nil)
+        set.contains(nil)
+        set.toList() == [nil]
+        set.remove(nil)
+        set.isEmpty()
+    }
+
+    def 'elements survive growing the table and removing other elements'() {
+        given:
+        def ids = (1..1000).collect { new UUID(it, it * 31) }
+        ids.each { set.add(it) }
+
+        when:
+        (0..<ids.size()).each { i -> if (i % 3 == 0) set.remove(ids[i]) }
+
+        then:
+        set.size() == 666
+        (0..<ids.size()).every { i -> set.contains(ids[i]) == (i % 3 != 0) }
+        set.toList() as Set == (0..<ids.size()).findAll { it % 3 != 0 }.collect { ids[it] } as Set
+    }
+}
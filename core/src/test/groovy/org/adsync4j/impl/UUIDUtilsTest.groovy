@@ -19,4 +19,13 @@ class UUIDUtilsTest extends Specification {
         then:
         uuid.toString() == '00112233-4455-6677-8899-aabbccddeeff'
     }
+
+    def 'encoding is the inverse of decoding'() {
+        given:
+        def uuid = UUID.fromString('00112233-4455-6677-8899-aabbccddeeff')
+
+        expect:
+        UUIDUtils.uuidToBytes(uuid) == [0x33,0x22,0x11,0x00,0x55,0x44,0x77,0x66,0x88,0x99,0xaa,0xbb,0xcc,0xdd,0xee,0xff] as byte[]
+        UUIDUtils.bytesToUUID(UUIDUtils.uuidToBytes(uuid)) == uuid
+    }
 }
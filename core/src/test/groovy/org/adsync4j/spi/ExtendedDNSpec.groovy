@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.spi
+
+import org.adsync4j.impl.UUIDUtils
+import spock.lang.Specification
+
+class ExtendedDNSpec extends Specification {
+
+    static final UUID GUID = UUID.fromString('b7e48ebf-73b7-4a61-a9bb-5d8e1a7e2c1c')
+    static final String SID = 'S-1-5-21-1004336348-1177238915-682003330-1104'
+
+    def 'parses the string format'() {
+        when:
+        def extendedDN = new ExtendedDN().parse("<GUID=$GUID>;<SID=$SID>;CN=John,DC=example")
+
+        then:
+        extendedDN.hasGuid()
+        extendedDN.guid == GUID
+        extendedDN.sid == SID
+        extendedDN.DN == 'CN=John,DC=example'
+    }
+
+    def 'parses the hexadecimal format of the GUID as the bytes of objectGUID'() {
+        given:
+        def hexGuid = UUIDUtils.uuidToBytes(GUID).collect { String.format('%02x', it & 0xff) }.join()
+
+        when:
+        def extendedDN = new ExtendedDN().parse("<GUID=$hexGuid>;CN=Group,DC=example")
+
+        then:
+        extendedDN.guid == GUID
+        extendedDN.sid == null
+        extendedDN.DN == 'CN=Group,DC=example'
+    }
+
+    def 'accepts a plain DN'() {
+        when:
+        def extendedDN = new ExtendedDN().parse('CN=John,DC=example')
+
+        then:
+        !extendedDN.hasGuid()
+        extendedDN.guid == null
+        extendedDN.sid == null
+        extendedDN.DN == 'CN=John,DC=example'
+    }
+
+    def 'ignores components whose name is only a prefix of GUID or SID'() {
+        when:
+        def extendedDN = new ExtendedDN().parse("<G=$GUID>;<S=$SID>;<GUIDS=$GUID>;CN=John,DC=example")
+
+        then:
+        !extendedDN.hasGuid()
+        extendedDN.sid == null
+        extendedDN.DN == 'CN=John,DC=example'
+    }
+
+    def 'an instance can be reused'() {
+        given:
+        def extendedDN = new ExtendedDN()
+
+        when:
+        extendedDN.parse("<GUID=$GUID>;<SID=$SID>;CN=John,DC=example")
+        extendedDN.parse('CN=Jane,DC=example')
+
+        then:
+        !extendedDN.hasGuid()
+        extendedDN.sid == null
+        extendedDN.DN == 'CN=Jane,DC=example'
+    }
+
+    def 'rejects a malformed GUID'() {
+        when:
+        new ExtendedDN().parse(value)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        value << ['<GUID=1234>;CN=John', '<GUID=b7e48ebf-73b7-4a61-a9bb-5d8e1a7e2c1x>;CN=John', '<GUID=b7e48ebf;CN=John']
+    }
+}
@@ -16,6 +16,7 @@ package org.adsync4j.unboundid;
 import org.adsync4j.api.LdapClientException;
 
 import javax.annotation.Nonnull;
+import java.util.List;
 import java.util.UUID;
 
 public class UnboundIDLdapClientForTesting extends UnboundIDLdapClient {
@@ -37,4 +38,13 @@ public class UnboundIDLdapClientForTesting extends UnboundIDLdapClient {
     public Iterable<UUID> searchDeleted(String rootDN, String filter) throws LdapClientException {
         return super.searchDeleted(DELETED_OBJECTS_CONTAINER_RDN + rootDN, filter);
     }
+
+    /**
+     * See {@link UnboundIDLdapClientForTesting#searchDeleted(String, String)}.
+     */
+    @Nonnull
+    @Override
+    public Iterable<List<UUID>> searchDeletedPages(String rootDN, String filter) throws LdapClientException {
+        return super.searchDeletedPages(DELETED_OBJECTS_CONTAINER_RDN + rootDN, filter);
+    }
 }
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link AttributeDecodingPlan} with looking up each requested attribute of a search result entry by name (which
+ * is how entries were mapped to attribute arrays before the plan was introduced).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AttributeDecodingBenchmark {
+
+    @Param({"5", "30", "60"})
+    public int numOfAttributes;
+
+    private List<String> _requestedAttributes;
+    private SearchResultEntry _entry;
+    private AttributeDecodingPlan _plan;
+    private Attribute[] _result;
+
+    @Setup
+    public void setup() {
+        _requestedAttributes = new ArrayList<>(numOfAttributes);
+        List<Attribute> returnedAttributes = new ArrayList<>(numOfAttributes);
+        for (int i = 0; i < numOfAttributes; i++) {
+            // the server is expected to return names in a different case than requested (e.g. objectguid vs. objectGUID)
+            _requestedAttributes.add("attribute" + i);
+            if (i % 5 != 0) {
+                returnedAttributes.add(new Attribute("Attribute" + i, "value" + i));
+            }
+        }
+        _entry = new SearchResultEntry("CN=entry,DC=example,DC=com", returnedAttributes);
+        _plan = new AttributeDecodingPlan(_requestedAttributes);
+        _result = new Attribute[numOfAttributes];
+    }
+
+    @Benchmark
+    public Attribute[] lookupByName() {
+        Attribute[] result = new Attribute[numOfAttributes];
+        for (int i = 0; i < numOfAttributes; i++) {
+            result[i] = _entry.getAttribute(_requestedAttributes.get(i));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Attribute[] decodingPlan() {
+        return _plan.decode(_entry);
+    }
+
+    @Benchmark
+    public Attribute[] decodingPlanWithReusedArray() {
+        return _plan.decode(_entry, _result);
+    }
+}
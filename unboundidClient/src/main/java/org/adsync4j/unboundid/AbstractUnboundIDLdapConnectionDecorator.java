@@ -25,6 +25,16 @@ abstract public class AbstractUnboundIDLdapConnectionDecorator implements Unboun
         _delegateConnection = delegateConnection;
     }
 
+    /**
+     * Returns the connection to delegate to. Invoked by every delegating method except {@code close()}, {@code reconnect()}
+     * and {@code isConnected()}, so that subclasses can reject operations by overriding it.
+     *
+     * @throws LDAPSearchException if the operation must not be delegated.
+     */
+    protected LDAPInterface getDelegateConnection() throws LDAPSearchException {
+        return _delegateConnection;
+    }
+
     // region delegating methods of LDAPConnection exposed by UnboundIDLdapConnection
     @Override
     public void close() {
@@ -52,152 +62,170 @@ abstract public class AbstractUnboundIDLdapConnectionDecorator implements Unboun
             throw new UnsupportedOperationException();
         }
     }
+
+    @Override
+    public AsyncRequestID asyncSearch(SearchRequest searchRequest) throws LDAPException {
+        LDAPInterface delegateConnection = getDelegateConnection();
+        if (delegateConnection instanceof LDAPConnection) {
+            return ((LDAPConnection) delegateConnection).asyncSearch(searchRequest);
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
     // endregion
 
     // region delegating methods of LDAPInterface
     @Override
-    public RootDSE getRootDSE() throws LDAPException {return _delegateConnection.getRootDSE();}
+    public RootDSE getRootDSE() throws LDAPException {return getDelegateConnection().getRootDSE();}
 
     @Override
-    public Schema getSchema() throws LDAPException {return _delegateConnection.getSchema();}
+    public Schema getSchema() throws LDAPException {return getDelegateConnection().getSchema();}
 
     @Override
-    public Schema getSchema(String entryDN) throws LDAPException {return _delegateConnection.getSchema(entryDN);}
+    public Schema getSchema(String entryDN) throws LDAPException {return getDelegateConnection().getSchema(entryDN);}
 
     @Override
-    public SearchResultEntry getEntry(String dn) throws LDAPException {return _delegateConnection.getEntry(dn);}
+    public SearchResultEntry getEntry(String dn) throws LDAPException {return getDelegateConnection().getEntry(dn);}
 
     @Override
     public SearchResultEntry getEntry(String dn, String... attributes) throws LDAPException {
-        return _delegateConnection.getEntry(dn, attributes);
+        return getDelegateConnection().getEntry(dn, attributes);
     }
 
     @Override
     public LDAPResult add(String dn, Attribute... attributes) throws LDAPException {
-        return _delegateConnection.add(dn, attributes);
+        return getDelegateConnection().add(dn, attributes);
     }
 
     @Override
     public LDAPResult add(String dn, Collection<Attribute> attributes) throws LDAPException {
-        return _delegateConnection.add(dn, attributes);
+        return getDelegateConnection().add(dn, attributes);
     }
 
     @Override
-    public LDAPResult add(Entry entry) throws LDAPException {return _delegateConnection.add(entry);}
+    public LDAPResult add(Entry entry) throws LDAPException {return getDelegateConnection().add(entry);}
 
     @Override
-    public LDAPResult add(String... ldifLines) throws LDIFException, LDAPException {return _delegateConnection.add(ldifLines);}
+    public LDAPResult add(String... ldifLines) throws LDIFException, LDAPException {
+        return getDelegateConnection().add(ldifLines);
+    }
 
     @Override
-    public LDAPResult add(AddRequest addRequest) throws LDAPException {return _delegateConnection.add(addRequest);}
+    public LDAPResult add(AddRequest addRequest) throws LDAPException {return getDelegateConnection().add(addRequest);}
 
     @Override
-    public LDAPResult add(ReadOnlyAddRequest addRequest) throws LDAPException {return _delegateConnection.add(addRequest);}
+    public LDAPResult add(ReadOnlyAddRequest addRequest) throws LDAPException {return getDelegateConnection().add(addRequest);}
 
     @Override
     public CompareResult compare(String dn, String attributeName, String assertionValue) throws LDAPException {
-        return _delegateConnection.compare(dn, attributeName, assertionValue);
+        return getDelegateConnection().compare(dn, attributeName, assertionValue);
     }
 
     @Override
     public CompareResult compare(CompareRequest compareRequest) throws LDAPException {
-        return _delegateConnection.compare(compareRequest);
+        return getDelegateConnection().compare(compareRequest);
     }
 
     @Override
     public CompareResult compare(ReadOnlyCompareRequest compareRequest) throws LDAPException {
-        return _delegateConnection.compare(compareRequest);
+        return getDelegateConnection().compare(compareRequest);
     }
 
     @Override
-    public LDAPResult delete(String dn) throws LDAPException {return _delegateConnection.delete(dn);}
+    public LDAPResult delete(String dn) throws LDAPException {return getDelegateConnection().delete(dn);}
 
     @Override
-    public LDAPResult delete(DeleteRequest deleteRequest) throws LDAPException {return _delegateConnection.delete(deleteRequest);}
+    public LDAPResult delete(DeleteRequest deleteRequest) throws LDAPException {
+        return getDelegateConnection().delete(deleteRequest);
+    }
 
     @Override
     public LDAPResult delete(ReadOnlyDeleteRequest deleteRequest) throws LDAPException {
-        return _delegateConnection.delete(deleteRequest);
+        return getDelegateConnection().delete(deleteRequest);
     }
 
     @Override
-    public LDAPResult modify(String dn, Modification mod) throws LDAPException {return _delegateConnection.modify(dn, mod);}
+    public LDAPResult modify(String dn, Modification mod) throws LDAPException {return getDelegateConnection().modify(dn, mod);}
 
     @Override
-    public LDAPResult modify(String dn, Modification... mods) throws LDAPException {return _delegateConnection.modify(dn, mods);}
+    public LDAPResult modify(String dn, Modification... mods) throws LDAPException {
+        return getDelegateConnection().modify(dn, mods);
+    }
 
     @Override
     public LDAPResult modify(String dn, List<Modification> mods) throws LDAPException {
-        return _delegateConnection.modify(dn, mods);
+        return getDelegateConnection().modify(dn, mods);
     }
 
     @Override
     public LDAPResult modify(String... ldifModificationLines) throws LDIFException, LDAPException {
-        return _delegateConnection.modify(ldifModificationLines);
+        return getDelegateConnection().modify(ldifModificationLines);
     }
 
     @Override
-    public LDAPResult modify(ModifyRequest modifyRequest) throws LDAPException {return _delegateConnection.modify(modifyRequest);}
+    public LDAPResult modify(ModifyRequest modifyRequest) throws LDAPException {
+        return getDelegateConnection().modify(modifyRequest);
+    }
 
     @Override
     public LDAPResult modify(ReadOnlyModifyRequest modifyRequest) throws LDAPException {
-        return _delegateConnection.modify(modifyRequest);
+        return getDelegateConnection().modify(modifyRequest);
     }
 
     @Override
     public LDAPResult modifyDN(String dn, String newRDN, boolean deleteOldRDN) throws LDAPException {
-        return _delegateConnection.modifyDN(dn, newRDN, deleteOldRDN);
+        return getDelegateConnection().modifyDN(dn, newRDN, deleteOldRDN);
     }
 
     @Override
     public LDAPResult modifyDN(String dn, String newRDN, boolean deleteOldRDN, String newSuperiorDN) throws LDAPException {
-        return _delegateConnection.modifyDN(dn, newRDN, deleteOldRDN, newSuperiorDN);
+        return getDelegateConnection().modifyDN(dn, newRDN, deleteOldRDN, newSuperiorDN);
     }
 
     @Override
     public LDAPResult modifyDN(ModifyDNRequest modifyDNRequest) throws LDAPException {
-        return _delegateConnection.modifyDN(modifyDNRequest);
+        return getDelegateConnection().modifyDN(modifyDNRequest);
     }
 
     @Override
     public LDAPResult modifyDN(ReadOnlyModifyDNRequest modifyDNRequest) throws LDAPException {
-        return _delegateConnection.modifyDN(modifyDNRequest);
+        return getDelegateConnection().modifyDN(modifyDNRequest);
     }
 
     @Override
     public SearchResult search(
             String baseDN, SearchScope scope, String filter, String... attributes) throws LDAPSearchException
-    {return _delegateConnection.search(baseDN, scope, filter, attributes);}
+    {return getDelegateConnection().search(baseDN, scope, filter, attributes);}
 
     @Override
     public SearchResult search(
             String baseDN, SearchScope scope, Filter filter,
             String... attributes) throws LDAPSearchException
-    {return _delegateConnection.search(baseDN, scope, filter, attributes);}
+    {return getDelegateConnection().search(baseDN, scope, filter, attributes);}
 
     @Override
     public SearchResult search(
             SearchResultListener searchResultListener, String baseDN,
             SearchScope scope, String filter, String... attributes) throws LDAPSearchException
-    {return _delegateConnection.search(searchResultListener, baseDN, scope, filter, attributes);}
+    {return getDelegateConnection().search(searchResultListener, baseDN, scope, filter, attributes);}
 
     @Override
     public SearchResult search(
             SearchResultListener searchResultListener, String baseDN,
             SearchScope scope, Filter filter, String... attributes) throws LDAPSearchException
-    {return _delegateConnection.search(searchResultListener, baseDN, scope, filter, attributes);}
+    {return getDelegateConnection().search(searchResultListener, baseDN, scope, filter, attributes);}
 
     @Override
     public SearchResult search(
             String baseDN, SearchScope scope, DereferencePolicy derefPolicy,
             int sizeLimit, int timeLimit, boolean typesOnly, String filter, String... attributes) throws LDAPSearchException
-    {return _delegateConnection.search(baseDN, scope, derefPolicy, sizeLimit, timeLimit, typesOnly, filter, attributes);}
+    {return getDelegateConnection().search(baseDN, scope, derefPolicy, sizeLimit, timeLimit, typesOnly, filter, attributes);}
 
     @Override
     public SearchResult search(
             String baseDN, SearchScope scope, DereferencePolicy derefPolicy,
             int sizeLimit, int timeLimit, boolean typesOnly, Filter filter, String... attributes) throws LDAPSearchException
-    {return _delegateConnection.search(baseDN, scope, derefPolicy, sizeLimit, timeLimit, typesOnly, filter, attributes);}
+    {return getDelegateConnection().search(baseDN, scope, derefPolicy, sizeLimit, timeLimit, typesOnly, filter, attributes);}
 
     @Override
     public SearchResult search(
@@ -205,7 +233,7 @@ abstract public class AbstractUnboundIDLdapConnectionDecorator implements Unboun
             SearchScope scope, DereferencePolicy derefPolicy, int sizeLimit,
             int timeLimit, boolean typesOnly, String filter, String... attributes) throws LDAPSearchException
     {
-        return _delegateConnection
+        return getDelegateConnection()
                 .search(searchResultListener, baseDN, scope, derefPolicy, sizeLimit, timeLimit, typesOnly, filter, attributes);
     }
 
@@ -215,51 +243,51 @@ abstract public class AbstractUnboundIDLdapConnectionDecorator implements Unboun
             SearchScope scope, DereferencePolicy derefPolicy, int sizeLimit,
             int timeLimit, boolean typesOnly, Filter filter, String... attributes) throws LDAPSearchException
     {
-        return _delegateConnection
+        return getDelegateConnection()
                 .search(searchResultListener, baseDN, scope, derefPolicy, sizeLimit, timeLimit, typesOnly, filter, attributes);
     }
 
     @Override
     public SearchResult search(SearchRequest searchRequest) throws LDAPSearchException {
-        return _delegateConnection.search(searchRequest);
+        return getDelegateConnection().search(searchRequest);
     }
 
     @Override
     public SearchResult search(ReadOnlySearchRequest searchRequest) throws LDAPSearchException {
-        return _delegateConnection.search(searchRequest);
+        return getDelegateConnection().search(searchRequest);
     }
 
     @Override
     public SearchResultEntry searchForEntry(
             String baseDN, SearchScope scope, String filter, String... attributes) throws LDAPSearchException
-    {return _delegateConnection.searchForEntry(baseDN, scope, filter, attributes);}
+    {return getDelegateConnection().searchForEntry(baseDN, scope, filter, attributes);}
 
     @Override
     public SearchResultEntry searchForEntry(
             String baseDN, SearchScope scope, Filter filter,
             String... attributes) throws LDAPSearchException
-    {return _delegateConnection.searchForEntry(baseDN, scope, filter, attributes);}
+    {return getDelegateConnection().searchForEntry(baseDN, scope, filter, attributes);}
 
     @Override
     public SearchResultEntry searchForEntry(
             String baseDN, SearchScope scope, DereferencePolicy derefPolicy,
             int timeLimit, boolean typesOnly, String filter, String... attributes) throws LDAPSearchException
-    {return _delegateConnection.searchForEntry(baseDN, scope, derefPolicy, timeLimit, typesOnly, filter, attributes);}
+    {return getDelegateConnection().searchForEntry(baseDN, scope, derefPolicy, timeLimit, typesOnly, filter, attributes);}
 
     @Override
     public SearchResultEntry searchForEntry(
             String baseDN, SearchScope scope, DereferencePolicy derefPolicy,
             int timeLimit, boolean typesOnly, Filter filter, String... attributes) throws LDAPSearchException
-    {return _delegateConnection.searchForEntry(baseDN, scope, derefPolicy, timeLimit, typesOnly, filter, attributes);}
+    {return getDelegateConnection().searchForEntry(baseDN, scope, derefPolicy, timeLimit, typesOnly, filter, attributes);}
 
     @Override
     public SearchResultEntry searchForEntry(SearchRequest searchRequest) throws LDAPSearchException {
-        return _delegateConnection.searchForEntry(searchRequest);
+        return getDelegateConnection().searchForEntry(searchRequest);
     }
 
     @Override
     public SearchResultEntry searchForEntry(ReadOnlySearchRequest searchRequest) throws LDAPSearchException {
-        return _delegateConnection.searchForEntry(searchRequest);
+        return getDelegateConnection().searchForEntry(searchRequest);
     }
     // endregion
 }
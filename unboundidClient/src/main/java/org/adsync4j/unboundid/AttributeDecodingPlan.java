@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps the attributes of search result entries to the positions of an attribute array determined by the list of requested
+ * attribute names. It's built once per search, and walks the attributes of each entry only once, as opposed to looking up
+ * each requested attribute by name (which would have to normalize the case of every name for every entry).
+ * <p/>
+ * Attribute names are matched case-insensitively (including options, e.g. {@code userCertificate;binary}). Attributes returned
+ * with a range option (e.g. {@code member;range=0-1499}, see {@link RangedAttributeValueIterator}) are mapped to the position
+ * of the attribute requested without it. The spelling the
+ * server actually uses is cached after the first case-insensitive match, so in the steady state mapping an attribute to its
+ * position is a single hash lookup on a string that has its hash code already computed.
+ */
+@NotThreadSafe
+class AttributeDecodingPlan {
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    /**
+     * Maximum number of server side attribute names to cache per requested attribute. Prevents the cache from growing
+     * unboundedly in the unlikely case the server returns varying attribute names (e.g. with different options).
+     */
+    private static final int MAX_CACHED_NAMES_PER_ATTRIBUTE = 4;
+
+    private final int _numOfAttributes;
+    private final Map<String, int[]> _positionsByLowerCaseName = new HashMap<>();
+    private final Map<String, int[]> _positionsByReturnedName = new HashMap<>();
+
+    /**
+     * @param attributes Names of the requested attributes. Determines the number and order of attributes in the decoded arrays.
+     */
+    AttributeDecodingPlan(List<String> attributes) {
+        _numOfAttributes = attributes.size();
+        for (int i = 0; i < _numOfAttributes; i++) {
+            String lowerCaseName = attributes.get(i).toLowerCase(Locale.ENGLISH);
+            int[] positions = _positionsByLowerCaseName.get(lowerCaseName);
+            positions = positions == null ? new int[]{i} : append(positions, i);
+            _positionsByLowerCaseName.put(lowerCaseName, positions);
+        }
+    }
+
+    private static int[] append(int[] array, int element) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = element;
+        return result;
+    }
+
+    /**
+     * @return The number of requested attributes, which is the length of the decoded attribute arrays.
+     */
+    int size() {
+        return _numOfAttributes;
+    }
+
+    /**
+     * @return A new array of attributes filled by {@link AttributeDecodingPlan#decode(SearchResultEntry, Attribute[])
+     *         decode()}.
+     */
+    Attribute[] decode(SearchResultEntry resultEntry) {
+        return decode(resultEntry, new Attribute[_numOfAttributes]);
+    }
+
+    /**
+     * Fills the provided array with the attributes of the search result entry, each placed at the position of the requested
+     * attribute name it matches. Positions of requested attributes missing from the entry are set to {@code null}.
+     *
+     * @return The provided array.
+     */
+    Attribute[] decode(SearchResultEntry resultEntry, Attribute[] result) {
+        Arrays.fill(result, null);
+        for (Attribute attribute : resultEntry.getAttributes()) {
+            for (int position : getPositions(attribute.getName())) {
+                result[position] = attribute;
+            }
+        }
+        return result;
+    }
+
+    private int[] getPositions(String returnedName) {
+        int[] positions = _positionsByReturnedName.get(returnedName);
+        if (positions == null) {
+            positions = _positionsByLowerCaseName.get(returnedName.toLowerCase(Locale.ENGLISH));
+            if (positions == null && RangedAttributeValueIterator.indexOfRangeOption(returnedName) >= 0) {
+                String nameWithoutRange = RangedAttributeValueIterator.withoutRangeOption(returnedName);
+                positions = _positionsByLowerCaseName.get(nameWithoutRange.toLowerCase(Locale.ENGLISH));
+            }
+            if (positions == null) {
+                positions = NO_POSITIONS;
+            }
+            if (_positionsByReturnedName.size() < (_numOfAttributes + 1) * MAX_CACHED_NAMES_PER_ATTRIBUTE) {
+                _positionsByReturnedName.put(returnedName, positions);
+            }
+        }
+        return positions;
+    }
+}
@@ -49,6 +49,8 @@ public class DefaultUnboundIDConnectionFactory<DCA_KEY> implements PagingUnbound
     @Nullable
     private LDAPConnectionOptions _ldapConnectionOptions;
 
+    private int _prefetchDepth = 0;
+
     /**
      * Creates a connection factory that uses the URL stored in the {@link DomainControllerAffiliation} record loaded from the
      * provided repository using the specified key. The user credentials in the DCA will be ignored in favor of the values
@@ -92,7 +94,9 @@ public class DefaultUnboundIDConnectionFactory<DCA_KEY> implements PagingUnbound
         try {
             LOG.debug("Opening LDAP connection to ldap://{}:{}, and binding with user: {}", _host, _port, _bindUser);
             LDAPConnection connection = new LDAPConnection(_ldapConnectionOptions, _host, _port, _bindUser, _bindPassword);
-            return new PagingLdapConnectionImpl(connection);
+            PagingLdapConnectionImpl pagingConnection = new PagingLdapConnectionImpl(connection);
+            pagingConnection.setPrefetchDepth(_prefetchDepth);
+            return pagingConnection;
         } catch (LDAPException e) {
             throw new LdapClientException(e);
         }
@@ -124,4 +128,12 @@ public class DefaultUnboundIDConnectionFactory<DCA_KEY> implements PagingUnbound
     public void setLdapConnectionOptions(@Nullable LDAPConnectionOptions ldapConnectionOptions) {
         _ldapConnectionOptions = ldapConnectionOptions;
     }
+
+    /**
+     * @param prefetchDepth The number of result pages the created connections are allowed to fetch ahead of the caller,
+     *                      or zero (the default) to disable prefetching. See {@link PagingLdapConnectionImpl#setPrefetchDepth}.
+     */
+    public void setPrefetchDepth(int prefetchDepth) {
+        _prefetchDepth = prefetchDepth;
+    }
 }
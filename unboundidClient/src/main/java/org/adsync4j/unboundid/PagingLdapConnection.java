@@ -17,6 +17,8 @@ import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResultEntry;
 
+import java.util.List;
+
 /**
  * Interface that adds a paged search method to {@link UnboundIDLdapConnection}.
  */
@@ -36,4 +38,16 @@ public interface PagingLdapConnection extends UnboundIDLdapConnection {
      *
      */
     Iterable<SearchResultEntry> search(SearchRequest searchRequest, int pageSize) throws LDAPException;
+
+    /**
+     * Processes the provided search request the same way as {@link PagingLdapConnection#search(SearchRequest, int)} does,
+     * but exposes the boundaries of the pages returned by the server.
+     *
+     * @param searchRequest The search request to be processed.
+     * @param pageSize      Number of search result entries the server is allowed to return in a single page.
+     * @return An {@link Iterable} through which callers can iterate over the pages of the <b>entire</b> result set.
+     * @throws com.unboundid.ldap.sdk.LDAPException
+     *
+     */
+    Iterable<List<SearchResultEntry>> searchPages(SearchRequest searchRequest, int pageSize) throws LDAPException;
 }
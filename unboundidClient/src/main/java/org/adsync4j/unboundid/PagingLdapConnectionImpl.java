@@ -20,18 +20,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of {@link PagingLdapConnection} that is basically a decorator around {@link LDAPConnection} which can execute
  * paged search requests.
+ * <p/>
+ * Optionally, subsequent pages of a paged search can be fetched in the background while the current page is being processed
+ * (see {@link PagingLdapConnectionImpl#setPrefetchDepth setPrefetchDepth()}).
  */
 @ThreadSafe
 public class PagingLdapConnectionImpl extends AbstractUnboundIDLdapConnectionDecorator implements PagingLdapConnection {
 
     private final static Logger LOG = LoggerFactory.getLogger(PagingLdapConnectionImpl.class);
 
+    private final Set<PrefetchingPagingSearchIterator> _prefetchingIterators =
+            Collections.newSetFromMap(new ConcurrentHashMap<PrefetchingPagingSearchIterator, Boolean>());
+
+    private volatile int _prefetchDepth = 0;
+
     /**
      * Creates an instance that is able to execute paging search requests using the provided LDAP connection.
      *
@@ -50,18 +61,74 @@ public class PagingLdapConnectionImpl extends AbstractUnboundIDLdapConnectionDec
 
     @Override
     public Iterable<SearchResultEntry> search(final SearchRequest searchRequest, final int pageSize) throws LDAPException {
+        return Iterables.concat(searchPages(searchRequest, pageSize));
+    }
+
+    @Override
+    public Iterable<List<SearchResultEntry>> searchPages(final SearchRequest searchRequest, final int pageSize)
+            throws LDAPException
+    {
         searchRequest.replaceControl(new SimplePagedResultsControl(pageSize, null));
 
         LOG.debug("Requesting first page of results for search request: {}", searchRequest);
         final SearchResult firstPage = search(searchRequest);
 
-        Iterable<List<SearchResultEntry>> pages =
-                new Iterable<List<SearchResultEntry>>() {
-                    @Override
-                    public Iterator<List<SearchResultEntry>> iterator() {
-                        return new PagingSearchIterator(PagingLdapConnectionImpl.this, searchRequest, firstPage);
-                    }
-                };
-        return Iterables.concat(pages);
+        return new Iterable<List<SearchResultEntry>>() {
+            @Override
+            public Iterator<List<SearchResultEntry>> iterator() {
+                PagingSearchIterator pagingSearchIterator =
+                        new PagingSearchIterator(PagingLdapConnectionImpl.this, searchRequest, firstPage);
+                return _prefetchDepth > 0 ? prefetching(pagingSearchIterator) : pagingSearchIterator;
+            }
+        };
+    }
+
+    private Iterator<List<SearchResultEntry>> prefetching(PagingSearchIterator pagingSearchIterator) {
+        // forget about iterators that have already fetched all their pages
+        for (Iterator<PrefetchingPagingSearchIterator> it = _prefetchingIterators.iterator(); it.hasNext(); ) {
+            if (!it.next().isPrefetching()) {
+                it.remove();
+            }
+        }
+
+        PrefetchingPagingSearchIterator prefetchingIterator =
+                new PrefetchingPagingSearchIterator(pagingSearchIterator, _prefetchDepth);
+        _prefetchingIterators.add(prefetchingIterator);
+        return prefetchingIterator;
+    }
+
+    /**
+     * Cancels the background fetching of pages of any search that is still in progress, then closes the connection.
+     */
+    @Override
+    public void close() {
+        cancelPrefetching();
+        super.close();
+    }
+
+    /**
+     * Cancels the background fetching of pages of any search that is still in progress.
+     */
+    /*package*/ void cancelPrefetching() {
+        for (PrefetchingPagingSearchIterator prefetchingIterator : _prefetchingIterators) {
+            prefetchingIterator.cancel();
+        }
+        _prefetchingIterators.clear();
+    }
+
+    /**
+     * Enables or disables fetching result pages in the background. If enabled, the next page of a paged search is requested
+     * from the server on a background thread while the current page is being processed by the caller, so the server and the
+     * caller can work in parallel. Disabled by default.
+     *
+     * @param prefetchDepth The maximum number of pages that can be fetched ahead of the caller (and buffered in memory) per
+     *                      search, or zero to disable prefetching.
+     * @see PrefetchingPagingSearchIterator
+     */
+    public void setPrefetchDepth(int prefetchDepth) {
+        if (prefetchDepth < 0) {
+            throw new IllegalArgumentException("The prefetch depth must not be negative, got: " + prefetchDepth);
+        }
+        _prefetchDepth = prefetchDepth;
     }
 }
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid;
+
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPInterface;
+import com.unboundid.ldap.sdk.LDAPSearchException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link PagingLdapConnection} implementation wrapping a connection checked out from an {@link LDAPConnectionPool}. Closing
+ * it returns the connection to the pool instead of closing it, after which the instance reports itself as not connected and
+ * must not be used any more: every operation fails with an {@link LDAPException} from then on, since the connection may
+ * already have been checked out by someone else.
+ * <p/>
+ * A connection that has been used for an asynchronous search (like the one started by {@link
+ * UnboundIDLdapClient#registerChangeNotification}) is closed and replaced in the pool instead of being reused, because the
+ * search may still be outstanding on it.
+ */
+@ThreadSafe
+class PooledPagingLdapConnection extends PagingLdapConnectionImpl {
+
+    private final LDAPConnectionPool _pool;
+    private final LDAPConnection _connection;
+    private final AtomicBoolean _released = new AtomicBoolean();
+    private volatile boolean _hasAsyncSearch;
+
+    PooledPagingLdapConnection(LDAPConnectionPool pool, LDAPConnection connection) {
+        super(connection);
+        _pool = pool;
+        _connection = connection;
+    }
+
+    @Override
+    public AsyncRequestID asyncSearch(SearchRequest searchRequest) throws LDAPException {
+        _hasAsyncSearch = true;
+        return super.asyncSearch(searchRequest);
+    }
+
+    /**
+     * Cancels the background fetching of pages of any search that is still in progress, then returns the connection to the
+     * pool.
+     */
+    @Override
+    public void close() {
+        if (_released.compareAndSet(false, true)) {
+            cancelPrefetching();
+            if (_hasAsyncSearch || !_connection.isConnected()) {
+                _pool.releaseDefunctConnection(_connection);
+            } else {
+                _pool.releaseConnection(_connection);
+            }
+        }
+    }
+
+    @Override
+    protected LDAPInterface getDelegateConnection() throws LDAPSearchException {
+        if (_released.get()) {
+            throw new LDAPSearchException(ResultCode.LOCAL_ERROR, "The connection has already been returned to the pool.");
+        }
+        return super.getDelegateConnection();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return !_released.get() && _connection.isConnected();
+    }
+
+    /**
+     * Not supported, a new connection is to be checked out from the pool instead.
+     */
+    @Override
+    public void reconnect() throws LDAPException {
+        throw new UnsupportedOperationException("Pooled connections can't be reconnected.");
+    }
+}
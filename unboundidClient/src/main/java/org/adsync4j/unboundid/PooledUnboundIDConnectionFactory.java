@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid;
+
+import com.unboundid.ldap.sdk.*;
+import org.adsync4j.api.LdapClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection factory that checks out connections from an {@link LDAPConnectionPool}, so that consecutive synchronizations
+ * don't have to open and authenticate a new connection. Connections are returned to the pool when {@link
+ * UnboundIDLdapClient#closeConnection()} is called, which the synchronization service does at the end of each operation.
+ * <p/>
+ * A single instance should be shared by every {@link UnboundIDLdapClient} (or {@link UnboundIDLdapClientFactory}) that
+ * connects to the same domain controller, and should be {@link PooledUnboundIDConnectionFactory#close() closed} when not
+ * needed any more.
+ * <p/>
+ * The pool created by the convenience constructor is configured as follows (can be changed through {@link
+ * PooledUnboundIDConnectionFactory#getConnectionPool()}):
+ * <ul>
+ * <li>connections are checked by reading the root DSE in the background every {@link
+ * PooledUnboundIDConnectionFactory#DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS} milliseconds and after a failed operation; broken
+ * ones (e.g. dropped by the server after being idle for longer than its {@code MaxConnIdleTime}) are replaced</li>
+ * <li>connections older than {@link PooledUnboundIDConnectionFactory#DEFAULT_MAX_CONNECTION_AGE_MILLIS} milliseconds are
+ * replaced, so that idle connections are renewed before Active Directory's default 15 minutes idle timeout</li>
+ * </ul>
+ */
+@ThreadSafe
+public class PooledUnboundIDConnectionFactory implements PagingUnboundIDConnectionFactory {
+
+    private final static Logger LOG = LoggerFactory.getLogger(PooledUnboundIDConnectionFactory.class);
+
+    public static final long DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final long DEFAULT_MAX_CONNECTION_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final long HEALTH_CHECK_MAX_RESPONSE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final LDAPConnectionPool _connectionPool;
+
+    private volatile int _prefetchDepth = 0;
+
+    /**
+     * Creates a connection factory that uses the provided (fully configured) connection pool.
+     *
+     * @param connectionPool The pool to check out connections from.
+     */
+    public PooledUnboundIDConnectionFactory(LDAPConnectionPool connectionPool) {
+        _connectionPool = connectionPool;
+    }
+
+    /**
+     * Creates a connection factory with a pool of unsecured connections to the given server, opening one connection
+     * immediately.
+     *
+     * @param host                  The host name of the domain controller.
+     * @param port                  The port of the domain controller.
+     * @param bindUser              The user name to authenticate with.
+     * @param bindPassword          The password to use on authentication.
+     * @param maxConnections        The maximum number of connections kept in the pool.
+     * @param ldapConnectionOptions The options of the connections, or {@code null} to use the default options.
+     * @throws LdapClientException in case the first connection can not be established.
+     */
+    public PooledUnboundIDConnectionFactory(
+            String host, int port, String bindUser, String bindPassword, int maxConnections,
+            @Nullable LDAPConnectionOptions ldapConnectionOptions)
+            throws LdapClientException
+    {
+        this(createConnectionPool(host, port, bindUser, bindPassword, maxConnections, ldapConnectionOptions));
+    }
+
+    private static LDAPConnectionPool createConnectionPool(
+            String host, int port, String bindUser, String bindPassword, int maxConnections,
+            @Nullable LDAPConnectionOptions ldapConnectionOptions)
+            throws LdapClientException
+    {
+        try {
+            LOG.debug("Creating LDAP connection pool for ldap://{}:{} with user: {}", host, port, bindUser);
+            LDAPConnectionPool connectionPool = new LDAPConnectionPool(
+                    new SingleServerSet(host, port, ldapConnectionOptions),
+                    new SimpleBindRequest(bindUser, bindPassword),
+                    1, maxConnections);
+            connectionPool.setConnectionPoolName("adsync4j-" + host + ':' + port);
+            // read the root DSE in background checks and after exceptions
+            connectionPool.setHealthCheck(new GetEntryLDAPConnectionPoolHealthCheck(
+                    "", HEALTH_CHECK_MAX_RESPONSE_TIME_MILLIS, false, false, false, true, true));
+            connectionPool.setHealthCheckIntervalMillis(DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS);
+            connectionPool.setMaxConnectionAgeMillis(DEFAULT_MAX_CONNECTION_AGE_MILLIS);
+            return connectionPool;
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
+    /**
+     * Checks out a connection from the pool and wraps it in a {@link PagingLdapConnection} implementation that adds the
+     * paging search operation, and returns the connection to the pool when closed.
+     */
+    @Override
+    public PagingLdapConnection createConnection() throws LdapClientException {
+        try {
+            PooledPagingLdapConnection pagingConnection =
+                    new PooledPagingLdapConnection(_connectionPool, _connectionPool.getConnection());
+            pagingConnection.setPrefetchDepth(_prefetchDepth);
+            return pagingConnection;
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
+    public LDAPConnectionPool getConnectionPool() {
+        return _connectionPool;
+    }
+
+    /**
+     * @param prefetchDepth The number of result pages the connections are allowed to fetch ahead of the caller, or zero (the
+     *                      default) to disable prefetching. See {@link PagingLdapConnectionImpl#setPrefetchDepth}.
+     */
+    public void setPrefetchDepth(int prefetchDepth) {
+        _prefetchDepth = prefetchDepth;
+    }
+
+    /**
+     * Closes every connection of the pool.
+     */
+    public void close() {
+        _connectionPool.close();
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid;
+
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import org.adsync4j.api.LdapClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Iterator decorating another iterator of search result pages (typically a {@link PagingSearchIterator}) in a way that the
+ * next pages are fetched on a background thread while the current page is being processed by the consumer. This keeps both
+ * the LDAP server and the consumer busy, which can significantly reduce the overall time of a large search if the round-trip
+ * time to the server is high.
+ * <p/>
+ * Prefetched pages are stored in a bounded buffer, so the number of pages held in memory at any time is capped at
+ * {@code prefetchDepth + 2} (the buffered pages, the one being fetched, and the one being consumed). When the buffer is full,
+ * the background thread waits until the consumer takes a page.
+ * <p/>
+ * The background thread is started on construction. It terminates after it has fetched the last page, when fetching a page
+ * fails (in which case the exception is re-thrown to the consumer by {@link PrefetchingPagingSearchIterator#next next()}), or
+ * when {@link PrefetchingPagingSearchIterator#cancel()} is called. A consumer waiting for the next page when the iterator is
+ * cancelled gets a {@link CancellationException}.
+ */
+public class PrefetchingPagingSearchIterator implements Iterator<List<SearchResultEntry>> {
+
+    private final static Logger LOG = LoggerFactory.getLogger(PrefetchingPagingSearchIterator.class);
+
+    private final static Object END_OF_RESULTS = new Object();
+
+    private final BlockingQueue<Object> _prefetchedPages;
+    private final Thread _prefetchingThread;
+
+    /**
+     * The next element taken from the buffer but not yet returned to the consumer: a page, a {@link Throwable} that occurred
+     * when fetching a page (or the {@link CancellationException} signalling cancellation), or {@link
+     * PrefetchingPagingSearchIterator#END_OF_RESULTS END_OF_RESULTS}.
+     */
+    private Object _next;
+
+    /**
+     * @param pageIterator  The iterator to fetch pages from on the background thread.
+     * @param prefetchDepth The maximum number of pages that can be fetched ahead of the consumer.
+     */
+    public PrefetchingPagingSearchIterator(final Iterator<List<SearchResultEntry>> pageIterator, int prefetchDepth) {
+        if (prefetchDepth < 1) {
+            throw new IllegalArgumentException("The prefetch depth must be positive, got: " + prefetchDepth);
+        }
+
+        _prefetchedPages = new ArrayBlockingQueue<>(prefetchDepth);
+        _prefetchingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prefetch(pageIterator);
+            }
+        }, "adsync4j-page-prefetch");
+        _prefetchingThread.setDaemon(true);
+        _prefetchingThread.start();
+    }
+
+    private void prefetch(Iterator<List<SearchResultEntry>> pageIterator) {
+        try {
+            try {
+                while (pageIterator.hasNext()) {
+                    _prefetchedPages.put(pageIterator.next());
+                }
+                _prefetchedPages.put(END_OF_RESULTS);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable t) {
+                // errors have to be handed over as well, otherwise the consumer would wait for the next page forever
+                _prefetchedPages.put(t);
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("Prefetching search result pages has been cancelled.");
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (_next == null) {
+            _next = takeNextPrefetchedElement();
+        }
+        return _next != END_OF_RESULTS;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<SearchResultEntry> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Object next = _next;
+        if (next instanceof Throwable) {
+            // leave the exception in place, so that it's thrown again on subsequent calls
+            throw propagate((Throwable) next);
+        }
+
+        _next = null;
+        return (List<SearchResultEntry>) next;
+    }
+
+    private Object takeNextPrefetchedElement() {
+        try {
+            return _prefetchedPages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LdapClientException(e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new LdapClientException(t);
+    }
+
+    /**
+     * Stops the background thread (if it's still running) and releases the prefetched pages. A consumer that is waiting for
+     * the next page is woken up with a {@link CancellationException}.
+     */
+    public void cancel() {
+        _prefetchingThread.interrupt();
+        _prefetchedPages.clear();
+        _prefetchedPages.offer(new CancellationException("Prefetching search result pages has been cancelled."));
+    }
+
+    /*package*/ boolean isPrefetching() {
+        return _prefetchingThread.isAlive();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid;
+
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPInterface;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import org.adsync4j.api.LdapClientException;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the values of a multi-valued attribute using range retrieval.
+ * <p/>
+ * Active Directory returns at most {@code MaxValRange} (1500 or 5000 by default) values of a multi-valued attribute (like
+ * {@code member}) in one response. When an attribute has more values, it's returned with a range option (e.g. {@code
+ * member;range=0-1499}), and the rest of the values have to be requested range by range (e.g. {@code member;range=1500-*}),
+ * until a range with an upper bound of {@code *} is received. This iterator requests the next range only when the values of
+ * the current one are exhausted, so only one range is kept in memory at a time.
+ */
+@NotThreadSafe
+class RangedAttributeValueIterator implements Iterator<ASN1OctetString> {
+
+    private static final String RANGE_OPTION_PREFIX = "range=";
+    private static final String LAST_RANGE_UPPER_BOUND = "*";
+    private static final ASN1OctetString[] NO_VALUES = new ASN1OctetString[0];
+
+    private final LDAPInterface _connection;
+    private final String _entryDN;
+    private final String _attributeName;
+
+    private ASN1OctetString[] _values = NO_VALUES;
+    private int _index;
+    @Nullable
+    private String _nextRangeLowerBound;
+
+    /**
+     * Creates an iterator that retrieves every value of the attribute starting from the first range.
+     *
+     * @param attributeName Name of the attribute (without a range option).
+     */
+    RangedAttributeValueIterator(LDAPInterface connection, String entryDN, String attributeName) {
+        _connection = connection;
+        _entryDN = entryDN;
+        _attributeName = attributeName;
+        _nextRangeLowerBound = "0";
+    }
+
+    /**
+     * Creates an iterator that starts with the values of an already retrieved range, and retrieves the subsequent ones.
+     *
+     * @param firstRange Attribute with a range option as returned by the server.
+     */
+    RangedAttributeValueIterator(LDAPInterface connection, String entryDN, Attribute firstRange) {
+        _connection = connection;
+        _entryDN = entryDN;
+        _attributeName = withoutRangeOption(firstRange.getName());
+        setCurrentRange(firstRange);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (_index == _values.length && _nextRangeLowerBound != null) {
+            retrieveNextRange();
+        }
+        return _index < _values.length;
+    }
+
+    @Override
+    public ASN1OctetString next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return _values[_index++];
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void retrieveNextRange() {
+        String rangedAttributeName =
+                _attributeName + ';' + RANGE_OPTION_PREFIX + _nextRangeLowerBound + '-' + LAST_RANGE_UPPER_BOUND;
+        try {
+            SearchResultEntry entry = _connection.getEntry(_entryDN, rangedAttributeName);
+            Attribute range = entry == null ? null : findRange(entry);
+            if (range == null) {
+                _values = NO_VALUES;
+                _index = 0;
+                _nextRangeLowerBound = null;
+            } else {
+                setCurrentRange(range);
+            }
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
+    @Nullable
+    private Attribute findRange(SearchResultEntry entry) {
+        for (Attribute attribute : entry.getAttributes()) {
+            if (withoutRangeOption(attribute.getName()).equalsIgnoreCase(_attributeName)) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    private void setCurrentRange(Attribute range) {
+        _values = range.getRawValues();
+        _index = 0;
+        String upperBound = getRangeUpperBound(range.getName());
+        _nextRangeLowerBound = upperBound == null || LAST_RANGE_UPPER_BOUND.equals(upperBound)
+                ? null
+                : String.valueOf(Long.parseLong(upperBound) + 1);
+    }
+
+    /**
+     * Retrieves the rest of the values of an attribute that has been returned with a range option, and merges them into one
+     * attribute.
+     *
+     * @param firstRange Attribute with a range option as returned by the server.
+     * @return Attribute containing all values, named without the range option.
+     */
+    static Attribute retrieveAllValues(LDAPInterface connection, String entryDN, Attribute firstRange) {
+        List<ASN1OctetString> values = new ArrayList<>(firstRange.size() * 2);
+        for (Iterator<ASN1OctetString> it = new RangedAttributeValueIterator(connection, entryDN, firstRange); it.hasNext(); ) {
+            values.add(it.next());
+        }
+        return new Attribute(withoutRangeOption(firstRange.getName()), values.toArray(new ASN1OctetString[values.size()]));
+    }
+
+    /**
+     * @return True if the attribute has been returned with a range option that indicates that there are more values to
+     *         retrieve.
+     */
+    static boolean isIncomplete(Attribute attribute) {
+        String upperBound = getRangeUpperBound(attribute.getName());
+        return upperBound != null && !LAST_RANGE_UPPER_BOUND.equals(upperBound);
+    }
+
+    /**
+     * @return The provided attribute name without its range option (other options are retained).
+     */
+    static String withoutRangeOption(String attributeName) {
+        int start = indexOfRangeOption(attributeName);
+        if (start < 0) {
+            return attributeName;
+        }
+        int end = attributeName.indexOf(';', start + 1);
+        return end < 0
+                ? attributeName.substring(0, start)
+                : attributeName.substring(0, start) + attributeName.substring(end);
+    }
+
+    /**
+     * @return The upper bound of the range option of the given attribute name (a number or {@code *}), or {@code null} if
+     *         the name has no range option.
+     */
+    @Nullable
+    private static String getRangeUpperBound(String attributeName) {
+        String range = getRange(attributeName);
+        return range == null ? null : range.substring(range.indexOf('-') + 1);
+    }
+
+    /**
+     * @return The value of the range option of the given attribute name (e.g. {@code 0-1499}), or {@code null} if the name has
+     *         no range option.
+     */
+    @Nullable
+    static String getRange(String attributeName) {
+        int start = indexOfRangeOption(attributeName);
+        if (start < 0) {
+            return null;
+        }
+        int end = attributeName.indexOf(';', start + 1);
+        return attributeName.substring(start + 1 + RANGE_OPTION_PREFIX.length(), end < 0 ? attributeName.length() : end);
+    }
+
+    /**
+     * @return The position of the semicolon preceding the range option in the given attribute name, or -1 if there's none.
+     */
+    static int indexOfRangeOption(String attributeName) {
+        for (int i = attributeName.indexOf(';'); i >= 0; i = attributeName.indexOf(';', i + 1)) {
+            if (attributeName.regionMatches(true, i + 1, RANGE_OPTION_PREFIX, 0, RANGE_OPTION_PREFIX.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -15,32 +15,78 @@ package org.adsync4j.unboundid;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.unboundid.asn1.ASN1Integer;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
 import com.unboundid.ldap.sdk.*;
+import com.unboundid.ldap.sdk.experimental.ActiveDirectoryDirSyncControl;
 import org.adsync4j.api.LdapClientException;
+import org.adsync4j.spi.AttributeScopedQueryLdapClient;
+import org.adsync4j.spi.ChangeNotificationLdapClient;
+import org.adsync4j.spi.ChangeNotificationListener;
+import org.adsync4j.spi.DirSyncLdapClient;
+import org.adsync4j.spi.DirSyncResult;
+import org.adsync4j.spi.ExtendedDN;
+import org.adsync4j.spi.FlyweightLdapClient;
+import org.adsync4j.spi.IncrementalValuesDirSyncLdapClient;
 import org.adsync4j.spi.LdapAttributeResolver;
 import org.adsync4j.spi.LdapClient;
+import org.adsync4j.spi.MembershipDelta;
+import org.adsync4j.spi.PagingLdapClient;
+import org.adsync4j.spi.RootDSESnapshotLdapClient;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
 import static com.google.common.collect.Iterables.toArray;
+import static java.util.Arrays.asList;
 import static org.adsync4j.impl.UUIDUtils.bytesToUUID;
+import static org.adsync4j.impl.UUIDUtils.leastSignificantBits;
+import static org.adsync4j.impl.UUIDUtils.mostSignificantBits;
 
 /**
  * This implementation of the {@link LdapClient} interface uses the UnboundID LDAP SDK to communicate with Active Directory.
  * The LDAP connection used by this class ensures that all search operations are paged without any further effort from the
- * client's side.
+ * client's side. Search results can also be retrieved page by page through the methods of {@link PagingLdapClient}, and
+ * several root DSE attributes can be read in one request (see {@link RootDSESnapshotLdapClient}). Changes can also be
+ * tracked with the DirSync control of Active Directory (see {@link DirSyncLdapClient}, optionally with group membership
+ * deltas: {@link IncrementalValuesDirSyncLdapClient}), or watched with its change notification control (see {@link
+ * ChangeNotificationLdapClient}). Search results can also be pushed to a call-back object without materializing them (see
+ * {@link FlyweightLdapClient}), and the members of a group can be retrieved with one paged Attribute Scoped Query (see
+ * {@link AttributeScopedQueryLdapClient}).
+ * <p/>
+ * Multi-valued attributes that Active Directory returns only partially (with a range option, like {@code
+ * member;range=0-1499}) are transparently completed by retrieving the rest of their values range by range. The values of
+ * huge attributes can also be streamed with {@link UnboundIDLdapClient#getAttributeValues getAttributeValues()}.
  */
-public class UnboundIDLdapClient implements LdapClient<Attribute> {
+public class UnboundIDLdapClient implements
+        PagingLdapClient<Attribute>, RootDSESnapshotLdapClient<Attribute>, IncrementalValuesDirSyncLdapClient<Attribute>,
+        ChangeNotificationLdapClient<Attribute>, FlyweightLdapClient<Attribute>, AttributeScopedQueryLdapClient<Attribute> {
 
     private final static XLogger LOG = XLoggerFactory.getXLogger(UnboundIDLdapClient.class);
 
+    private static final String IS_DELETED = "isDeleted";
+
+    /**
+     * The range option under which a DirSync search with the incremental values flag returns the values removed from a linked
+     * attribute (added values are returned under {@code range=1-1}).
+     */
+    private static final String REMOVED_VALUES_RANGE = "0-0";
+
+    private static final int EXTENDED_DN_STRING_FORMAT = 1;
+
     private final PagingUnboundIDConnectionFactory _connectionFactory;
 
     private int _pageSize = DEFAULT_PAGE_SIZE;
+    private boolean _extendedDN;
     private PagingLdapConnection _connection;
 
     public UnboundIDLdapClient(PagingUnboundIDConnectionFactory connectionFactory) {
@@ -51,6 +97,16 @@ public class UnboundIDLdapClient implements LdapClient<Attribute> {
         _pageSize = pageSize;
     }
 
+    /**
+     * If set to {@code true}, searches (including DirSync searches) are performed with the Extended DN control, so that the
+     * values of DN-valued attributes (like {@code member} or {@code manager}) include the GUID and SID of the referenced
+     * entries. Such values can be parsed with {@link UnboundIdAttributeResolver#getAsExtendedDN getAsExtendedDN()} and
+     * {@link UnboundIdAttributeResolver#getAsExtendedDNList getAsExtendedDNList()}.
+     */
+    public void setExtendedDN(boolean extendedDN) {
+        _extendedDN = extendedDN;
+    }
+
     @Nonnull
     @Override
     public Attribute getRootDSEAttribute(String attribute) throws LdapClientException {
@@ -68,6 +124,28 @@ public class UnboundIDLdapClient implements LdapClient<Attribute> {
         }
     }
 
+    @Nonnull
+    @Override
+    public List<Attribute> getRootDSEAttributes(List<String> attributeNames) throws LdapClientException {
+        try {
+            SearchResultEntry rootDSE = getConnection().getEntry("", toArray(attributeNames, String.class));
+            LdapClientException.throwIfNull(rootDSE, "Root DSE not available.");
+
+            List<Attribute> rootDSEAttributes = new ArrayList<>(attributeNames.size());
+            for (String attributeName : attributeNames) {
+                Attribute rootDSEAttribute = rootDSE.getAttribute(attributeName);
+                LdapClientException.throwIfNull(rootDSEAttribute,
+                        "Could not retrieve attribute '%s' of the root DSE.", attributeName);
+                rootDSEAttributes.add(rootDSEAttribute);
+            }
+
+            LOG.debug("Successfully retrieved root DSE attributes: {}", rootDSEAttributes);
+            return rootDSEAttributes;
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
     @Nonnull
     @Override
     public Attribute getEntryAttribute(String entryDN, String attributeName) throws LdapClientException {
@@ -89,64 +167,199 @@ public class UnboundIDLdapClient implements LdapClient<Attribute> {
     @Override
     public Iterable<Attribute[]> search(
             String searchBaseDN, String filter, List<String> attributes) throws LdapClientException
+    {
+        try {
+            SearchRequest searchRequest = createSearchRequest(searchBaseDN, filter, attributes);
+
+            Iterable<SearchResultEntry> searchResult = getConnection().search(searchRequest, _pageSize);
+
+            return resultEntriesToAttributeArrays(searchResult, new AttributeDecodingPlan(attributes));
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Iterable<List<Attribute[]>> searchPages(
+            String searchBaseDN, String filter, final List<String> attributes) throws LdapClientException
+    {
+        try {
+            SearchRequest searchRequest = createSearchRequest(searchBaseDN, filter, attributes);
+
+            Iterable<List<SearchResultEntry>> searchResultPages = getConnection().searchPages(searchRequest, _pageSize);
+            final AttributeDecodingPlan decodingPlan = new AttributeDecodingPlan(attributes);
+
+            return Iterables.transform(searchResultPages,
+                    new Function<List<SearchResultEntry>, List<Attribute[]>>() {
+                        @Override
+                        public List<Attribute[]> apply(List<SearchResultEntry> page) {
+                            return Lists.newArrayList(resultEntriesToAttributeArrays(page, decodingPlan));
+                        }
+                    });
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Iterable<Attribute[]> attributeScopedSearch(
+            String entryDN, String scopeAttribute, String filter, List<String> attributes) throws LdapClientException
     {
         try {
             SearchRequest searchRequest = new SearchRequest(
-                    searchBaseDN,
-                    SearchScope.SUB,
+                    entryDN,
+                    SearchScope.BASE,
                     filter,
                     toArray(attributes, String.class));
+            searchRequest.addControl(createAttributeScopedQueryControl(scopeAttribute));
+            if (_extendedDN) {
+                searchRequest.addControl(createExtendedDNControl());
+            }
 
             Iterable<SearchResultEntry> searchResult = getConnection().search(searchRequest, _pageSize);
 
-            return resultEntriesToAttributeArrays(searchResult, attributes);
+            return resultEntriesToAttributeArrays(searchResult, new AttributeDecodingPlan(attributes));
         } catch (LDAPException e) {
             throw new LdapClientException(e);
         }
     }
 
+    /**
+     * Creates the Attribute Scoped Query control, the value of which is the BER encoding of the following ASN.1 structure:
+     * <pre>
+     * SEQUENCE {
+     *     sourceAttribute OCTET STRING
+     * }
+     * </pre>
+     */
+    static Control createAttributeScopedQueryControl(String scopeAttribute) {
+        ASN1Sequence value = new ASN1Sequence(new ASN1OctetString(scopeAttribute));
+        return new Control(ASQ_CONTROL_OID, true, new ASN1OctetString(value.encode()));
+    }
+
+    private SearchRequest createSearchRequest(String searchBaseDN, String filter, List<String> attributes)
+            throws LDAPException
+    {
+        SearchRequest searchRequest = new SearchRequest(
+                searchBaseDN,
+                SearchScope.SUB,
+                filter,
+                toArray(attributes, String.class));
+        if (_extendedDN) {
+            searchRequest.addControl(createExtendedDNControl());
+        }
+        return searchRequest;
+    }
+
+    /**
+     * Creates the Extended DN control requesting the string format of the GUID and SID (as opposed to their hexadecimal
+     * format). The value of the control is the BER encoding of the following ASN.1 structure:
+     * <pre>
+     * SEQUENCE {
+     *     useFlag INTEGER
+     * }
+     * </pre>
+     */
+    static Control createExtendedDNControl() {
+        ASN1Sequence value = new ASN1Sequence(new ASN1Integer(EXTENDED_DN_STRING_FORMAT));
+        return new Control(EXTENDED_DN_CONTROL_OID, false, new ASN1OctetString(value.encode()));
+    }
+
     /**
      * Transforms the provided series of search result entries into series of {@link Attribute} arrays that is guaranteed to
-     * contain attribute values in the same number and order as the second argument of attribute names (the attribute array may
-     * contain {@code null} values).
+     * contain attribute values in the same number and order as the attribute names the provided decoding plan was built from
+     * (the attribute array may contain {@code null} values).
      *
      * @param searchResult A number of {@link SearchResultEntry} objects to transform.
-     * @param attributes   Name of the attributes. Determines the number and order of attributes in the output.
+     * @param decodingPlan Plan built from the names of the requested attributes. Determines the number and order of
+     *                     attributes in the output.
      * @return A series of {@link Attribute} arrays, each array representing one search result entry.
      */
     private Iterable<Attribute[]> resultEntriesToAttributeArrays(
-            Iterable<SearchResultEntry> searchResult, final List<String> attributes)
+            Iterable<SearchResultEntry> searchResult, final AttributeDecodingPlan decodingPlan)
     {
         return Iterables.transform(searchResult,
                 new Function<SearchResultEntry, Attribute[]>() {
                     @Override
                     public Attribute[] apply(SearchResultEntry resultEntry) {
-                        return ensureAttributeOrder(resultEntry, attributes);
+                        return decode(decodingPlan, resultEntry, new Attribute[decodingPlan.size()]);
                     }
                 });
     }
 
     /**
-     * Extracts {@link Attribute}s from the provided {@link SearchResultEntry} and returns them in the same order as the
-     * attribute names are specified in the second argument. Some of the {@link Attribute} references may be null in the
-     * returned array.
+     * Fills the provided array with the attributes of the search result entry using the provided decoding plan, and
+     * transparently retrieves the rest of the values of multi-valued attributes that have been returned with a range option
+     * (see {@link RangedAttributeValueIterator}).
      */
-    private Attribute[] ensureAttributeOrder(SearchResultEntry resultEntry, List<String> attributes) {
-        Attribute[] result = new Attribute[attributes.size()];
-        int i = 0;
-        for (String attributeName : attributes) {
-            Attribute attribute = resultEntry.getAttribute(attributeName);
-            result[i++] = attribute;
+    private Attribute[] decode(AttributeDecodingPlan decodingPlan, SearchResultEntry resultEntry, Attribute[] result) {
+        return completeRangedAttributes(resultEntry, decodingPlan.decode(resultEntry, result));
+    }
+
+    private Attribute[] completeRangedAttributes(SearchResultEntry resultEntry, Attribute[] result) {
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] != null && RangedAttributeValueIterator.isIncomplete(result[i])) {
+                String entryDN = getPlainDN(resultEntry);
+                LOG.debug("Retrieving the values of attribute '{}' of entry '{}' range by range.", result[i].getName(), entryDN);
+                result[i] = RangedAttributeValueIterator.retrieveAllValues(getConnection(), entryDN, result[i]);
+            }
         }
         return result;
     }
 
+    /**
+     * Returns the DN of a search result entry. When the Extended DN control is enabled, the server returns the DN of the
+     * entries in the extended DN format too, in which case the GUID and SID components are stripped.
+     */
+    private String getPlainDN(SearchResultEntry resultEntry) {
+        return _extendedDN ? new ExtendedDN().parse(resultEntry.getDN()).getDN() : resultEntry.getDN();
+    }
+
+    /**
+     * Returns the values of a multi-valued attribute of an entry, retrieving them range by range as the returned {@link
+     * Iterable} is iterated, so that only one range (at most {@code MaxValRange} values) is kept in memory at a time. Useful
+     * for attributes that have too many values to be retrieved together with the rest of the attributes of the entry, like
+     * the {@code member} attribute of huge groups (such attributes should be left out of the attributes to synchronize).
+     *
+     * @param entryDN       Distinguished Name of the entry.
+     * @param attributeName Name of the attribute.
+     * @return The values of the attribute. Iterating it throws {@link LdapClientException} if the LDAP communication fails.
+     */
+    @Nonnull
+    public Iterable<ASN1OctetString> getAttributeValues(final String entryDN, final String attributeName) {
+        return new Iterable<ASN1OctetString>() {
+            @Override
+            public Iterator<ASN1OctetString> iterator() {
+                return new RangedAttributeValueIterator(getConnection(), entryDN, attributeName);
+            }
+        };
+    }
+
+    @Override
+    public void search(
+            String searchBaseDN, String filter, List<String> attributes, EntryHandler<Attribute> entryHandler)
+            throws LdapClientException
+    {
+        try {
+            SearchRequest searchRequest = createSearchRequest(searchBaseDN, filter, attributes);
+
+            AttributeDecodingPlan decodingPlan = new AttributeDecodingPlan(attributes);
+            Attribute[] entry = new Attribute[attributes.size()];
+            for (SearchResultEntry resultEntry : getConnection().search(searchRequest, _pageSize)) {
+                entryHandler.handleEntry(decode(decodingPlan, resultEntry, entry));
+            }
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
     @Nonnull
     @Override
     public Iterable<UUID> searchDeleted(String rootDN, String filter) throws LdapClientException {
         try {
-            SearchRequest searchRequest = new SearchRequest(rootDN, SearchScope.SUB, filter, OBJECT_GUID);
-            searchRequest.addControl(new Control(SHOW_DELETED_CONTROL_OID));
+            SearchRequest searchRequest = createSearchDeletedRequest(rootDN, filter);
 
             Iterable<SearchResultEntry> searchResult = getConnection().search(searchRequest, _pageSize);
 
@@ -156,6 +369,53 @@ public class UnboundIDLdapClient implements LdapClient<Attribute> {
         }
     }
 
+    @Nonnull
+    @Override
+    public Iterable<List<UUID>> searchDeletedPages(String rootDN, String filter) throws LdapClientException {
+        try {
+            SearchRequest searchRequest = createSearchDeletedRequest(rootDN, filter);
+
+            Iterable<List<SearchResultEntry>> searchResultPages = getConnection().searchPages(searchRequest, _pageSize);
+
+            return Iterables.transform(searchResultPages,
+                    new Function<List<SearchResultEntry>, List<UUID>>() {
+                        @Override
+                        public List<UUID> apply(List<SearchResultEntry> page) {
+                            return Lists.newArrayList(resultEntriesToUUIDs(page));
+                        }
+                    });
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
+    @Override
+    public void searchDeleted(String rootDN, String filter, DeletedEntryHandler deletedEntryHandler)
+            throws LdapClientException
+    {
+        try {
+            SearchRequest searchRequest = createSearchDeletedRequest(rootDN, filter);
+
+            for (SearchResultEntry resultEntry : getConnection().search(searchRequest, _pageSize)) {
+                byte[] objectGuid = resultEntry.getAttributeValueBytes(OBJECT_GUID);
+                if (objectGuid == null || objectGuid.length != 16) {
+                    LOG.error("Deleted object's objectGUID is expected to be a UUID encoded in 16 bytes, but got: '{}'",
+                              resultEntry.getAttributeValue(OBJECT_GUID));
+                } else {
+                    deletedEntryHandler.handleDeletedEntry(mostSignificantBits(objectGuid), leastSignificantBits(objectGuid));
+                }
+            }
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
+    private static SearchRequest createSearchDeletedRequest(String rootDN, String filter) throws LDAPException {
+        SearchRequest searchRequest = new SearchRequest(rootDN, SearchScope.SUB, filter, OBJECT_GUID);
+        searchRequest.addControl(new Control(SHOW_DELETED_CONTROL_OID));
+        return searchRequest;
+    }
+
     /**
      * Transforms the provided series of {@link SearchResultEntry} objects into a series of {@link UUID} objects. This method
      * assumed that the first attribute of each entry is a 16-byte long byte array (the {@code objectGUID} attribute)
@@ -177,41 +437,218 @@ public class UnboundIDLdapClient implements LdapClient<Attribute> {
                 });
     }
 
+    @Nonnull
+    @Override
+    public DirSyncResult<Attribute> dirSync(
+            String rootDN, String searchBaseDN, String filter, List<String> attributes, @Nullable byte[] cookie)
+            throws LdapClientException
+    {
+        return dirSync(rootDN, searchBaseDN, filter, attributes, Collections.<String>emptyList(), 0, cookie);
+    }
+
+    @Nonnull
+    @Override
+    public DirSyncResult<Attribute> dirSync(
+            String rootDN, String searchBaseDN, String filter, List<String> attributes, List<String> linkedAttributes,
+            @Nullable byte[] cookie)
+            throws LdapClientException
+    {
+        return dirSync(rootDN, searchBaseDN, filter, attributes, linkedAttributes, INCREMENTAL_VALUES_FLAG, cookie);
+    }
+
+    /**
+     * Performs one round of a DirSync search with the given flags. Values of the linked attributes are expected to be
+     * returned with the incremental values semantics of Active Directory: added values under the {@code range=1-1} option,
+     * removed values under the {@code range=0-0} option of the attribute.
+     */
+    private DirSyncResult<Attribute> dirSync(
+            String rootDN, String searchBaseDN, String filter, List<String> attributes, List<String> linkedAttributes,
+            int flags, @Nullable byte[] cookie)
+            throws LdapClientException
+    {
+        try {
+            List<String> requestedAttributes = new ArrayList<>(attributes);
+            for (String linkedAttribute : linkedAttributes) {
+                if (indexOfIgnoreCase(attributes, linkedAttribute) < 0) {
+                    requestedAttributes.add(linkedAttribute);
+                }
+            }
+            requestedAttributes.add(OBJECT_GUID);
+            requestedAttributes.add(IS_DELETED);
+
+            SearchRequest searchRequest =
+                    new SearchRequest(rootDN, SearchScope.SUB, filter, toArray(requestedAttributes, String.class));
+            searchRequest.addControl(new ActiveDirectoryDirSyncControl(
+                    true, flags, Integer.MAX_VALUE, cookie == null ? null : new ASN1OctetString(cookie)));
+            if (_extendedDN) {
+                searchRequest.addControl(createExtendedDNControl());
+            }
+
+            SearchResult searchResult = getConnection().search(searchRequest);
+
+            ActiveDirectoryDirSyncControl responseControl = ActiveDirectoryDirSyncControl.get(searchResult);
+            LdapClientException.throwIfNull(responseControl, "The DirSync response control is missing.");
+
+            DN baseDN = new DN(searchBaseDN);
+            AttributeDecodingPlan decodingPlan = new AttributeDecodingPlan(attributes);
+            boolean[] isLinkedAttribute = new boolean[attributes.size()];
+            for (int i = 0; i < isLinkedAttribute.length; i++) {
+                isLinkedAttribute[i] = indexOfIgnoreCase(linkedAttributes, attributes.get(i)) >= 0;
+            }
+
+            List<Attribute[]> changedEntries = new ArrayList<>();
+            List<UUID> deletedEntries = new ArrayList<>();
+            List<MembershipDelta> membershipDeltas = new ArrayList<>();
+
+            for (SearchResultEntry resultEntry : searchResult.getSearchEntries()) {
+                if (Boolean.TRUE.equals(resultEntry.getAttributeValueAsBoolean(IS_DELETED))) {
+                    UUID uuid = bytesToUUID(resultEntry.getAttributeValueBytes(OBJECT_GUID));
+                    if (uuid == null) {
+                        LOG.error("Deleted object's objectGUID is expected to be a UUID encoded in 16 bytes, but got: " +
+                                  "'{}'", resultEntry.getAttributeValue(OBJECT_GUID));
+                    } else {
+                        deletedEntries.add(uuid);
+                    }
+                    continue;
+                }
+                String entryDN = getPlainDN(resultEntry);
+                if (new DN(entryDN).isDescendantOf(baseDN, true)) {
+                    Attribute[] entry = decodingPlan.decode(resultEntry);
+                    for (int i = 0; i < entry.length; i++) {
+                        if (isLinkedAttribute[i]) {
+                            entry[i] = null;
+                        }
+                    }
+                    changedEntries.add(completeRangedAttributes(resultEntry, entry));
+                    if (!linkedAttributes.isEmpty()) {
+                        membershipDeltas.addAll(extractMembershipDeltas(resultEntry, entryDN, linkedAttributes));
+                    }
+                }
+            }
+
+            LOG.debug("DirSync returned {} changed and {} deleted entries, and {} membership deltas.",
+                      changedEntries.size(), deletedEntries.size(), membershipDeltas.size());
+            return new DirSyncResult<>(changedEntries, deletedEntries, membershipDeltas,
+                    responseControl.getCookie().getValue(), responseControl.getFlags() != 0);
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
+    /**
+     * Collects the values added to and removed from the linked attributes of an entry returned by a DirSync search with the
+     * incremental values flag.
+     */
+    private static List<MembershipDelta> extractMembershipDeltas(
+            SearchResultEntry resultEntry, String entryDN, List<String> linkedAttributes)
+    {
+        List<List<String>> addedValues = new ArrayList<>(linkedAttributes.size());
+        List<List<String>> removedValues = new ArrayList<>(linkedAttributes.size());
+        for (int i = 0; i < linkedAttributes.size(); i++) {
+            addedValues.add(new ArrayList<String>());
+            removedValues.add(new ArrayList<String>());
+        }
+
+        for (Attribute attribute : resultEntry.getAttributes()) {
+            String name = RangedAttributeValueIterator.withoutRangeOption(attribute.getName());
+            int linkedAttributeIndex = indexOfIgnoreCase(linkedAttributes, name);
+            if (linkedAttributeIndex >= 0) {
+                boolean isRemoval = REMOVED_VALUES_RANGE.equals(RangedAttributeValueIterator.getRange(attribute.getName()));
+                List<String> values = isRemoval ? removedValues.get(linkedAttributeIndex) : addedValues.get(linkedAttributeIndex);
+                values.addAll(asList(attribute.getValues()));
+            }
+        }
+
+        List<MembershipDelta> membershipDeltas = new ArrayList<>();
+        UUID entryId = bytesToUUID(resultEntry.getAttributeValueBytes(OBJECT_GUID));
+        for (int i = 0; i < linkedAttributes.size(); i++) {
+            if (!addedValues.get(i).isEmpty() || !removedValues.get(i).isEmpty()) {
+                membershipDeltas.add(new MembershipDelta(
+                        entryId, entryDN, linkedAttributes.get(i), addedValues.get(i), removedValues.get(i)));
+            }
+        }
+        return membershipDeltas;
+    }
+
+    private static int indexOfIgnoreCase(List<String> names, String name) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void registerChangeNotification(String searchBaseDN, final ChangeNotificationListener listener)
+            throws LdapClientException
+    {
+        AsyncSearchResultListener searchResultListener = new AsyncSearchResultListener() {
+            @Override
+            public void searchEntryReturned(SearchResultEntry searchEntry) {
+                listener.changeNotified(searchEntry.getDN());
+            }
+
+            @Override
+            public void searchReferenceReturned(SearchResultReference searchReference) {
+            }
+
+            @Override
+            public void searchResultReceived(AsyncRequestID requestID, SearchResult searchResult) {
+                listener.notificationStopped(new LdapClientException(new LDAPException(searchResult)));
+            }
+        };
+
+        try {
+            SearchRequest searchRequest = new SearchRequest(
+                    searchResultListener, searchBaseDN, SearchScope.SUB, "(objectClass=*)", OBJECT_GUID);
+            searchRequest.addControl(new Control(NOTIFICATION_CONTROL_OID, true));
+            searchRequest.addControl(new Control(SHOW_DELETED_CONTROL_OID));
+            // the search is expected to run until the connection is closed
+            searchRequest.setResponseTimeoutMillis(0);
+
+            getConnection().asyncSearch(searchRequest);
+        } catch (LDAPException e) {
+            throw new LdapClientException(e);
+        }
+    }
+
     @Nonnull
     @Override
     public LdapAttributeResolver<Attribute> getAttributeResolver() {
         return UnboundIdAttributeResolver.INSTANCE;
     }
 
+    /**
+     * Closes the connection (or returns it to the pool in case of a pooled connection factory, see {@link
+     * PooledUnboundIDConnectionFactory}). The next operation obtains a new connection from the connection factory.
+     */
     @Override
     public void closeConnection() {
         if (_connection != null) {
             LOG.debug("Closing the LDAP connection.");
             _connection.close();
+            _connection = null;
         }
     }
 
     /**
-     * Creates a new connection on the first invocation and caches it. Before returning the cached instance on subsequent
-     * invocations, it checks if the connection is open, an calls reconnect() in case it's not.
+     * Obtains a new connection from the connection factory on the first invocation (and after the connection has been
+     * closed) and caches it. Before returning the cached instance on subsequent invocations, it checks if the connection is
+     * still open, and replaces it with a new one in case it's not.
+     * <p/>
+     * Connections are not re-opened with {@link PagingLdapConnection#reconnect()}, because the UnboundID SDK refuses to
+     * reconnect more than once within a second, which made frequent synchronizations fail.
      */
     private PagingLdapConnection getConnection() {
+        if (_connection != null && !_connection.isConnected()) {
+            LOG.debug("The LDAP connection has been lost, replacing it with a new one.");
+            _connection.close();
+            _connection = null;
+        }
         if (_connection == null) {
             _connection = _connectionFactory.createConnection();
-        } else {
-            if (!_connection.isConnected()) {
-                try {
-                    LOG.debug("Re-opening the LDAP connection.");
-                    _connection.reconnect();
-                } catch (LDAPException e) {
-                    // TODO: the 3rd synchronization operation within 1 second will end up here...
-                    // because the sync operation always closes the connection, and the time check
-                    // in reconnect() will cause the second reconnect() to fail with an exception
-                    throw new LdapClientException(e);
-                }
-            }
         }
-
         return _connection;
     }
 }
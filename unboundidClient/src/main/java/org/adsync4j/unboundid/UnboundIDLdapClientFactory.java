@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid;
+
+import com.unboundid.ldap.sdk.Attribute;
+import org.adsync4j.api.LdapClientException;
+import org.adsync4j.spi.LdapClient;
+import org.adsync4j.spi.LdapClientFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import static org.adsync4j.spi.LdapClient.DEFAULT_PAGE_SIZE;
+
+/**
+ * {@link LdapClientFactory} implementation creating {@link UnboundIDLdapClient} instances which obtain their connections from
+ * a common {@link PagingUnboundIDConnectionFactory}. Since connection factories are not necessarily thread-safe, connections
+ * are created while holding the lock of the shared factory.
+ */
+@ThreadSafe
+public class UnboundIDLdapClientFactory implements LdapClientFactory<Attribute> {
+
+    private final PagingUnboundIDConnectionFactory _connectionFactory;
+
+    private volatile int _pageSize = DEFAULT_PAGE_SIZE;
+    private volatile boolean _extendedDN;
+
+    public UnboundIDLdapClientFactory(PagingUnboundIDConnectionFactory connectionFactory) {
+        _connectionFactory = connectionFactory;
+    }
+
+    public void setPageSize(int pageSize) {
+        _pageSize = pageSize;
+    }
+
+    /**
+     * @see UnboundIDLdapClient#setExtendedDN(boolean)
+     */
+    public void setExtendedDN(boolean extendedDN) {
+        _extendedDN = extendedDN;
+    }
+
+    @Override
+    public LdapClient<Attribute> createLdapClient() throws LdapClientException {
+        UnboundIDLdapClient client = new UnboundIDLdapClient(
+                new PagingUnboundIDConnectionFactory() {
+                    @Override
+                    public PagingLdapConnection createConnection() throws LdapClientException {
+                        synchronized (_connectionFactory) {
+                            return _connectionFactory.createConnection();
+                        }
+                    }
+                });
+        client.setPageSize(_pageSize);
+        client.setExtendedDN(_extendedDN);
+        return client;
+    }
+}
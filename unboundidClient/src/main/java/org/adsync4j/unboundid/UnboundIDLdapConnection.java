@@ -13,8 +13,10 @@
  ***************************************************************************** */
 package org.adsync4j.unboundid;
 
+import com.unboundid.ldap.sdk.AsyncRequestID;
 import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.LDAPInterface;
+import com.unboundid.ldap.sdk.SearchRequest;
 
 /**
  * Interface exposing methods of {@link com.unboundid.ldap.sdk.LDAPConnection LDAPConnection} that {@link UnboundIDLdapClient}
@@ -41,4 +43,14 @@ public interface UnboundIDLdapConnection extends LDAPInterface {
      * @throws LDAPException If a problem occurs while attempting to re-connect or re-authenticate.
      */
     void reconnect() throws LDAPException;
+
+    /**
+     * Processes the provided search request as an asynchronous operation. Results are delivered to the {@link
+     * com.unboundid.ldap.sdk.AsyncSearchResultListener AsyncSearchResultListener} the search request has been created with.
+     *
+     * @param searchRequest The search request to be processed.
+     * @return An ID that can be used to abandon the operation.
+     * @throws LDAPException If a problem occurs while sending the request.
+     */
+    AsyncRequestID asyncSearch(SearchRequest searchRequest) throws LDAPException;
 }
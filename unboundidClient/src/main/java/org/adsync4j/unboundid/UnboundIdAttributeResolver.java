@@ -14,9 +14,12 @@
 package org.adsync4j.unboundid;
 
 import com.unboundid.ldap.sdk.Attribute;
+import org.adsync4j.spi.ExtendedDN;
+import org.adsync4j.spi.ExtendedDNAttributeResolver;
 import org.adsync4j.spi.LdapAttributeResolver;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -24,7 +27,7 @@ import java.util.List;
  * {@link LdapAttributeResolver} implementation interpreting the {@link Attribute} type defined by the UnboundID LDAP SDK.
  * Implemented as an enum, in order to ensure it's a singleton.
  */
-public enum UnboundIdAttributeResolver implements LdapAttributeResolver<Attribute> {
+public enum UnboundIdAttributeResolver implements ExtendedDNAttributeResolver<Attribute> {
 
     INSTANCE;
 
@@ -48,4 +51,21 @@ public enum UnboundIdAttributeResolver implements LdapAttributeResolver<Attribut
     public List<String> getAsStringList(Attribute attribute) {
         return Arrays.asList(attribute.getValues());
     }
+
+    @Override
+    public ExtendedDN getAsExtendedDN(Attribute attribute, ExtendedDN target) {
+        String value = attribute.getValue();
+        return value == null ? null : target.parse(value);
+    }
+
+    @Nonnull
+    @Override
+    public List<ExtendedDN> getAsExtendedDNList(Attribute attribute) {
+        String[] values = attribute.getValues();
+        List<ExtendedDN> extendedDNs = new ArrayList<>(values.length);
+        for (String value : values) {
+            extendedDNs.add(new ExtendedDN().parse(value));
+        }
+        return extendedDNs;
+    }
 }
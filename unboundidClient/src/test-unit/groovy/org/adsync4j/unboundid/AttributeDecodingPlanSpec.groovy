@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ******************************************************************************/
+package org.adsync4j.unboundid
+
+import com.unboundid.ldap.sdk.Attribute
+import com.unboundid.ldap.sdk.SearchResultEntry
+import spock.lang.Specification
+
+class AttributeDecodingPlanSpec extends Specification {
+
+    def 'attributes are placed in the order of the requested names regardless of case'() {
+        given:
+        def plan = new AttributeDecodingPlan(['objectguid', 'cn', 'userCertificate;binary', 'mail'])
+        def (guid, cn, certificate, other) = [
+                new Attribute('objectGUID', 'g'), new Attribute('CN', 'c'),
+                new Attribute('userCertificate;binary', 'u'), new Attribute('notRequested', 'x')]
+
+        expect: 'the result is the same when the spellings used by the server are already cached'
+        2.times {
+            assert plan.decode(new SearchResultEntry('', [other, certificate, cn, guid])) as List ==
+                   [guid, cn, certificate, null]
+        }
+    }
+
+    def 'the same attribute can be requested more than once'() {
+        given:
+        def plan = new AttributeDecodingPlan(['cn', 'sn', 'CN'])
+        def cn = new Attribute('cn', 'c')
+
+        expect:
+        plan.decode(new SearchResultEntry('', [cn])) as List == [cn, null, cn]
+    }
+
+    def 'slots of attributes missing from the entry are cleared when an array is reused'() {
+        given:
+        def plan = new AttributeDecodingPlan(['cn', 'sn'])
+        def (cn, sn) = [new Attribute('cn', 'c'), new Attribute('sn', 's')]
+        Attribute[] result = new Attribute[2]
+
+        when:
+        plan.decode(new SearchResultEntry('', [cn, sn]), result)
+        plan.decode(new SearchResultEntry('', [sn]), result)
+
+        then:
+        result as List == [null, sn]
+    }
+
+    def 'attributes returned with a range option are mapped to the attribute requested without it'() {
+        given:
+        def plan = new AttributeDecodingPlan(['cn', 'member'])
+        def member = new Attribute('member;Range=0-1499', 'm')
+
+        expect:
+        plan.decode(new SearchResultEntry('', [member])) as List == [null, member]
+    }
+}
@@ -52,6 +52,31 @@ class PagingLdapConnectionImplSpec extends Specification {
         entries as List == pages.flatten()
     }
 
+    def 'paging search exposes page boundaries'() {
+        given:
+        List pages = [['page1/1', 'page1/2'], ['page2/1']]
+        PagingLdapConnectionImpl pagingConnection = buildPagingLdapConnection(pages)
+
+        when:
+        List actualPages = pagingConnection.searchPages(DUMMY_SEARCH_REQUEST, PAGE_SIZE).collect()
+
+        then:
+        actualPages == pages
+    }
+
+    def 'paging search with prefetching returns all pages'() {
+        given:
+        List pages = [['page1/1', 'page1/2'], ['page2/1'], ['page3/1']]
+        PagingLdapConnectionImpl pagingConnection = buildPagingLdapConnection(pages)
+        pagingConnection.prefetchDepth = 1
+
+        when:
+        List actualPages = pagingConnection.searchPages(DUMMY_SEARCH_REQUEST, PAGE_SIZE).collect()
+
+        then:
+        actualPages == pages
+    }
+
     def 'delegate exceptions from the underlying non-paging connection'() {
         given:
         // emulating a time-out on getEntry()
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig
+import com.unboundid.ldap.sdk.LDAPException
+import com.unboundid.ldap.sdk.SearchRequest
+import com.unboundid.ldap.sdk.SearchScope
+import spock.lang.Specification
+
+class PooledUnboundIDConnectionFactorySpec extends Specification {
+
+    static final String BIND_USER = 'cn=admin'
+    static final String BIND_PASSWORD = 'secret'
+
+    InMemoryDirectoryServer server
+    PooledUnboundIDConnectionFactory factory
+
+    def setup() {
+        def config = new InMemoryDirectoryServerConfig('dc=example')
+        config.addAdditionalBindCredentials(BIND_USER, BIND_PASSWORD)
+        server = new InMemoryDirectoryServer(config)
+        server.add('dn: dc=example', 'objectClass: domain', 'dc: example')
+        server.startListening()
+        factory = new PooledUnboundIDConnectionFactory('localhost', server.listenPort, BIND_USER, BIND_PASSWORD, 2, null)
+    }
+
+    def cleanup() {
+        factory.close()
+        server.shutDown(true)
+    }
+
+    def 'closing a connection returns it to the pool'() {
+        given:
+        def connection = factory.createConnection()
+        def pool = factory.connectionPool
+
+        when:
+        connection.search(new SearchRequest('dc=example', SearchScope.BASE, '(objectClass=*)'), 10).collect()
+
+        then:
+        connection.isConnected()
+        pool.currentAvailableConnections == 0
+
+        when:
+        connection.close()
+        connection.close()
+
+        then:
+        !connection.isConnected()
+        pool.currentAvailableConnections == 1
+        pool.connectionPoolStatistics.numConnectionsClosedDefunct == 0
+    }
+
+    def 'a connection returned to the pool rejects every operation'() {
+        given:
+        def connection = factory.createConnection()
+        connection.close()
+
+        when:
+        operation.call(connection)
+
+        then:
+        thrown(LDAPException)
+        factory.connectionPool.currentAvailableConnections == 1
+
+        where:
+        operation << [
+                { it.search(new SearchRequest('dc=example', SearchScope.BASE, '(objectClass=*)'), 10) },
+                { it.search(new SearchRequest('dc=example', SearchScope.BASE, '(objectClass=*)')) },
+                { it.getEntry('dc=example') },
+                { it.getRootDSE() },
+                { it.asyncSearch(new SearchRequest(null, 'dc=example', SearchScope.BASE, '(objectClass=*)')) }
+        ]
+    }
+
+    def 'consecutive syncs reuse the pooled connection instead of reconnecting'() {
+        given:
+        def client = new UnboundIDLdapClient(factory)
+
+        when:
+        3.times {
+            client.getRootDSEAttribute('namingContexts')
+            client.closeConnection()
+        }
+
+        then:
+        factory.connectionPool.connectionPoolStatistics.numSuccessfulConnectionAttempts == 1
+        factory.connectionPool.connectionPoolStatistics.numReleasedValid == 3
+    }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * ADSync4J (https://github.com/zagyi/adsync4j)
+ *
+ * Copyright (c) 2013 Balazs Zagyvai
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Balazs Zagyvai
+ ***************************************************************************** */
+package org.adsync4j.unboundid
+
+import com.unboundid.ldap.sdk.LDAPSearchException
+import com.unboundid.ldap.sdk.ResultCode
+import org.adsync4j.api.LdapClientException
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+class PrefetchingPagingSearchIteratorSpec extends Specification {
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    def 'returns all pages in the original order'() {
+        given:
+        def pages = [['page1/1', 'page1/2'], ['page2/1'], ['page3/1']]
+
+        when:
+        def actualPages = new PrefetchingPagingSearchIterator(pages.iterator(), prefetchDepth).collect()
+
+        then:
+        actualPages == pages
+
+        where:
+        prefetchDepth << [1, 2, 5]
+    }
+
+    def 'hasNext() returns false if there are no pages'() {
+        given:
+        def psi = new PrefetchingPagingSearchIterator([].iterator(), 1)
+
+        expect:
+        !psi.hasNext()
+
+        when:
+        psi.next()
+
+        then:
+        thrown NoSuchElementException
+    }
+
+    def 'does not fetch more pages ahead of the consumer than the prefetch depth'() {
+        given:
+        def numOfFetchedPages = new AtomicInteger()
+        def infinitePageIterator = [
+                hasNext: { true },
+                next: { numOfFetchedPages.incrementAndGet(); ['entry'] }
+        ] as Iterator
+
+        when:
+        def psi = new PrefetchingPagingSearchIterator(infinitePageIterator, 2)
+
+        then: 'two pages are buffered, and the third is waiting for space in the buffer'
+        conditions.eventually { assert numOfFetchedPages.get() == 3 }
+        sleep(100)
+        numOfFetchedPages.get() == 3
+
+        when:
+        psi.next()
+
+        then:
+        conditions.eventually { assert numOfFetchedPages.get() == 4 }
+
+        cleanup:
+        psi.cancel()
+    }
+
+    def 'propagates the exception encountered while fetching a page'() {
+        given:
+        def failingPageIterator = [
+                hasNext: { true },
+                next: { throw new LdapClientException(new LDAPSearchException(ResultCode.TIMEOUT, '')) }
+        ] as Iterator
+
+        def psi = new PrefetchingPagingSearchIterator(failingPageIterator, 1)
+
+        when:
+        psi.next()
+
+        then:
+        thrown LdapClientException
+    }
+
+    def 'propagates an error encountered while fetching a page'() {
+        given:
+        def failingPageIterator = [hasNext: { true }, next: { throw new OutOfMemoryError('no more pages') }] as Iterator
+        def psi = new PrefetchingPagingSearchIterator(failingPageIterator, 1)
+
+        when:
+        psi.next()
+
+        then:
+        thrown OutOfMemoryError
+    }
+
+    def 'cancel() wakes up the consumer waiting for the next page'() {
+        given:
+        def fetchStarted = new CountDownLatch(1)
+        def fetchReleased = new CountDownLatch(1)
+        def blockingPageIterator = [
+                hasNext: { true },
+                next: {
+                    fetchStarted.countDown()
+                    // a fetch that doesn't respond to interruption
+                    while (fetchReleased.count > 0) {
+                        try {
+                            fetchReleased.await()
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                    ['entry']
+                }
+        ] as Iterator
+        def psi = new PrefetchingPagingSearchIterator(blockingPageIterator, 1)
+        Throwable consumerError
+        def consumer = Thread.start {
+            try {
+                psi.next()
+            } catch (Throwable t) {
+                consumerError = t
+            }
+        }
+
+        when:
+        fetchStarted.await()
+        psi.cancel()
+        consumer.join(5000)
+
+        then:
+        !consumer.alive
+        consumerError instanceof CancellationException
+
+        cleanup:
+        fetchReleased.countDown()
+    }
+
+    def 'cancel() stops prefetching'() {
+        given:
+        def infinitePageIterator = [hasNext: { true }, next: { ['entry'] }] as Iterator
+        def psi = new PrefetchingPagingSearchIterator(infinitePageIterator, 1)
+
+        when:
+        psi.cancel()
+
+        then:
+        conditions.eventually { assert !psi.prefetching }
+    }
+}
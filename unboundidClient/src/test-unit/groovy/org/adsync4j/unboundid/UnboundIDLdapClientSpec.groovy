@@ -13,10 +13,20 @@
  ***************************************************************************** */
 package org.adsync4j.unboundid
 
+import com.unboundid.asn1.ASN1OctetString
+import com.unboundid.asn1.ASN1Sequence
 import com.unboundid.ldap.sdk.*
+import com.unboundid.ldap.sdk.experimental.ActiveDirectoryDirSyncControl
 import org.adsync4j.api.LdapClientException
+import org.adsync4j.spi.ChangeNotificationListener
+import org.adsync4j.spi.FlyweightLdapClient
+import org.adsync4j.spi.IncrementalValuesDirSyncLdapClient
 import spock.lang.Specification
 
+import static org.adsync4j.spi.AttributeScopedQueryLdapClient.ASQ_CONTROL_OID
+import static org.adsync4j.spi.ChangeNotificationLdapClient.NOTIFICATION_CONTROL_OID
+import static org.adsync4j.spi.DirSyncLdapClient.DIRSYNC_CONTROL_OID
+import static org.adsync4j.spi.LdapClient.EXTENDED_DN_CONTROL_OID
 import static org.adsync4j.spi.LdapClient.OBJECT_GUID
 import static org.adsync4j.spi.LdapClient.SHOW_DELETED_CONTROL_OID
 import static org.adsync4j.testutils.TestUtils.uuidToBytArray
@@ -70,6 +80,36 @@ class UnboundIDLdapClientSpec extends Specification {
         new RootDSE(EMPTY_ENTRY) | _
     }
 
+    def 'getRootDSEAttributes() reads several rootDSE attributes with one request'() {
+        given:
+        def otherAttribute = new Attribute('otherAttributeName', 'otherValue')
+        1 * connection.getEntry('', 'otherAttributeName', ATTRIBUTE_NAME) >> new SearchResultEntry('', [ATTRIBUTE, otherAttribute])
+        allowNoFurtherInteractions()
+
+        when:
+        def attributes = client.getRootDSEAttributes(['otherAttributeName', ATTRIBUTE_NAME])
+
+        then:
+        attributes == [otherAttribute, ATTRIBUTE]
+    }
+
+    def 'getRootDSEAttributes() fails on missing rootDSE entry or attribute'() {
+        given:
+        1 * connection.getEntry('', ATTRIBUTE_NAME) >> rootDSE
+        allowNoFurtherInteractions()
+
+        when:
+        client.getRootDSEAttributes([ATTRIBUTE_NAME])
+
+        then:
+        thrown LdapClientException
+
+        where:
+        rootDSE     | _
+        null        | _
+        EMPTY_ENTRY | _
+    }
+
     def 'getEntryAttribute() returns the value of an entry attribute'() {
         given:
         1 * connection.getEntry(ENTRY_DN, ATTRIBUTE_NAME) >> ENTRY
@@ -117,6 +157,58 @@ class UnboundIDLdapClientSpec extends Specification {
         capturedRequest.attributes == attributes
     }
 
+    def 'attributeScopedSearch() submits a base search with the ASQ control'() {
+        given:
+        def member = new Attribute('attribute1', 'value1')
+        SearchRequest capturedRequest
+        allowNoFurtherInteractions()
+
+        when:
+        def entries = client.attributeScopedSearch(BASE_DN, 'member', FILTER, ['attribute1']).collect()
+
+        then:
+        1 * connection.search({ capturedRequest = it }, PAGE_SIZE) >> [new SearchResultEntry('CN=member', [member])]
+
+        capturedRequest.baseDN == BASE_DN
+        capturedRequest.filter.toString() == FILTER
+        capturedRequest.scope == SearchScope.BASE
+        Control asqControl = capturedRequest.getControl(ASQ_CONTROL_OID)
+        asqControl.critical
+        ASN1Sequence.decodeAsSequence(asqControl.value.value).elements()*.decodeAsOctetString()*.stringValue() == ['member']
+
+        and:
+        entries.collect { it as List } == [[member]]
+    }
+
+    def 'search() sends the Extended DN control if enabled'() {
+        given:
+        client.extendedDN = true
+        SearchRequest capturedRequest
+        allowNoFurtherInteractions()
+
+        when:
+        client.search(BASE_DN, FILTER, ['manager']).collect()
+
+        then:
+        1 * connection.search({ capturedRequest = it }, PAGE_SIZE) >> []
+
+        Control extendedDNControl = capturedRequest.getControl(EXTENDED_DN_CONTROL_OID)
+        ASN1Sequence.decodeAsSequence(extendedDNControl.value.value).elements()[0].decodeAsInteger().intValue() == 1
+    }
+
+    def 'getAsExtendedDNList() parses DN values in the extended DN format'() {
+        given:
+        def guid = UUID.randomUUID()
+        def attribute = new Attribute('member', "<GUID=$guid>;CN=member,DC=example" as String, 'CN=plain,DC=example')
+
+        when:
+        def extendedDNs = client.attributeResolver.getAsExtendedDNList(attribute)
+
+        then:
+        extendedDNs*.guid == [guid, null]
+        extendedDNs*.DN == ['CN=member,DC=example', 'CN=plain,DC=example']
+    }
+
     def 'search() returns attributes in the same order as requested'() {
         given:
         def requestedAttributes = ['attribute1', 'attribute2']
@@ -143,6 +235,44 @@ class UnboundIDLdapClientSpec extends Specification {
         entries[3] == [null, null]
     }
 
+    def 'searchPages() returns attribute arrays page by page'() {
+        given:
+        def attribute1 = new Attribute('attribute1', 'value1')
+        def attribute2 = new Attribute('attribute2', 'value2')
+        def resultPages = [
+                [new SearchResultEntry('', [attribute2, attribute1] as Attribute[]),
+                 new SearchResultEntry('', [attribute1] as Attribute[])],
+                [new SearchResultEntry('', [] as Attribute[])]
+        ]
+
+        1 * connection.searchPages({ it.baseDN == BASE_DN && it.filter.toString() == FILTER }, PAGE_SIZE) >> resultPages
+        allowNoFurtherInteractions()
+
+        when:
+        def pages = client.searchPages(BASE_DN, FILTER, ['attribute1', 'attribute2']).collect()
+
+        then:
+        pages.size() == 2
+        pages[0] == [[attribute1, attribute2], [attribute1, null]]
+        pages[1] == [[null, null]]
+    }
+
+    def 'searchDeletedPages() returns UUIDs page by page'() {
+        given:
+        def ids = [new UUID(1, 1), new UUID(2, 2), new UUID(3, 3)]
+        def entries = ids.collect { new SearchResultEntry('', [new Attribute('id', uuidToBytArray(it))]) }
+
+        1 * connection.searchPages({ it.controls.any { it.OID == SHOW_DELETED_CONTROL_OID } }, PAGE_SIZE) >>
+                [entries[0..1], entries[2..2]]
+        allowNoFurtherInteractions()
+
+        when:
+        def pages = client.searchDeletedPages(BASE_DN, FILTER).collect()
+
+        then:
+        pages == [ids[0..1], ids[2..2]]
+    }
+
     def 'searchDeleted() submits the correct search request'() {
         given:
         SearchRequest capturedRequest
@@ -189,6 +319,93 @@ class UnboundIDLdapClientSpec extends Specification {
         ids == [null]
     }
 
+    def 'search() with an entry handler passes each entry in the same reused attribute array'() {
+        given:
+        def (attribute1, attribute2) = [new Attribute('a1', 'v1'), new Attribute('a2', 'v2')]
+        def entries = [new SearchResultEntry('', [attribute1, attribute2]), new SearchResultEntry('', [attribute2])]
+        def receivedArrays = []
+        def receivedEntries = []
+
+        1 * connection.search(_, PAGE_SIZE) >> entries
+        allowNoFurtherInteractions()
+
+        when:
+        client.search(BASE_DN, FILTER, ['a1', 'a2'], { Attribute[] entry ->
+            receivedArrays << entry
+            receivedEntries << (entry as List)
+        } as FlyweightLdapClient.EntryHandler)
+
+        then:
+        receivedEntries == [[attribute1, attribute2], [null, attribute2]]
+        receivedArrays[0].is(receivedArrays[1])
+    }
+
+    def 'searchDeleted() with a handler passes the bits of the GUIDs and skips unparseable ones'() {
+        given:
+        def id = UUID.randomUUID()
+        def entries = [new SearchResultEntry('', [new Attribute(OBJECT_GUID, uuidToBytArray(id))]), ENTRY]
+        def receivedIds = []
+
+        1 * connection.search({ it.controls.any { it.OID == SHOW_DELETED_CONTROL_OID } }, PAGE_SIZE) >> entries
+        allowNoFurtherInteractions()
+
+        when:
+        client.searchDeleted(BASE_DN, FILTER, { long msb, long lsb -> receivedIds << new UUID(msb, lsb) }
+                as FlyweightLdapClient.DeletedEntryHandler)
+
+        then:
+        receivedIds == [id]
+    }
+
+    def 'search() retrieves the rest of the values of attributes returned with a range option'() {
+        given:
+        def entry = new SearchResultEntry('CN=group', [new Attribute('cn', 'group'), new Attribute('member;range=0-1', 'a', 'b')])
+
+        1 * connection.search(_, PAGE_SIZE) >> [entry]
+        1 * connection.getEntry('CN=group', 'member;range=2-*') >>
+                new SearchResultEntry('CN=group', [new Attribute('member;range=2-3', 'c', 'd')])
+        1 * connection.getEntry('CN=group', 'member;range=4-*') >>
+                new SearchResultEntry('CN=group', [new Attribute('member;range=4-*', 'e')])
+        _ * connection.isConnected() >> true
+        allowNoFurtherInteractions()
+
+        when:
+        def result = client.search(BASE_DN, FILTER, ['cn', 'member']).collect()
+
+        then:
+        result.size() == 1
+        result[0][0].value == 'group'
+        result[0][1].name == 'member'
+        result[0][1].values as List == ['a', 'b', 'c', 'd', 'e']
+    }
+
+    def 'getAttributeValues() retrieves the next range only when the previous one is exhausted'() {
+        given:
+        _ * connection.isConnected() >> true
+
+        when:
+        def values = client.getAttributeValues('CN=group', 'member').iterator()
+
+        then:
+        0 * connection._
+
+        when:
+        def firstValue = values.next().stringValue()
+
+        then:
+        firstValue == 'a'
+        1 * connection.getEntry('CN=group', 'member;range=0-*') >>
+                new SearchResultEntry('CN=group', [new Attribute('member;range=0-1', 'a', 'b')])
+
+        when:
+        def rest = values.collect { it.stringValue() }
+
+        then:
+        rest == ['b', 'c']
+        1 * connection.getEntry('CN=group', 'member;range=2-*') >>
+                new SearchResultEntry('CN=group', [new Attribute('member;range=2-*', 'c')])
+    }
+
     def 'all methods propagate ldap exception'() {
         given:
         def client = new UnboundIDLdapClient({ connection } as PagingUnboundIDConnectionFactory)
@@ -243,6 +460,154 @@ class UnboundIDLdapClientSpec extends Specification {
         expectedStringList == client.attributeResolver.getAsStringList(attribute)
     }
 
+    def 'dirSync() splits the result set into changed and deleted entries'() {
+        given:
+        def deletedId = UUID.randomUUID()
+        def changedEntry = new SearchResultEntry('CN=changed,OU=base,DC=example', [ATTRIBUTE])
+        def entryOutsideBase = new SearchResultEntry('CN=other,OU=elsewhere,DC=example', [ATTRIBUTE])
+        def deletedEntry = new SearchResultEntry('CN=deleted\\0ADEL:x,CN=Deleted Objects,DC=example', [
+                new Attribute(OBJECT_GUID, uuidToBytArray(deletedId)),
+                new Attribute('isDeleted', 'TRUE')])
+        def responseControl = new ActiveDirectoryDirSyncControl(false, 1, 0, new ASN1OctetString('newCookie'.bytes))
+        def searchResult = new SearchResult(1, ResultCode.SUCCESS, null, null, null,
+                [changedEntry, entryOutsideBase, deletedEntry], [], 3, 0, [responseControl] as Control[])
+
+        SearchRequest capturedRequest
+        1 * connection.search(_ as SearchRequest) >> { SearchRequest request ->
+            capturedRequest = request
+            searchResult
+        }
+        allowNoFurtherInteractions()
+
+        when:
+        def result = client.dirSync('DC=example', 'OU=base,DC=example', FILTER, [ATTRIBUTE_NAME], 'oldCookie'.bytes)
+
+        then: 'the request carries the DirSync control with the cookie of the previous round'
+        capturedRequest.baseDN == 'DC=example'
+        capturedRequest.filter.toString() == FILTER
+        capturedRequest.attributeList == [ATTRIBUTE_NAME, OBJECT_GUID, 'isDeleted']
+        ActiveDirectoryDirSyncControl requestControl = capturedRequest.getControl(DIRSYNC_CONTROL_OID)
+        requestControl.cookie.value == 'oldCookie'.bytes
+
+        and: 'only the entries located under the search base are reported as changed'
+        result.changedEntries.collect { it as List } == [[ATTRIBUTE]]
+        result.deletedEntries == [deletedId]
+        result.cookie == 'newCookie'.bytes
+        result.hasMoreData()
+    }
+
+    def 'dirSync() with linked attributes reports incremental values as membership deltas'() {
+        given:
+        def groupId = UUID.randomUUID()
+        def changedGroup = new SearchResultEntry('CN=group,OU=base,DC=example', [
+                ATTRIBUTE,
+                new Attribute(OBJECT_GUID, uuidToBytArray(groupId)),
+                new Attribute('member;range=1-1', 'CN=added1', 'CN=added2'),
+                new Attribute('member;range=0-0', 'CN=removed')])
+        def responseControl = new ActiveDirectoryDirSyncControl(false, 0, 0, new ASN1OctetString('newCookie'.bytes))
+        def searchResult = new SearchResult(1, ResultCode.SUCCESS, null, null, null,
+                [changedGroup], [], 1, 0, [responseControl] as Control[])
+
+        SearchRequest capturedRequest
+        1 * connection.search(_ as SearchRequest) >> { SearchRequest request ->
+            capturedRequest = request
+            searchResult
+        }
+        allowNoFurtherInteractions()
+
+        when:
+        def result = client.dirSync('DC=example', 'OU=base,DC=example', FILTER, [ATTRIBUTE_NAME, 'member'], ['member'], null)
+
+        then: 'the request asks for incremental values'
+        capturedRequest.attributeList == [ATTRIBUTE_NAME, 'member', OBJECT_GUID, 'isDeleted']
+        ActiveDirectoryDirSyncControl requestControl = capturedRequest.getControl(DIRSYNC_CONTROL_OID)
+        requestControl.flags == IncrementalValuesDirSyncLdapClient.INCREMENTAL_VALUES_FLAG
+
+        and: 'the linked attribute is left out of the changed entry and reported as a delta instead'
+        result.changedEntries.collect { it as List } == [[ATTRIBUTE, null]]
+        result.membershipDeltas.size() == 1
+        with(result.membershipDeltas[0]) {
+            entryId == groupId
+            entryDN == 'CN=group,OU=base,DC=example'
+            attributeName == 'member'
+            addedValues == ['CN=added1', 'CN=added2']
+            removedValues == ['CN=removed']
+        }
+        !result.hasMoreData()
+    }
+
+    def 'dirSync() strips the extended components from the DN of the entries when the Extended DN control is enabled'() {
+        given:
+        client.extendedDN = true
+        def groupId = UUID.randomUUID()
+        def extendedPrefix = "<GUID=${groupId}>;<SID=S-1-5-21-1004336348-1177238915-682003330-1104>;"
+        def changedGroup = new SearchResultEntry(extendedPrefix + 'CN=group,OU=base,DC=example', [
+                ATTRIBUTE,
+                new Attribute(OBJECT_GUID, uuidToBytArray(groupId)),
+                new Attribute('member;range=1-1', 'CN=added')])
+        def entryOutsideBase = new SearchResultEntry(extendedPrefix + 'CN=other,OU=elsewhere,DC=example', [ATTRIBUTE])
+        def responseControl = new ActiveDirectoryDirSyncControl(false, 0, 0, new ASN1OctetString('newCookie'.bytes))
+        def searchResult = new SearchResult(1, ResultCode.SUCCESS, null, null, null,
+                [changedGroup, entryOutsideBase], [], 2, 0, [responseControl] as Control[])
+
+        1 * connection.search(_ as SearchRequest) >> searchResult
+        allowNoFurtherInteractions()
+
+        when:
+        def result = client.dirSync('DC=example', 'OU=base,DC=example', FILTER, [ATTRIBUTE_NAME, 'member'], ['member'], null)
+
+        then:
+        result.changedEntries.collect { it as List } == [[ATTRIBUTE, null]]
+        result.membershipDeltas*.entryDN == ['CN=group,OU=base,DC=example']
+    }
+
+    def 'search() retrieves the rest of the values by the plain DN of the entry when the Extended DN control is enabled'() {
+        given:
+        client.extendedDN = true
+        def entry = new SearchResultEntry("<GUID=${UUID.randomUUID()}>;CN=group", [new Attribute('member;range=0-0', 'a')])
+
+        1 * connection.search(_, PAGE_SIZE) >> [entry]
+        1 * connection.getEntry('CN=group', 'member;range=1-*') >>
+                new SearchResultEntry('CN=group', [new Attribute('member;range=1-*', 'b')])
+        _ * connection.isConnected() >> true
+        allowNoFurtherInteractions()
+
+        when:
+        def result = client.search(BASE_DN, FILTER, ['member']).collect()
+
+        then:
+        result[0][0].values as List == ['a', 'b']
+    }
+
+    def 'registerChangeNotification() starts an asynchronous search with the notification control'() {
+        given:
+        ChangeNotificationListener listener = Mock(ChangeNotificationListener)
+        SearchRequest capturedRequest
+        1 * connection.asyncSearch(_ as SearchRequest) >> { SearchRequest request ->
+            capturedRequest = request
+            null
+        }
+        allowNoFurtherInteractions()
+
+        when:
+        client.registerChangeNotification(BASE_DN, listener)
+
+        then:
+        capturedRequest.baseDN == BASE_DN
+        capturedRequest.scope == SearchScope.SUB
+        capturedRequest.hasControl(NOTIFICATION_CONTROL_OID)
+        capturedRequest.hasControl(SHOW_DELETED_CONTROL_OID)
+
+        when: 'the server returns entries and finally a result'
+        capturedRequest.searchResultListener.searchEntryReturned(new SearchResultEntry('CN=changed', [] as Attribute[]))
+        capturedRequest.searchResultListener.searchResultReceived(
+                null, new SearchResult(1, ResultCode.SERVER_DOWN, null, null, null, 0, 0, null))
+
+        then:
+        1 * listener.changeNotified('CN=changed')
+        1 * listener.notificationStopped(_ as LdapClientException)
+    }
+
     def allowNoFurtherInteractions() {
         0 * connection._ // forbid interactions other than those defined in a spec method
     }